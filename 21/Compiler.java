@@ -22,18 +22,88 @@ import compiler.*;
 import lexer.*;
 import parser.*;
 import ast.*;
+import ir.*;
+import java.io.File;
 import java.io.FileReader;
 
 public class Compiler {
   public static void main(String[] args) {
     Handler handler = new SimpleHandler();
     try {
-      if (args.length!=1) {
-        throw new Failure("This program requires exactly one argument");
+      // Process command line arguments:
+      int     level = Optimizations.DEFAULT_LEVEL;
+      boolean stats = false;
+      boolean useIR = false;
+      boolean x64   = false;
+      boolean toC   = false;
+      boolean jvm   = false;
+      boolean elf   = false;
+      boolean debug = false;
+      boolean prof  = false;
+      boolean train = false;
+      String  pgo   = null;
+      int     jobs  = 0;
+      String  name  = null;
+      for (int i=0; i<args.length; i++) {
+        if (args[i].matches("-O[0-9]+")) {
+          level = Integer.parseInt(args[i].substring(2));
+          if (level<Optimizations.MIN_LEVEL || level>Optimizations.MAX_LEVEL) {
+            throw new Failure("Unsupported optimization level " + args[i]);
+          }
+        } else if (args[i].equals("-stats")) {
+          stats = true;
+        } else if (args[i].equals("-ir")) {
+          useIR = true;
+        } else if (args[i].equals("-m64")) {
+          x64 = true;
+        } else if (args[i].equals("-C")) {
+          toC = true;
+        } else if (args[i].equals("-jvm")) {
+          jvm = true;
+        } else if (args[i].equals("-elf")) {
+          elf = true;
+        } else if (args[i].equals("-g")) {
+          debug = true;
+        } else if (args[i].equals("-profile")) {
+          prof = true;
+        } else if (args[i].equals("-pgo")) {
+          train = true;
+        } else if (args[i].startsWith("-pgo=")) {
+          pgo = args[i].substring(5);
+        } else if (args[i].matches("-j[0-9]+")) {
+          jobs = Integer.parseInt(args[i].substring(2));
+          if (jobs<1) {
+            throw new Failure("Unsupported number of threads " + args[i]);
+          }
+        } else if (args[i].startsWith("-")) {
+          throw new Failure("Unrecognized option " + args[i]);
+        } else if (name!=null) {
+          throw new Failure("This program requires exactly one file argument");
+        } else {
+          name = args[i];
+        }
+      }
+      if (name==null) {
+        throw new Failure("Usage: Compiler [-O0|-O1|-O2|-O3] [-stats] [-ir] [-m64] [-C] [-jvm] [-elf] [-g] [-profile] [-pgo[=file]] [-jN] file");
+      }
+      if (jobs>0 && useIR) {
+        throw new Failure("The -j option cannot be combined with -ir");
+      }
+      if (debug && (useIR || elf)) {
+        throw new Failure("The -g option cannot be combined with -ir or -elf");
+      }
+      if (prof && (useIR || elf)) {
+        throw new Failure("The -profile option cannot be combined with -ir or -elf");
+      }
+      if ((train || pgo!=null) && useIR) {
+        throw new Failure("The -pgo option cannot be combined with -ir");
+      }
+      if (elf && x64) {
+        throw new Failure("The -elf option is only supported for 32 bit code");
       }
 
       // Read program:
-      String     input  = args[0] + ".mini";
+      String     input  = name + ".mini";
       FileReader reader = new FileReader(input);
       Source     source = new JavaSource(handler, input, reader);
       MiniLexer  lexer  = new MiniLexer(handler, source);
@@ -48,20 +118,119 @@ public class Compiler {
       new TypeAnalysis(handler).analyze(prog);
       new InitAnalysis(handler).analyze(prog);
 
+      // Compile to JVM bytecode and run the program in this JVM:
+      if (jvm) {
+        JVMEmitter.run(new JVMEmitter(handler).compile(prog), System.out);
+        return;
+      }
+
+      // Translate to C and compile with gcc:
+      if (toC) {
+        String output = name + ".c";
+        new CEmitter(output).toC(prog);
+        System.out.println("C code output: " + output);
+        Runtime.getRuntime()                                             // <<<
+               .exec("gcc -O2 -fwrapv -o " + name + " " +                // <<<
+                       output + " runtime.c")                            // <<<
+               .waitFor();                                               // <<<
+        System.out.println("Executable program: " + name);
+        return;
+      }
+
+      // Collect a profile, either from a file written by a program that
+      // was compiled with -profile, or by running the interpreter:
+      Profile profile = (pgo!=null) ? Profile.read(pgo)
+                      : train       ? Profile.train(prog)
+                                    : null;
+
       // Optimization:
-      prog.simplify();
+      String             output = name + (elf ? ".o" : ".s");
+      Backend            target = x64 ? new X86_64(output)
+                                : elf ? IA32.toObject(output)
+                                      : new IA32(output);
+      target.setJumpThreading(level>0);
+      Peephole           peephole = (level>0) ? new Peephole() : null;
+      target.setPeephole(peephole);
+      LinearScan         scan = (level>0) ? new LinearScan(target) : null;
+      target.setRegisterAllocator(scan);
+      target.setOmitFramePointer(level>1);
+      target.setThreads(jobs);
+      target.setSourceFile(debug ? input : null);
+      target.setProfiling(prof);
+      target.setProfile(profile);
+      PassManager<Stmt>  passes = Optimizations.forLevel(level, target);
+      passes.run(prog);
+      if (stats) {
+        passes.report(System.out);
+        if (profile!=null) {
+          System.out.println("Profile: " + profile.size() + " blocks"
+                             + (profile.isTruncated()
+                                ? " (training stopped after "
+                                  + Profile.TRAINING_BUDGET + " steps)"
+                                : ""));
+        }
+      }
 
       // Output compiled program:
-      String output = args[0] + ".s";
-      new IA32(output).generateAssembly(output, prog);                   // <<<
+      if (useIR) {
+        ir.Function fn = Builder.lower("Main_main", prog);
+        SSA.construct(fn);
+        PassManager<ir.Function> irPasses = Passes.forLevel(level);
+        irPasses.run(fn);
+        if (stats) {
+          irPasses.report(System.out);
+        }
+        SSA.destruct(fn);
+        new CodeGen(target).generateAssembly(output, fn);
+      } else {
+        target.generateAssembly(output, prog);
+        if (stats) {
+          System.out.println("Jumps removed or threaded: "
+                             + target.getJumpsRemoved());
+          if (scan!=null) {
+            System.out.println("Variables in registers: "
+                               + scan.getAllocated() + ", on the stack: "
+                               + scan.getSpilled() + " (in "
+                               + scan.getSlots() + " slots)");
+          }
+        }
+      }
+      if (stats) {
+        long nanos = Math.max(1, target.getGenerationTime());
+        System.out.println("Code generation: " + target.getInstructions()
+                           + " instructions in " + (nanos/1000000) + "ms ("
+                           + (target.getInstructions()*1000000000L/nanos)
+                           + " instructions/s)");
+      }
+      if (stats && peephole!=null) {
+        System.out.println("Peephole rewrites: " + peephole.getRewrites()
+                           + " (" + peephole.ruleStats() + ")");
+      }
+      if (elf) {
+        System.out.println("Object code output: " + output);
+
+        // Link with a prebuilt runtime, compiling it only when it changes:
+        File rtsrc = new File("runtime.c");
+        File rtobj = new File("runtime.o");
+        if (!rtobj.exists() || rtobj.lastModified()<rtsrc.lastModified()) {
+          Runtime.getRuntime()                                           // <<<
+                 .exec("gcc -m32 -c -o runtime.o runtime.c")             // <<<
+                 .waitFor();                                             // <<<
+        }
+        Runtime.getRuntime()                                             // <<<
+               .exec("gcc -m32 -o " + name + " " + output + " runtime.o") // <<<
+               .waitFor();                                               // <<<
+        System.out.println("Executable program: " + name);
+        return;
+      }
       System.out.println("Assembly code output: " + output);
 
       // Invoke assembler to produce executable:
       Runtime.getRuntime()                                               // <<<
-             .exec("gcc -m32 -o " + args[0] + " " +                      // <<<
-                     args[0] + ".s runtime.c")                           // <<<
+             .exec("gcc " + (x64 ? "" : "-m32 ") + "-o " + name + " " +   // <<<
+                     name + ".s runtime.c")                              // <<<
              .waitFor();                                                 // <<<
-      System.out.println("Executable program: " + args[0]);
+      System.out.println("Executable program: " + name);
 
     } catch (Failure f) {
       handler.report(f);
@@ -36,39 +36,15 @@ public class Add extends BinArithExpr {
      */
     String label() { return "Add"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.ADD; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, "+"); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return new IntLit(pos, n+m); }
-
-    /** Simplification of a binary expression when the left operand
-     *  (but not the right) is a known integer constant.
-     */
-    Expr simpL(int m) {
-        // Commutative operator: swap operands and then use simpR:
-        Expr temp = left; left = right; right = temp;
-        return simpR(m);
-    }
-
-    /** Simplification of a binary expression when the right operand
-     *  (but not the left) is a known integer constant.
-     */
-    Expr simpR(int m) { return left.simpAdd(this, m);  }
-
-    /** Simplify an addition with a known integer as the right argument.
-     */
-    Expr simpAdd(Add orig, int m) {
-        IntLit rightInt = right.isIntLit();
-        return (rightInt==null)
-                ? orig
-                : left.newAdd(orig.pos, m + rightInt.getNum());
-    }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -79,7 +55,14 @@ public class Add extends BinArithExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        compileCommutativeOp(a, "addl", pushed, free);
+    public void compileExpr(Backend a, int pushed, int free) {
+        compileCommutativeOp(a, AsmOp.ADDL, pushed, free);
+    }
+
+    /** Generate code to update the variable lhs in place if this
+     *  expression has the form lhs + e (or e + lhs).
+     */
+    boolean compileUpdate(Backend a, int pushed, Id lhs) {
+        return compileUpdateOp(a, AsmOp.ADDL, true, pushed, lhs);
     }
 }
@@ -0,0 +1,295 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/** Collects the int-coded lines of assembly code that IA32 produces, and
+ *  writes them out as assembly language text when it is closed.  No text
+ *  exists until then: close() makes a single pass over the lines, writing
+ *  the text for each one into a reusable byte buffer, and passing the
+ *  buffer to a channel (a FileChannel when the output is a file) each
+ *  time that it fills up.  As a result, the time that -stats reports for
+ *  code generation does not include any formatting or file output.
+ */
+class AsmBuffer extends AsmList {
+
+    /** The channel that the text is written to when this buffer is closed.
+     */
+    private WritableByteChannel channel;
+
+    /** Construct a buffer that writes its output to the named file.
+     */
+    AsmBuffer(String filename)
+      throws IOException {
+        channel = FileChannel.open(Paths.get(filename),
+                                   StandardOpenOption.WRITE,
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Construct a buffer that writes its output to a stream.
+     */
+    AsmBuffer(OutputStream out) {
+        channel = Channels.newChannel(out);
+    }
+
+    /** The size of the buffer that text is written to.
+     */
+    private static final int BUFFER_SIZE = 64*1024;
+
+    /** An upper bound on the length of a line, not counting the text for
+     *  symbols, which is checked separately.
+     */
+    private static final int MAX_LINE = 128;
+
+    /** The text for each opcode, indexed by ordinal.
+     */
+    private static final byte[][] OP_TEXT = new byte[AsmOp.values().length][];
+    static {
+        for (AsmOp op : AsmOp.values()) {
+            OP_TEXT[op.ordinal()] = ascii(op.toString());
+        }
+    }
+
+    /** The names of the registers, indexed by register number.
+     */
+    private static final byte[][] REG_TEXT  = ascii(AsmOperand.REGS),
+                                  WIDE_TEXT = ascii(AsmOperand.WIDE_REGS),
+                                  BYTE_TEXT = ascii(AsmOperand.BYTE_REGS);
+
+    /** Other fragments of text.
+     */
+    private static final byte[] LABEL_TEXT = ascii(AsmOperand.LABEL_PREFIX),
+                                LOOP_TEXT  = ascii(AsmOperand.LOOP_PREFIX),
+                                RIP_TEXT   = ascii("(%rip)"),
+                                MIN_TEXT   = ascii(Integer.toString(Integer.MIN_VALUE));
+
+    /** Return the bytes of an ASCII string.
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Return the bytes of each of an array of ASCII strings.
+     */
+    private static byte[][] ascii(String[] ss) {
+        byte[][] bs = new byte[ss.length][];
+        for (int i=0; i<ss.length; i++) {
+            bs[i] = ascii(ss[i]);
+        }
+        return bs;
+    }
+
+    /** The buffer that text is written to.
+     */
+    private ByteBuffer buf;
+
+    /** The UTF-8 text for each symbol that has been written, indexed by
+     *  symbol number.
+     */
+    private ArrayList<byte[]> symbols = new ArrayList<byte[]>();
+
+    /** Write out the text for all of the lines, and close the channel.
+     */
+    public void close() {
+        try {
+            buf = ByteBuffer.allocate(BUFFER_SIZE);
+            for (int i=0; i<size(); i++) {
+                if (buf.remaining()<MAX_LINE) {
+                    drain();
+                }
+                line(i);
+            }
+            drain();
+            channel.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        buf = null;
+        clear();
+    }
+
+    /** Pass the text in the buffer to the channel, leaving it empty.
+     */
+    private void drain()
+      throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /** Write the text for line i: a label followed by a colon, or a tab,
+     *  the opcode, and (after another tab) the operands.  The operands of
+     *  .file and .loc are separated by spaces, and all others by commas.
+     */
+    private void line(int i)
+      throws IOException {
+        AsmOp op = op(i);
+        if (op==AsmOp.LABEL) {
+            operand(arg(i, 0));
+            buf.put((byte)':');
+        } else {
+            buf.put((byte)'\t');
+            buf.put(OP_TEXT[op.ordinal()]);
+            byte sep = (op==AsmOp.FILE || op==AsmOp.LOC) ? (byte)' ' : (byte)',';
+            for (int k=0; k<ARGS; k++) {
+                long x = arg(i, k);
+                if (x==AsmOperand.NONE) {
+                    break;
+                }
+                buf.put((k==0) ? (byte)'\t' : sep);
+                operand(x);
+            }
+        }
+        buf.put((byte)'\n');
+    }
+
+    /** Write the text for an operand, as described by AsmOperand.toString().
+     */
+    private void operand(long x)
+      throws IOException {
+        int v = AsmOperand.value(x);
+        switch (AsmOperand.kind(x)) {
+            case AsmOperand.REG :
+                buf.put((AsmOperand.isWide(x) ? WIDE_TEXT : REG_TEXT)[AsmOperand.reg(x)]);
+                break;
+
+            case AsmOperand.BYTE :
+                buf.put(BYTE_TEXT[AsmOperand.reg(x)]);
+                break;
+
+            case AsmOperand.IMM :
+                buf.put((byte)'$');
+                number(v);
+                break;
+
+            case AsmOperand.MEM :
+                if (v!=0) {
+                    number(v);
+                }
+                buf.put((byte)'(');
+                buf.put((AsmOperand.isWide(x) ? WIDE_TEXT : REG_TEXT)[AsmOperand.reg(x)]);
+                buf.put((byte)')');
+                break;
+
+            case AsmOperand.INDEX :
+                byte[][] rs = AsmOperand.isWide(x) ? WIDE_TEXT : REG_TEXT;
+                buf.put((byte)'(');
+                buf.put(rs[AsmOperand.reg(x)]);
+                buf.put((byte)',');
+                buf.put(rs[AsmOperand.index(x)]);
+                buf.put((byte)',');
+                number(AsmOperand.scale(x));
+                buf.put((byte)')');
+                break;
+
+            case AsmOperand.LABEL :
+                if (AsmOperand.row(x)>0) {
+                    buf.put(LOOP_TEXT);
+                    number(AsmOperand.row(x));
+                    buf.put((byte)'_');
+                }
+                buf.put(LABEL_TEXT);
+                number(v);
+                break;
+
+            case AsmOperand.DATA :
+                buf.put(LABEL_TEXT);
+                number(v);
+                if (AsmOperand.isWide(x)) {
+                    buf.put(RIP_TEXT);
+                }
+                break;
+
+            case AsmOperand.SYM :
+                symbol(x);
+                break;
+
+            case AsmOperand.NUM :
+                number(v);
+                break;
+
+            case AsmOperand.STR :
+                buf.put((byte)'"');
+                symbol(x);
+                buf.put((byte)'"');
+                break;
+        }
+    }
+
+    /** Write a number in decimal, without building a string.
+     */
+    private void number(int v) {
+        if (v==Integer.MIN_VALUE) {
+            buf.put(MIN_TEXT);
+            return;
+        } else if (v<0) {
+            buf.put((byte)'-');
+            v = -v;
+        }
+        int p = 1;
+        while (p<=v/10) {
+            p *= 10;
+        }
+        for (; p>0; p/=10) {
+            buf.put((byte)('0' + (v/p)%10));
+        }
+    }
+
+    /** Write the text for the symbol that an operand refers to, which may
+     *  be longer than the space that is left in the buffer.  The text is
+     *  only encoded the first time that the symbol is written.
+     */
+    private void symbol(long x)
+      throws IOException {
+        int s = AsmOperand.value(x);
+        while (symbols.size()<=s) {
+            symbols.add(null);
+        }
+        byte[] bs = symbols.get(s);
+        if (bs==null) {
+            bs = AsmOperand.symbol(x).getBytes(StandardCharsets.UTF_8);
+            symbols.set(s, bs);
+        }
+        if (bs.length + MAX_LINE > buf.remaining()) {
+            drain();
+        }
+        if (bs.length + MAX_LINE > buf.remaining()) {
+            ByteBuffer big = ByteBuffer.wrap(bs);
+            while (big.hasRemaining()) {
+                channel.write(big);
+            }
+        } else {
+            buf.put(bs);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import java.util.Arrays;
+
+/** Collects lines of assembly code in memory, so that code that has been
+ *  generated separately can later be appended to another output.  Each
+ *  line is stored in primitive arrays as the ordinal of its opcode and
+ *  the kind and value words of its three operands, so that no objects are
+ *  allocated for the code.  This is also the representation that the
+ *  peephole optimizer works on, and that AsmBuffer and IA32Encoder collect
+ *  before writing their output.
+ */
+class AsmList implements AsmOutput {
+
+    /** The number of operands that are stored for each line.
+     */
+    static final int ARGS = 3;
+
+    /** The opcode ordinal for each line.
+     */
+    private int[] ops = new int[256];
+
+    /** The kind words for the operands of each line, ARGS per line.
+     */
+    private int[] kinds = new int[ARGS*256];
+
+    /** The value words for the operands of each line, ARGS per line.
+     */
+    private int[] values = new int[ARGS*256];
+
+    /** The number of lines that have been stored.
+     */
+    private int size = 0;
+
+    /** Store a single label or instruction.
+     */
+    public void write(AsmOp op, long a, long b, long c) {
+        if (size==ops.length) {
+            ops    = Arrays.copyOf(ops, 2*size);
+            kinds  = Arrays.copyOf(kinds, 2*ARGS*size);
+            values = Arrays.copyOf(values, 2*ARGS*size);
+        }
+        int j       = ARGS*size;
+        ops[size++] = op.ordinal();
+        kinds[j]    = (int)(a >>> 32);
+        values[j]   = (int)a;
+        kinds[j+1]  = (int)(b >>> 32);
+        values[j+1] = (int)b;
+        kinds[j+2]  = (int)(c >>> 32);
+        values[j+2] = (int)c;
+    }
+
+    /** Nothing needs to be done to close a list.
+     */
+    public void close() {
+        /* lines are kept until they are written out */
+    }
+
+    /** Return the number of lines that have been stored.
+     */
+    int size() {
+        return size;
+    }
+
+    /** Return the opcode for line i.
+     */
+    AsmOp op(int i) {
+        return AsmOp.of(ops[i]);
+    }
+
+    /** Return operand k of line i.
+     */
+    long arg(int i, int k) {
+        int j = ARGS*i + k;
+        return ((long)kinds[j] << 32) | (values[j] & 0xffffffffL);
+    }
+
+    /** Remove line i, moving the lines that follow it up.
+     */
+    void remove(int i) {
+        System.arraycopy(ops, i+1, ops, i, size-i-1);
+        System.arraycopy(kinds, ARGS*(i+1), kinds, ARGS*i, ARGS*(size-i-1));
+        System.arraycopy(values, ARGS*(i+1), values, ARGS*i, ARGS*(size-i-1));
+        size--;
+    }
+
+    /** Remove all of the stored lines.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /** Write line i to another output.
+     */
+    void writeLine(int i, AsmOutput out) {
+        out.write(op(i), arg(i, 0), arg(i, 1), arg(i, 2));
+    }
+
+    /** Write all of the stored lines to another output, in order.
+     */
+    void writeTo(AsmOutput out) {
+        for (int i=0; i<size; i++) {
+            writeLine(i, out);
+        }
+    }
+
+    /** Add n to the number of every label that is defined or used in the
+     *  stored lines.  This is used when code that was generated with its
+     *  own label numbers is combined with other code.
+     */
+    void relocate(int n) {
+        for (int j=0; j<ARGS*size; j++) {
+            long x = ((long)kinds[j] << 32) | (values[j] & 0xffffffffL);
+            if (AsmOperand.isLabel(x)) {
+                values[j] += n;
+            }
+        }
+    }
+}
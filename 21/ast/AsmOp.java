@@ -0,0 +1,186 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+
+/** Names the instructions and assembler directives that IA32 generates.
+ *  Code is passed from the code generators, through the peephole
+ *  optimizer, to an AsmOutput as one of these values together with its
+ *  operands, which are encoded as numbers by AsmOperand; the text of an
+ *  instruction is only needed when the output is written as assembly
+ *  language.  Instructions use the 32 bit IA32 names for operations on
+ *  int values, with a few 64 bit forms for X86_64 stack manipulation.
+ *  LABEL is a pseudo instruction whose single operand is the label (or
+ *  symbol) that it defines.
+ */
+public enum AsmOp {
+    LABEL(null),
+    MOVL("movl"), ADDL("addl"), SUBL("subl"), ANDL("andl"), ORL("orl"),
+    XORL("xorl"), CMPL("cmpl"), TESTL("testl"), IMULL("imull"),
+    IDIVL("idivl"), XCHGL("xchgl"), SALL("sall"), SHRL("shrl"),
+    SARL("sarl"), NOTL("notl"), NEGL("negl"), INCL("incl"), DECL("decl"),
+    PUSHL("pushl"), POPL("popl"), CLTD("cltd"), RET("ret"), LEAL("leal"),
+    MOVZBL("movzbl"), CALL("call"), JMP("jmp"),
+    MOVQ("movq"), ADDQ("addq"), SUBQ("subq"), ANDQ("andq"),
+    PUSHQ("pushq"), POPQ("popq"),
+    JZ("jz", 4), JNZ("jnz", 5), JE("je", 4), JNE("jne", 5),
+    JL("jl", 12), JNL("jnl", 13), JGE("jge", 13),
+    JLE("jle", 14), JNG("jng", 14), JG("jg", 15),
+    SETZ("setz", 4), SETNZ("setnz", 5), SETE("sete", 4), SETNE("setne", 5),
+    SETL("setl", 12), SETNL("setnl", 13), SETGE("setge", 13),
+    SETLE("setle", 14), SETNG("setng", 14), SETG("setg", 15),
+    CMOVZ("cmovz", 4), CMOVNZ("cmovnz", 5), CMOVE("cmove", 4),
+    CMOVNE("cmovne", 5), CMOVL("cmovl", 12), CMOVNL("cmovnl", 13),
+    CMOVGE("cmovge", 13), CMOVLE("cmovle", 14), CMOVNG("cmovng", 14),
+    CMOVG("cmovg", 15),
+    FILE(".file"), LOC(".loc"), GLOBL(".globl"), BSS(".bss"),
+    DATA(".data"), ALIGN(".align"), SPACE(".space"), LONG(".long");
+
+    /** The name of this instruction in assembly language, or null for a
+     *  label.
+     */
+    private final String text;
+
+    /** The condition code (as used in the encodings of jcc, setcc, and
+     *  cmovcc) that this instruction tests, or -1 if it is not conditional.
+     */
+    private final int cond;
+
+    /** The setcc, cmovcc, and inverse jcc instructions that correspond to
+     *  a conditional jump, or null for any other instruction.
+     */
+    private AsmOp set, cmov, invert;
+
+    /** Records whether this is a setcc or a cmovcc instruction.
+     */
+    private boolean isSet, isCmov;
+
+    /** The 64 bit form of a 32 bit instruction, or the instruction itself
+     *  if there is no 64 bit form.
+     */
+    private AsmOp wide = this;
+
+    /** Construct an instruction that is not conditional.
+     */
+    AsmOp(String text) {
+        this(text, -1);
+    }
+
+    /** Construct an instruction that tests the given condition code.
+     */
+    AsmOp(String text, int cond) {
+        this.text = text;
+        this.cond = cond;
+    }
+
+    static {
+        AsmOp[][] jumps = { { JZ,  SETZ,  CMOVZ,  JNZ }, { JNZ, SETNZ, CMOVNZ, JZ  },
+                            { JE,  SETE,  CMOVE,  JNE }, { JNE, SETNE, CMOVNE, JE  },
+                            { JL,  SETL,  CMOVL,  JGE }, { JNL, SETNL, CMOVNL, JL  },
+                            { JGE, SETGE, CMOVGE, JL  }, { JLE, SETLE, CMOVLE, JG  },
+                            { JNG, SETNG, CMOVNG, JG  }, { JG,  SETG,  CMOVG,  JLE } };
+        for (int i=0; i<jumps.length; i++) {
+            jumps[i][0].set    = jumps[i][1];
+            jumps[i][0].cmov   = jumps[i][2];
+            jumps[i][0].invert = jumps[i][3];
+            jumps[i][1].isSet  = true;
+            jumps[i][2].isCmov = true;
+        }
+        AsmOp[][] wides = { { MOVL, MOVQ }, { ADDL, ADDQ }, { SUBL, SUBQ },
+                            { ANDL, ANDQ }, { PUSHL, PUSHQ }, { POPL, POPQ } };
+        for (int i=0; i<wides.length; i++) {
+            wides[i][0].wide = wides[i][1];
+        }
+    }
+
+    /** Holds all of the values of this type, indexed by ordinal.
+     */
+    private static final AsmOp[] OPS = values();
+
+    /** Return the instruction with the given ordinal.
+     */
+    static AsmOp of(int ordinal) {
+        return OPS[ordinal];
+    }
+
+    /** Return the name of this instruction in assembly language.
+     */
+    public String toString() {
+        return (text==null) ? "label" : text;
+    }
+
+    /** Test to see if this is an assembler directive.
+     */
+    boolean isDirective() {
+        return text!=null && text.charAt(0)=='.';
+    }
+
+    /** Return the condition code for a conditional instruction, or -1.
+     */
+    int getCond() {
+        return cond;
+    }
+
+    /** Test to see if this is a conditional jump.
+     */
+    boolean isBranch() {
+        return set!=null;
+    }
+
+    /** Test to see if this is a setcc instruction.
+     */
+    boolean isSet() {
+        return isSet;
+    }
+
+    /** Test to see if this is a cmovcc instruction.
+     */
+    boolean isCmov() {
+        return isCmov;
+    }
+
+    /** Return the setcc instruction that sets a byte to 1 in exactly the
+     *  cases where this conditional jump would be taken.
+     */
+    public AsmOp set() {
+        return set;
+    }
+
+    /** Return the cmovcc instruction that moves in exactly the cases where
+     *  this conditional jump would be taken.
+     */
+    public AsmOp cmov() {
+        return cmov;
+    }
+
+    /** Return the conditional jump that is taken in exactly the cases where
+     *  this one is not.
+     */
+    public AsmOp invert() {
+        return invert;
+    }
+
+    /** Return the 64 bit form of this instruction, for operations on the
+     *  stack and frame pointers.
+     */
+    AsmOp wide() {
+        return wide;
+    }
+}
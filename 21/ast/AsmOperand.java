@@ -0,0 +1,332 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Encodes the operands of the instructions that IA32 generates as long
+ *  values, so that code can be buffered, inspected by the peephole
+ *  optimizer, and encoded as machine code without building or parsing
+ *  any strings.  The high word of an operand holds its kind together
+ *  with any registers (or, for the label at the top of a loop, a source
+ *  line), and the low word holds its value: an immediate, a displacement,
+ *  a label number, or an index into the symbol table.  The operand NONE,
+ *  which is zero, stands for a missing operand.  Registers are numbered
+ *  as in their ModR/M encodings, with %r8 to %r15 as 8 to 15.
+ */
+final class AsmOperand {
+
+    private AsmOperand() {
+    }
+
+    /** Kinds of operand.
+     */
+    static final int NONE  = 0,   // no operand
+                     REG   = 1,   // a register
+                     BYTE  = 2,   // the low byte of a register
+                     IMM   = 3,   // $value
+                     MEM   = 4,   // value(base)
+                     INDEX = 5,   // (base,index,scale)
+                     LABEL = 6,   // a label in the code
+                     DATA  = 7,   // the data at a label
+                     SYM   = 8,   // an external name
+                     NUM   = 9,   // a number in a directive
+                     STR   = 10;  // a quoted string in a directive
+
+    /** Set in the kind word for registers (including base and index
+     *  registers) that are named using their 64 bit forms.
+     */
+    private static final int WIDE = 0x10;
+
+    /** Register numbers.
+     */
+    static final int EAX = 0, ECX = 1, EDX = 2, EBX = 3,
+                     ESP = 4, EBP = 5, ESI = 6, EDI = 7,
+                     R8D = 8, R9D = 9, R10D = 10, R11D = 11,
+                     R12D = 12, R13D = 13, R14D = 14, R15D = 15;
+
+    /** The names of the 32 bit registers.
+     */
+    static final String[] REGS
+        = { "%eax", "%ecx", "%edx", "%ebx", "%esp", "%ebp", "%esi", "%edi",
+            "%r8d", "%r9d", "%r10d", "%r11d", "%r12d", "%r13d", "%r14d", "%r15d" };
+
+    /** The names of the 64 bit registers.
+     */
+    static final String[] WIDE_REGS
+        = { "%rax", "%rcx", "%rdx", "%rbx", "%rsp", "%rbp", "%rsi", "%rdi",
+            "%r8", "%r9", "%r10", "%r11", "%r12", "%r13", "%r14", "%r15" };
+
+    /** The names of the 8 bit registers.  The names for registers 4 to 7
+     *  are only valid in 64 bit mode.
+     */
+    static final String[] BYTE_REGS
+        = { "%al", "%cl", "%dl", "%bl", "%spl", "%bpl", "%sil", "%dil",
+            "%r8b", "%r9b", "%r10b", "%r11b", "%r12b", "%r13b", "%r14b", "%r15b" };
+
+    /** The prefix for the names of labels, which cannot clash with the
+     *  names in user programs.
+     */
+    static final String LABEL_PREFIX = "l";
+
+    /** The prefix for the names of labels at the top of loops when line
+     *  number information is enabled, so that a profiler that reports
+     *  samples against the nearest symbol shows where they came from.
+     */
+    static final String LOOP_PREFIX = "while";
+
+    /** Return an operand with the given kind word and value.
+     */
+    private static long make(int kind, int value) {
+        return ((long)kind << 32) | (value & 0xffffffffL);
+    }
+
+    /** Return the kind of an operand.
+     */
+    static int kind(long x) {
+        return (int)(x >>> 32) & 0xf;
+    }
+
+    /** Return the value of an operand.
+     */
+    static int value(long x) {
+        return (int)x;
+    }
+
+    /** Return the register of a register operand, or the base register
+     *  of a memory operand.
+     */
+    static int reg(long x) {
+        return (int)(x >>> 40) & 0xf;
+    }
+
+    /** Return the index register of an indexed operand.
+     */
+    static int index(long x) {
+        return (int)(x >>> 44) & 0xf;
+    }
+
+    /** Return the scale factor of an indexed operand.
+     */
+    static int scale(long x) {
+        return 1 << ((int)(x >>> 48) & 0x3);
+    }
+
+    /** Return the source line that is included in the name of a label, or
+     *  zero if there is none.
+     */
+    static int row(long x) {
+        return (int)(x >>> 40);
+    }
+
+    /** Test to see if the registers in an operand use their 64 bit names.
+     */
+    static boolean isWide(long x) {
+        return ((x >>> 32) & WIDE)!=0;
+    }
+
+    /** Return a register operand.
+     */
+    static long reg(int r) {
+        return make(REG | (r << 8), 0);
+    }
+
+    /** Return an operand for the low byte of a register.
+     */
+    static long byteReg(int r) {
+        return make(BYTE | (r << 8), 0);
+    }
+
+    /** Return an operand using immediate addressing.
+     */
+    static long immed(int v) {
+        return make(IMM, v);
+    }
+
+    /** Return a reference to memory at the given displacement from the
+     *  address in the register base (itself a register operand).
+     */
+    static long mem(int disp, long base) {
+        return make(MEM | (reg(base) << 8) | (isWide(base) ? WIDE : 0), disp);
+    }
+
+    /** Return a reference to memory at base + index*scale, where base and
+     *  index are register operands, and scale is 1, 2, 4, or 8.
+     */
+    static long index(long base, long index, int scale) {
+        return make(INDEX | (reg(base) << 8) | (reg(index) << 12)
+                          | (Integer.numberOfTrailingZeros(scale) << 16)
+                          | (isWide(base) ? WIDE : 0), 0);
+    }
+
+    /** Return an operand for a label, naming it after the given source
+     *  line if that is positive.
+     */
+    static long label(int lab, int row) {
+        return make(LABEL | ((row>0 && row<(1<<23)) ? (row << 8) : 0), lab);
+    }
+
+    /** Return a reference to the data at a label.
+     */
+    static long data(int lab) {
+        return make(DATA, lab);
+    }
+
+    /** Return an operand for a number in a directive.
+     */
+    static long number(int v) {
+        return make(NUM, v);
+    }
+
+    /** Return an operand for an external name.
+     */
+    static long symbol(String s) {
+        return make(SYM, intern(s));
+    }
+
+    /** Return an operand for a string in a directive.
+     */
+    static long string(String s) {
+        return make(STR, intern(s));
+    }
+
+    /** Return the same operand with its registers named using their 64
+     *  bit forms, or, for a reference to data, with an address that is
+     *  relative to the instruction pointer.
+     */
+    static long wide(long x) {
+        return x | ((long)WIDE << 32);
+    }
+
+    /** Return an operand with the same kind as x, but with its value
+     *  increased by n.  This is used to relocate labels.
+     */
+    static long offset(long x, int n) {
+        return (x & 0xffffffff00000000L) | ((value(x) + n) & 0xffffffffL);
+    }
+
+    /** Test to see if an operand is a register.
+     */
+    static boolean isReg(long x) {
+        int k = kind(x);
+        return k==REG || k==BYTE;
+    }
+
+    /** Test to see if an operand refers to memory.
+     */
+    static boolean isMem(long x) {
+        int k = kind(x);
+        return k==MEM || k==INDEX || k==DATA;
+    }
+
+    /** Test to see if an operand is a label or a reference to the data at
+     *  a label, and so needs to be relocated when code that was generated
+     *  separately is combined.
+     */
+    static boolean isLabel(long x) {
+        int k = kind(x);
+        return k==LABEL || k==DATA;
+    }
+
+    /** Test to see if the operand x is the same as y, or uses the register
+     *  y to compute an address.
+     */
+    static boolean uses(long x, long y) {
+        if (x==y) {
+            return true;
+        } else if (!isReg(y)) {
+            return false;
+        }
+        int k = kind(x);
+        return (k==MEM || k==INDEX) && reg(x)==reg(y)
+            || k==INDEX && index(x)==reg(y);
+    }
+
+    /** Return a value that identifies the label or symbol that an operand
+     *  refers to, ignoring the way that it is named.
+     */
+    static long key(long x) {
+        return isLabel(x) ? make(LABEL, value(x)) : x;
+    }
+
+    /** The names and strings that operands refer to.  These are shared by
+     *  all of the code generator threads.
+     */
+    private static ArrayList<String> symbols = new ArrayList<String>();
+
+    /** Maps each symbol to its index in symbols.
+     */
+    private static HashMap<String, Integer> symbolIndex
+        = new HashMap<String, Integer>();
+
+    /** Return the index of a symbol, adding it to the table if necessary.
+     */
+    private static synchronized int intern(String s) {
+        Integer i = symbolIndex.get(s);
+        if (i==null) {
+            i = symbols.size();
+            symbols.add(s);
+            symbolIndex.put(s, i);
+        }
+        return i;
+    }
+
+    /** Return the symbol or string that an operand refers to.
+     */
+    static synchronized String symbol(long x) {
+        return symbols.get(value(x));
+    }
+
+    /** Return the name of a label or a symbol.
+     */
+    static String name(long x) {
+        if (kind(x)==SYM) {
+            return symbol(x);
+        } else if (kind(x)==LABEL && row(x)>0) {
+            return LOOP_PREFIX + row(x) + "_" + LABEL_PREFIX + value(x);
+        } else {
+            return LABEL_PREFIX + value(x);
+        }
+    }
+
+    /** Return the text for an operand as it appears in assembly language.
+     *  This is used for messages; AsmBuffer writes the same text as bytes.
+     */
+    static String toString(long x) {
+        int v = value(x);
+        switch (kind(x)) {
+            case REG   : return (isWide(x) ? WIDE_REGS : REGS)[reg(x)];
+            case BYTE  : return BYTE_REGS[reg(x)];
+            case IMM   : return "$" + v;
+            case MEM   : return ((v==0) ? "" : Integer.toString(v))
+                                + "(" + (isWide(x) ? WIDE_REGS : REGS)[reg(x)] + ")";
+            case INDEX : String[] rs = isWide(x) ? WIDE_REGS : REGS;
+                         return "(" + rs[reg(x)] + "," + rs[index(x)]
+                                    + "," + scale(x) + ")";
+            case LABEL :
+            case SYM   : return name(x);
+            case DATA  : return name(x) + (isWide(x) ? "(%rip)" : "");
+            case NUM   : return Integer.toString(v);
+            case STR   : return "\"" + symbol(x) + "\"";
+            default    : return "";
+        }
+    }
+}
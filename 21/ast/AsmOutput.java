@@ -0,0 +1,36 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+
+/** Receives the lines of assembly code that IA32 produces, either to be
+ *  written out as text, or to be encoded directly as machine code.  Each
+ *  line is an opcode, which is LABEL for a label, and up to three operands
+ *  encoded by AsmOperand, with AsmOperand.NONE for any that are missing.
+ */
+interface AsmOutput {
+
+    /** Output a single label or instruction.
+     */
+    public void write(AsmOp op, long a, long b, long c);
+
+    /** Finish the output and free up any associated resources.
+     */
+    public void close();
+}
@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** Abstract syntax for assignment statements.
  */
@@ -63,6 +64,17 @@ public class Assign extends PosStmt {
         out.println(";");
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n);
+        lhs.emitC(out);
+        out.print(" = ");
+        rhs.emitC(out);
+        out.println(";");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -115,23 +127,69 @@ public class Assign extends PosStmt {
         return lhs.addTo(rhs.analyze(init, initialized));
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
-        rhs = rhs.simplify();
+    public void simplify(Simplifier rw) {
+        rhs = rw.rewrite(rhs);
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
         lhs.store(rhs.eval());
     }
 
     /** Generate code for executing this statement.
      */
-    public void compile(IA32 a, int pushed) {
-        rhs.compileExpr(a, pushed, 0);
-        a.emit("movl", a.reg(0), lhs.fromStackFrame(a, pushed));
+    public void compile(Backend a, int pushed) {
+        a.line(pos);
+        if (Rewriter.isLiteral(rhs)) {
+            a.emit(AsmOp.MOVL, rhs.operand(a, pushed), lhs.fromStackFrame(a, pushed));
+        } else if (!rhs.compileUpdate(a, pushed, lhs)) {
+            rhs.compileExpr(a, pushed, 0);
+            a.emit(AsmOp.MOVL, a.reg(0), lhs.fromStackFrame(a, pushed));
+        }
+    }
+
+    /** Return the variable that this statement assigns to.
+     */
+    Id getLhs() {
+        return lhs;
+    }
+
+    /** Return the expression whose value is assigned.
+     */
+    Expr getRhs() {
+        return rhs;
+    }
+
+    /** An assignment is trivially a single assignment.
+     */
+    Assign singleAssign() {
+        return this;
+    }
+
+    /** Record the variables that are used by this statement.
+     */
+    void scan(LinearScan ls) {
+        ls.step();
+        ls.need(rhs.scan(ls));
+        lhs.scan(ls);
+    }
+
+    /** Generate JVM bytecode for executing this statement.
+     */
+    void compileJVM(JVMEmitter c) {
+        rhs.compileJVM(c);
+        lhs.storeJVM(c);
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
+        b.copy(lhs.lowerVar(b), rhs.lower(b));
     }
 }
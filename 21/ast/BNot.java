@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for bitwise not expressions (~).
  */
@@ -36,6 +38,10 @@ public class BNot extends UnExpr {
      */
     String label() { return "BNot"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.BNOT; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
@@ -54,11 +60,6 @@ public class BNot extends UnExpr {
         return type = exp.require(typing, Type.INT, Type.BOOLEAN);
     }
 
-    /** Constant folding for unary operators with a known integer
-     *  argument.
-     */
-    Expr fold(int n) { return new IntLit(pos, ~n); }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -79,12 +80,19 @@ public class BNot extends UnExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
+    public void compileExpr(Backend a, int pushed, int free) {
         exp.compileExpr(a, pushed, free);
         if (type==Type.BOOLEAN) {
-            a.emit("xorl", a.immed(1), a.reg(free));
+            a.emit(AsmOp.XORL, a.immed(1), a.reg(free));
         } else {
-            a.emit("notl", a.reg(free));
+            a.emit(AsmOp.NOTL, a.reg(free));
         }
     }
+
+    /** Lower this expression to intermediate code.  A bitwise complement
+     *  of a Boolean value is the same as a logical not.
+     */
+    Operand lower(Builder b) {
+        return b.unary((type==Type.BOOLEAN) ? Op.LNOT : Op.BNOT, exp.lower(b));
+    }
 }
@@ -0,0 +1,282 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import compiler.Position;
+
+/** Describes the operations that the code generators for abstract syntax
+ *  trees and for intermediate code use to produce assembly language for a
+ *  target machine.  Instructions are named by AsmOp values, which use the
+ *  32 bit IA32 names for operations on int values (movl, addl, cmpl, ...),
+ *  so a backend for another member of the x86 family need only change the
+ *  way that it allocates registers, uses the stack, and calls functions.
+ *  Operands are long values that are built by the backend (with reg(),
+ *  immed(), local(), and so on), and labels are numbered with ints, so no
+ *  text is produced until the output is written.
+ */
+public interface Backend {
+
+    /** Output assembly code for the given program.
+     */
+    public void generateAssembly(String name, Stmt stmt);
+
+    /** Close this object and free up associated resources.
+     */
+    public void close();
+
+    /** Set the register allocator for variables, or disable register
+     *  allocation if the argument is null.
+     */
+    public void setRegisterAllocator(LinearScan scan);
+
+    /** Set the peephole optimizer for this object, or disable peephole
+     *  optimization if the argument is null.
+     */
+    public void setPeephole(Peephole peephole);
+
+    /** Enable or disable jump threading.
+     */
+    public void setJumpThreading(boolean threading);
+
+    /** Test to see if jump threading is enabled.
+     */
+    public boolean isThreading();
+
+    /** Return the number of jumps and branches that have been removed or
+     *  threaded.
+     */
+    public int getJumpsRemoved();
+
+    /** Return the number of instructions that have been generated.
+     */
+    public int getInstructions();
+
+    /** Return the time in nanoseconds that was spent generating code, not
+     *  including the time taken to write the output file.
+     */
+    public long getGenerationTime();
+
+    /** Set the number of threads that are used for code generation, with
+     *  zero for sequential code generation.
+     */
+    public void setThreads(int threads);
+
+    /** Enable or disable frame pointer omission.
+     */
+    public void setOmitFramePointer(boolean omitFramePointer);
+
+    /** Return a fresh (i.e., previously unused) label.
+     */
+    public int newLabel();
+
+    /** Enable or disable block execution counters.
+     */
+    public void setProfiling(boolean profiling);
+
+    /** Test to see if block execution counters are enabled.
+     */
+    public boolean isProfiling();
+
+    /** Emit code to increment the execution counter for the given arm of
+     *  the statement at the given position, if counters are enabled.
+     */
+    public void count(Position pos, int arm);
+
+    /** Set the profile that is used to guide block layout, or disable
+     *  profile guided layout if the argument is null.
+     */
+    public void setProfile(Profile profile);
+
+    /** Return the profile that is used to guide block layout, or null if
+     *  there is none.
+     */
+    public Profile getProfile();
+
+    /** Arrange for code to be generated out of line, after the end of
+     *  the current function.  The code must begin with a label, and must
+     *  finish by jumping to next.
+     */
+    public void defer(int next, Runnable code);
+
+    /** Return a fresh label for the top of a loop at the given position.
+     */
+    public int loopLabel(Position pos);
+
+    /** Request line number information for the named source file, or
+     *  disable it if the argument is null.
+     */
+    public void setSourceFile(String sourceFile);
+
+    /** Record that the code that follows was generated from the source
+     *  line at the given position.
+     */
+    public void line(Position pos);
+
+    /** Output the directives that begin the code for the named input
+     *  file, followed by the definition of the global name entry, at
+     *  which execution of the program starts.
+     */
+    public void emitEntry(String name, String entry);
+
+    /** Output a label at the beginning of a line.
+     */
+    public void emitLabel(int lab);
+
+    /** Output the label that follows a statement compiled by compileTo().
+     *  Every jump to it has already been generated, or is in code that
+     *  was passed to defer(), so it can be omitted if nothing refers to it.
+     */
+    public void emitJoinLabel(int lab);
+
+    /** Output an unconditional jump to the given label.
+     */
+    public void jump(int lab);
+
+    /** Output a conditional branch, using the given opcode, to a label.
+     */
+    public void branch(AsmOp op, int lab);
+
+    /** Return the number of registers that are available for use in
+     *  evaluating expressions.
+     */
+    public int getNumRegs();
+
+    /** Set the number of registers that are used for evaluating
+     *  expressions.
+     */
+    public void setNumTemps(int temps);
+
+    /** Return the callee saved registers that can hold variables when
+     *  only the first temps registers are used for evaluating expressions.
+     */
+    public int[] variableRegs(int temps);
+
+    /** Record that a register, given by its number, must be saved on entry
+     *  and restored on exit.
+     */
+    public void saveOnEntry(int reg);
+
+    /** Record that the callee saved registers among those that are used
+     *  for evaluating expressions must be saved on entry.
+     */
+    public void saveTemps();
+
+    /** Return an estimate of the number of cycles that are needed to
+     *  execute an instruction with the given opcode.
+     */
+    public int cycles(AsmOp op);
+
+    /** Return an operand for the physical register corresponding to a
+     *  specific logical register.
+     */
+    public long reg(int free);
+
+    /** Return an operand for a byte register that can be used to compute
+     *  a value for reg(free) with a setcc instruction.
+     */
+    public long byteReg(int free);
+
+    /** Determine whether spilling is required to access the specified
+     *  logical register.
+     */
+    public boolean spillFor(int free);
+
+    /** Output code to preserve the value in a register, if necessary,
+     *  given the number of bytes that have been pushed, and returning the
+     *  number of bytes that were pushed.
+     */
+    public int spill(int free, int pushed);
+
+    /** Output code to restore a register that was preserved by spill(),
+     *  given the number of bytes that had been pushed before the spill.
+     */
+    public void unspill(int free, int pushed);
+
+    /** Output the code that reports a division by zero, if any division
+     *  in the current function has referenced it.
+     */
+    public void emitDivideByZero();
+
+    /** Emit code to divide the value in reg(free) by the value in
+     *  reg(free+1), leaving the quotient in reg(free).
+     */
+    public void divide(int free);
+
+    /** Emit code to divide the value in reg(free) by the nonzero constant
+     *  d, leaving the quotient in reg(free).
+     */
+    public void divideConst(int free, int d, int pushed);
+
+    /** Return an estimate of the number of cycles that are needed for the
+     *  code that divideConst() produces for the divisor d.
+     */
+    public int divideCycles(int d);
+
+    /** Emit code to multiply the value in reg(free) by the constant c,
+     *  leaving the result in reg(free).
+     */
+    public void multiplyConst(int free, int c);
+
+    /** Return an estimate of the number of cycles that are needed for the
+     *  code that multiplyConst() produces for the constant c.
+     */
+    public int multiplyCycles(int c);
+
+    /** Emit an instruction with no operands.
+     */
+    public void emit(AsmOp op);
+
+    /** Emit an instruction with one operand.
+     */
+    public void emit(AsmOp op, long op1);
+
+    /** Emit an instruction with two operands.
+     */
+    public void emit(AsmOp op, long op1, long op2);
+
+    /** Return an operand using immediate addressing.
+     */
+    public long immed(int v);
+
+    /** Return an operand that references the memory location for a
+     *  specific local variable.
+     */
+    public long local(int offset, int pushed);
+
+    /** Output the prologue code section at the start of a function,
+     *  returning the number of bytes that have been pushed onto the stack
+     *  since the function was entered.
+     */
+    public int emitPrologue(int localBytes);
+
+    /** Output the epilogue code section at the end of a function.
+     */
+    public void emitEpilogue();
+
+    /** Insert the alignment bytes that are needed before a call to the
+     *  print function, given the number of bytes that have been pushed,
+     *  and return the number of bytes that were inserted.
+     */
+    public int printAdjust(int pushed);
+
+    /** Pass the value in src to the print function and call it, then
+     *  remove the adjust bytes that printAdjust() inserted.
+     */
+    public void callPrint(long src, int adjust);
+}
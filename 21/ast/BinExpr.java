@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for binary expressions.
  */
@@ -42,6 +44,12 @@ public abstract class BinExpr extends Expr {
     
         // Compute the depth of this expression:
         depth = 1 + Math.max(left.getDepth(), right.getDepth());
+
+        // Compute the number of registers needed, with the argument that
+        // is evaluated second held in one more register:
+        int l = left.getNeed();
+        int r = right.getNeed();
+        need  = leftFirst() ? Math.max(l, 1+r) : Math.max(r, 1+l);
     }
 
     /** Return a string that provides a simple description of this
@@ -68,6 +76,18 @@ public abstract class BinExpr extends Expr {
         right.parenPrint(out);
     }
 
+    /** Output a translation of this expression into C.  Every binary
+     *  operation is parenthesized, because C gives some operators (such
+     *  as &) a different precedence than mini.
+     */
+    void emitC(CEmitter out) {
+        out.print("(");
+        left.emitC(out);
+        out.print(" " + CEmitter.operator(op(), type) + " ");
+        right.emitC(out);
+        out.print(")");
+    }
+
     /** Print out this expression, wrapping it in parentheses if the
      *  expression includes a binary or unary operand.
      */
@@ -128,53 +148,6 @@ public abstract class BinExpr extends Expr {
         return right.analyze(init, left.analyze(init, initialized));
     }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        left            = left.simplify();
-        right           = right.simplify();
-        IntLit leftInt  = left.isIntLit();
-        IntLit rightInt = right.isIntLit();
-        if (leftInt==null) {
-            return (rightInt==null) ? this : this.simpR(rightInt.getNum());
-        } else {
-            return (rightInt==null) ? this.simpL(leftInt.getNum())
-                                    : this.fold(leftInt.getNum(),
-                                                rightInt.getNum());
-        }
-    }
-
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return this; }
-
-    /** Simplification of a binary expression when the left operand
-     *  (but not the right) is a known integer constant.
-     */
-    Expr simpL(int m) {
-        // Default behavior is to leave expression unchanged.
-        return this;
-    }
-
-    /** Simplification of a binary expression when the right operand
-     *  (but not the left) is a known integer constant.
-     */
-    Expr simpR(int m) { return this; }
-
     /** Return the depth of this expression as a measure of how complicated
      *  the expression is / how many registers will be needed to evaluate it.
      */
@@ -189,6 +162,32 @@ public abstract class BinExpr extends Expr {
      */
     protected int depth;
 
+    /** Return the number of registers that are needed to evaluate this
+     *  expression without spilling.
+     */
+    int getNeed() {
+        return need;
+    }
+
+    /** Records the number of registers that are needed to evaluate this
+     *  expression, computed by the constructor.
+     */
+    protected int need;
+
+    /** Test to see if compileBin() evaluates the left argument before the
+     *  right.  Following Sethi and Ullman, the argument that needs more
+     *  registers goes first, so that all but one of those registers are
+     *  free again while the other argument is evaluated; ties go to the
+     *  left, which avoids an exchange for non-commutative operators.  The
+     *  original order is only forced when both arguments might have side
+     *  effects: if just one of them might trap, then evaluating the pure
+     *  one first or second makes no observable difference.
+     */
+    boolean leftFirst() {
+        return left.getNeed()>=right.getNeed()
+            || (left.getDepth()>=DEEP && right.getDepth()>=DEEP);
+    }
+
     /** Generate code to evalute both of the expressions left and right,
      *  changing the order of evaluation if possible/beneficial to
      *  reduce the number of registers that are required.  The return
@@ -199,43 +198,105 @@ public abstract class BinExpr extends Expr {
      *  been reversed.  In both cases, reg(free+1) will need to be
      *  unspilled once the value in that register has been used.
      */
-    boolean compileBin(IA32 a, Expr left, Expr right, int pushed, int free) {
-        if (left.getDepth()>right.getDepth() || right.getDepth()>=DEEP) {
+    boolean compileBin(Backend a, Expr left, Expr right, int pushed, int free) {
+        if (leftFirst()) {
             left.compileExpr(a, pushed, free);
-            pushed += a.spill(free+1);
+            pushed += a.spill(free+1, pushed);
             right.compileExpr(a, pushed, free+1);
             return true;
         } else {
             right.compileExpr(a, pushed, free);
-            pushed += a.spill(free+1);
+            pushed += a.spill(free+1, pushed);
             left.compileExpr(a, pushed, free+1);
             return false;
         }
     }
 
+    /** Record the variables that are used by this expression, and return
+     *  the number of registers that are needed to evaluate it.  This
+     *  follows the order of evaluation in compileBin(), where the second
+     *  argument is evaluated while the first is held in a register.
+     */
+    int scan(LinearScan ls) {
+        int l = left.scan(ls);
+        int r = right.scan(ls);
+        if (leftFirst()) {
+            return Math.max(l, 1+r);
+        } else {
+            return Math.max(r, 1+l);
+        }
+    }
+
     /** Generate code to evaluate a binary expression using the specified
      *  opcode, op, to combine the results of the two subexpressions.  If
      *  the order in which the arguments is reversed to reduce register
      *  pressure, then an additional exchange instruction is emitted to
-     *  restore the correct order.
+     *  restore the correct order.  If the right argument is a literal or
+     *  a variable, then it is used directly as the source operand instead
+     *  of being loaded into a register.
      */
-    void compileOp(IA32 a, String op, int pushed, int free) {
+    void compileOp(Backend a, AsmOp op, int pushed, int free) {
+        long src = right.operand(a, pushed);
+        if (src!=AsmOperand.NONE) {
+            left.compileExpr(a, pushed, free);
+            a.emit(op, src, a.reg(free));
+            return;
+        }
         if (!compileBin(a, left, right, pushed, free)) {
-            a.emit("xchgl", a.reg(free+1), a.reg(free));
+            a.emit(AsmOp.XCHGL, a.reg(free+1), a.reg(free));
         }
         a.emit(op, a.reg(free+1), a.reg(free));
-        a.unspill(free+1);
+        a.unspill(free+1, pushed);
     }
 
     /** A variant of compileOp that can be used when the operation that is
      *  being performed on the two subexpressions is commutative; in this
      *  case, there is no need to insert an exchange instruction, even if
-     *  the order of evaluation was reversed.
+     *  the order of evaluation was reversed, and either argument can be
+     *  used directly as a source operand.
      */
-    void compileCommutativeOp(IA32 a, String op, int pushed, int free) {
+    void compileCommutativeOp(Backend a, AsmOp op, int pushed, int free) {
+        long src = right.operand(a, pushed);
+        if (src!=AsmOperand.NONE) {
+            left.compileExpr(a, pushed, free);
+            a.emit(op, src, a.reg(free));
+            return;
+        }
+        src = left.operand(a, pushed);
+        if (src!=AsmOperand.NONE) {
+            right.compileExpr(a, pushed, free);
+            a.emit(op, src, a.reg(free));
+            return;
+        }
         compileBin(a, left, right, pushed, free);
         a.emit(op, a.reg(free+1), a.reg(free));
-        a.unspill(free+1);
+        a.unspill(free+1, pushed);
+    }
+
+    /** Generate code for an assignment of this expression to lhs that
+     *  uses op to update the variable in place when the left argument (or,
+     *  for a commutative operation, either argument) is lhs.  The other
+     *  argument is used as an immediate operand if it is a literal, and
+     *  is otherwise evaluated into a register first, because IA32 does not
+     *  allow two memory operands in a single instruction.
+     */
+    boolean compileUpdateOp(Backend a, AsmOp op, boolean commutative,
+                            int pushed, Id lhs) {
+        Expr e;
+        if (left.op()==Op.ID && ((Id)left).sameVar(lhs)) {
+            e = right;
+        } else if (commutative && right.op()==Op.ID && ((Id)right).sameVar(lhs)) {
+            e = left;
+        } else {
+            return false;
+        }
+        if (Rewriter.isLiteral(e)) {
+            a.emit(op, e.operand(a, pushed), lhs.fromStackFrame(a, pushed));
+        } else {
+            e.compileExpr(a, pushed, 0);
+            a.emit(op, a.reg(0), lhs.fromStackFrame(a, pushed));
+        }
+        return true;
     }
 
     /** Generate code for a comparision operation.  The resulting
@@ -243,31 +304,106 @@ public abstract class BinExpr extends Expr {
      *  a comparision, setting the flags ready for the appropriate
      *  conditional jump.  The free+1 register is both spilled and
      *  unspilled in this code, which means that the caller does
-     *  not need to handle spilling.
+     *  not need to handle spilling.  A literal or variable on the right,
+     *  or a variable on the left, is used directly as an operand of cmpl.
      */
-    void compileCond(IA32 a, int pushed, int free) {
+    void compileCond(Backend a, int pushed, int free) {
+        long src = right.operand(a, pushed);
+        if (src!=AsmOperand.NONE && left.op()==Op.ID && Rewriter.isLiteral(right)) {
+            a.emit(AsmOp.CMPL, src, left.operand(a, pushed));
+            return;
+        } else if (src!=AsmOperand.NONE) {
+            left.compileExpr(a, pushed, free);
+            a.emit(AsmOp.CMPL, src, a.reg(free));
+            return;
+        } else if (left.op()==Op.ID) {
+            right.compileExpr(a, pushed, free);
+            a.emit(AsmOp.CMPL, a.reg(free), left.operand(a, pushed));
+            return;
+        }
         if (compileBin(a, left, right, pushed, free)) {
-            a.emit("cmpl", a.reg(free+1), a.reg(free));
+            a.emit(AsmOp.CMPL, a.reg(free+1), a.reg(free));
         } else {
-            a.emit("cmpl", a.reg(free), a.reg(free+1));
+            a.emit(AsmOp.CMPL, a.reg(free), a.reg(free+1));
         }
-        a.unspill(free+1);
+        a.unspill(free+1, pushed);
      }
 
     /** Generate code for a comparison that computes either 1 (for
      *  true) or 0 (for false) in the specified free register.  The
-     *  given "test" instruction is used to trigger a branch in the
-     *  true case.
+     *  given "test" instruction is the conditional jump that would be
+     *  used to branch in the true case; we use the corresponding setcc
+     *  instruction instead, so that the generated code does not branch.
      */
-    void compileCondValue(IA32 a, String test, int pushed, int free) {
-        String lab1 = a.newLabel();  // jump here if true
-        String lab2 = a.newLabel();  // jump here when done
+    void compileCondValue(Backend a, AsmOp test, int pushed, int free) {
+        long b = a.byteReg(free);
         compileCond(a, pushed, free);// compare the two arguments
-        a.emit(test, lab1);          // jump if condition is true
-        a.emit("movl", a.immed(0), a.reg(free));
-        a.emit("jmp",  lab2);
-        a.emitLabel(lab1);
-        a.emit("movl", a.immed(1), a.reg(free));
-        a.emitLabel(lab2);           // continue with value in free
+        a.emit(test.set(), b);
+        a.emit(AsmOp.MOVZBL, b, a.reg(free));
+    }
+
+    /** Generate branch-free code for a logical operator whose arguments
+     *  are both free from side effects, so that both can be evaluated
+     *  without changing the behavior of the program.  Boolean values are
+     *  always 0 or 1, so the bitwise instruction op gives the result.
+     *  Returns false, without generating any code, if one of the
+     *  arguments might have a side effect.
+     */
+    boolean compileLogicValue(Backend a, AsmOp op, int pushed, int free) {
+        if (left.getDepth()>=DEEP || right.getDepth()>=DEEP) {
+            return false;
+        }
+        compileCommutativeOp(a, op, pushed, free);
+        return true;
+    }
+
+    /** Generate JVM bytecode that pushes the value of this expression.
+     *  Arithmetic and bitwise operators map directly to instructions; the
+     *  comparison and logical operators are compiled by branching.
+     */
+    void compileJVM(JVMEmitter c) {
+        int op = JVMEmitter.arithmetic(op());
+        if (op<0) {
+            compileCondJVM(c);
+        } else {
+            left.compileJVM(c);
+            right.compileJVM(c);
+            c.emit(op, -1);
+        }
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  true, comparing the arguments directly for a comparison.
+     */
+    void branchTrueJVM(JVMEmitter c, int lab) {
+        int op = JVMEmitter.compare(op(), true);
+        if (op<0) {
+            super.branchTrueJVM(c, lab);
+        } else {
+            left.compileJVM(c);
+            right.compileJVM(c);
+            c.branch(op, lab);
+        }
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  false, comparing the arguments directly for a comparison.
+     */
+    void branchFalseJVM(JVMEmitter c, int lab) {
+        int op = JVMEmitter.compare(op(), false);
+        if (op<0) {
+            super.branchFalseJVM(c, lab);
+        } else {
+            left.compileJVM(c);
+            right.compileJVM(c);
+            c.branch(op, lab);
+        }
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        Operand l = left.lower(b);
+        return b.binary(op(), l, right.lower(b));
     }
 }
@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** A block of statements.
  */
@@ -59,6 +60,25 @@ public class Block extends Stmt {
         out.println("}");
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n);
+        out.println("{");
+        emitCBody(out, n+1);
+        out.indent(n);
+        out.println("}");
+    }
+
+    /** Output the statements in this block without enclosing braces.
+     */
+    void emitCBody(CEmitter out, int n) {
+        for (int i=0; i<body.length; i++) {
+            body[i].emitC(out, n);
+        }
+    }
+
     /** Print this statement as the "ifTrue" branch of an if-then-else
      *  having just printed the parenthesized test, but no newline.  This
      *  allows us to override the behaviour for Blocks to match the
@@ -160,28 +180,107 @@ public class Block extends Stmt {
         return initialized;
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
+    public void simplify(Simplifier rw) {
         for (int i=0; i<body.length; i++) {
-            body[i].simplify();
+            body[i].simplify(rw);
         }
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
         for (int i=0; i<body.length; i++) {
-            body[i].exec();
+            body[i].exec(out, profile);
         }
     }
 
     /** Generate code for executing this statement.
      */
-    public void compile(IA32 a, int pushed) {
+    public void compile(Backend a, int pushed) {
         for (int i=0; i<body.length; i++) {
             body[i].compile(a, pushed);
         }
     }
+
+    /** Return the statements in the body of this block.
+     */
+    Stmt[] statements() {
+        return body;
+    }
+
+    /** Generate code for executing this statement and continuing at next.
+     *  Each statement in the body continues at a new label that is placed
+     *  immediately after it, except for the last, which continues at next.
+     *  The labels are only output if something jumps to them.
+     */
+    void compileTo(Backend a, int pushed, int next) {
+        for (int i=0; i<body.length-1; i++) {
+            int lab = a.newLabel();
+            body[i].compileTo(a, pushed, lab);
+            a.emitJoinLabel(lab);
+        }
+        if (body.length==0) {
+            a.jump(next);
+        } else {
+            body[body.length-1].compileTo(a, pushed, next);
+        }
+    }
+
+    /** Record the variables that are used by this statement.
+     */
+    void scan(LinearScan ls) {
+        for (int i=0; i<body.length; i++) {
+            body[i].scan(ls);
+        }
+    }
+
+    /** Find the if-then-else statements in this block that can be compiled
+     *  using conditional moves.
+     */
+    int ifConvert(IfConversionPass ic) {
+        int n = 0;
+        for (int i=0; i<body.length; i++) {
+            n += body[i].ifConvert(ic);
+        }
+        return n;
+    }
+
+    /** A block that contains only a single assignment can be treated as
+     *  that assignment.
+     */
+    Assign singleAssign() {
+        return (body.length==1) ? body[0].singleAssign() : null;
+    }
+
+    /** A block is empty if all of the statements in its body are empty.
+     */
+    boolean isEmpty() {
+        for (int i=0; i<body.length; i++) {
+            if (!body[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Generate JVM bytecode for executing this statement.
+     */
+    void compileJVM(JVMEmitter c) {
+        for (int i=0; i<body.length; i++) {
+            body[i].compileJVM(c);
+        }
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
+        for (int i=0; i<body.length; i++) {
+            body[i].lower(b);
+        }
+    }
 }
@@ -20,6 +20,10 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
+import ir.Const;
+import ir.Operand;
 
 /** Abstract syntax for Boolean literals.
  */
@@ -36,6 +40,10 @@ public class BoolLit extends Expr {
         this.value = value;
     }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.BOOLLIT; }
+
     /** Print an indented description of this abstract syntax node,
      *  including a name for the node itself at the specified level
      *  of indentation, plus more deeply indented descriptions of
@@ -50,6 +58,11 @@ public class BoolLit extends Expr {
      */
     public void print(TextOutput out) { out.print("" + value); }
 
+    /** Output a translation of this expression into C, where false and
+     *  true are represented by 0 and 1.
+     */
+    void emitC(CEmitter out) { out.print(value ? "1" : "0"); }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -99,23 +112,10 @@ public class BoolLit extends Expr {
         return initialized;
     }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        return this;
+    /** Return the value of this Boolean literal.
+     */
+    public boolean getValue() {
+        return value;
     }
 
     /** Evaluate this expression.
@@ -135,7 +135,32 @@ public class BoolLit extends Expr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        a.emit("movl", a.immed(value ? 1 : 0), a.reg(free));
+    public void compileExpr(Backend a, int pushed, int free) {
+        a.emit(AsmOp.MOVL, a.immed(value ? 1 : 0), a.reg(free));
+    }
+
+    /** Return an immediate operand for this literal.
+     */
+    long operand(Backend a, int pushed) {
+        return a.immed(value ? 1 : 0);
+    }
+
+    /** Generate JVM bytecode that pushes the value of this expression.
+     */
+    void compileJVM(JVMEmitter c) {
+        c.iconst(value ? 1 : 0);
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return new Const(value ? 1 : 0);
+    }
+
+    /** Lower this expression to intermediate code that branches on its
+     *  value, which is known at compile time.
+     */
+    void lowerBranch(Builder b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        b.jump(value ? ifTrue : ifFalse);
     }
 }
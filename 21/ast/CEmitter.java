@@ -0,0 +1,107 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+
+/** Represents an output phase that translates abstract syntax trees into
+ *  C, so that a mature optimizing C compiler can be used to generate code
+ *  for mini programs.  The program becomes the body of a Main_main()
+ *  function, with mini variables as C locals, and it calls the print()
+ *  and divideByZero() functions in runtime.c.  Mini arithmetic wraps on
+ *  overflow, so the output should be compiled with -fwrapv.
+ */
+public class CEmitter extends TextOutput {
+
+    /** Default constructor.
+     */
+    public CEmitter(java.io.PrintStream out) {
+        super(out);
+    }
+
+    /** Construct a version of this C output that will leave its output
+     *  in the named file.
+     */
+    public CEmitter(String filename)
+      throws Exception {
+        this(new java.io.PrintStream(filename));
+    }
+
+    /** The name of the C function that is used for division.
+     */
+    static final String DIVIDE = "mini_divide";
+
+    /** Output a C translation of the given program.
+     */
+    public void toC(Stmt prog) {
+        println("/* Generated from a mini program */");
+        println("extern void print(int x);");
+        println("extern void divideByZero(void);");
+        println();
+        println("static int " + DIVIDE + "(int n, int d) {");
+        println("    if (d==0) {");
+        println("        divideByZero();");
+        println("    }");
+        println("    return (d==-1) ? -n : n/d;  /* n/-1 would trap for INT_MIN */");
+        println("}");
+        println();
+        println("void Main_main(void) {");
+        prog.emitCBody(this, 1);
+        println("}");
+        out.close();
+    }
+
+    /** Return the C operator that corresponds to the given kind of unary
+     *  or binary expression with the given result type.  The bitwise
+     *  complement of a Boolean value is a logical not, because Booleans
+     *  are represented by 0 and 1.
+     */
+    static String operator(Op op, Type type) {
+        switch (op) {
+            case UPLUS  : return "+";
+            case UMINUS : return "-";
+            case BNOT   : return (type==Type.BOOLEAN) ? "!" : "~";
+            case LNOT   : return "!";
+            case ADD    : return "+";
+            case SUB    : return "-";
+            case MUL    : return "*";
+            case DIV    : return "/";
+            case BAND   : return "&";
+            case BOR    : return "|";
+            case BXOR   : return "^";
+            case LAND   : return "&&";
+            case LOR    : return "||";
+            case LT     : return "<";
+            case LTE    : return "<=";
+            case GT     : return ">";
+            case GTE    : return ">=";
+            case EQL    : return "==";
+            default     : return "!=";
+        }
+    }
+
+    /** Print an identifier in a context where it is being used.  A prefix
+     *  is added to every variable name so that it cannot clash with a C
+     *  keyword or with the names of functions in the runtime.
+     */
+    public void printUse(Id id) { print("v_"); id.printText(this); }
+
+    /** Print an identifier in a context where it is being defined.
+     */
+    public void printDef(Id id) { print("v_"); id.printText(this); }
+}
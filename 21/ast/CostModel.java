@@ -0,0 +1,153 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** A cost model that estimates the cost of evaluating an expression using
+ *  the code that IA32 would generate for it.  Costs are measured in (very
+ *  approximate) cycles, and include the instructions for each operation,
+ *  the extra exchange that is needed when a noncommutative operation has
+ *  its arguments evaluated in reverse order, and the store to a reserved
+ *  frame slot and reload that are needed when an expression requires more
+ *  registers than are available.  The register need (Ershov number) of
+ *  each node is calculated in the same way as BinExpr.compileBin(), and
+ *  is used, as in BinExpr.leftFirst(), to decide the evaluation order;
+ *  depth is only used to detect arguments that might have side effects.
+ */
+class CostModel {
+
+    /** The target machine that is used to estimate instruction costs.
+     */
+    private Backend a;
+
+    /** Default constructor.
+     */
+    CostModel(Backend a) {
+        this.a = a;
+    }
+
+    /** Return the depth of a node, as calculated by getDepth(), given
+     *  the depths of the classes for its arguments and the best nodes
+     *  that have been found for them so far.
+     */
+    int depth(ENode n, int[] depth, ENode[] best) {
+        switch (n.args.length) {
+            case 0  : return 1;
+            case 1  : return 1 + depth[n.args[0]];
+        }
+        int d = 1 + Math.max(depth[n.args[0]], depth[n.args[1]]);
+        return (n.op==Op.DIV && divisor(n, best)==0) ? Math.max(d, Expr.DEEP) : d;
+    }
+
+    /** Return the value of the divisor of a DIV node if it will be
+     *  extracted as an integer literal, or zero if it will not.
+     */
+    private static int divisor(ENode n, ENode[] best) {
+        ENode d = best[n.args[1]];
+        return (d!=null && d.op==Op.INTLIT) ? d.value : 0;
+    }
+
+    /** Test to see if compileBin() would evaluate the left argument of a
+     *  binary node first, as described in BinExpr.leftFirst().
+     */
+    private boolean leftFirst(ENode n, int[] depth, int[] regs) {
+        return regs[n.args[0]]>=regs[n.args[1]]
+            || (depth[n.args[0]]>=Expr.DEEP && depth[n.args[1]]>=Expr.DEEP);
+    }
+
+    /** Return the number of registers that are needed to evaluate a node,
+     *  given the depths and register needs of its arguments.
+     */
+    int regs(ENode n, int[] depth, int[] regs) {
+        switch (n.op) {
+            case ID : case INTLIT : case BOOLLIT :
+                return 1;
+            case LAND : case LOR :
+                return Math.max(regs[n.args[0]], regs[n.args[1]]);
+        }
+        if (n.args.length==1) {
+            return regs[n.args[0]];
+        } else if (leftFirst(n, depth, regs)) {
+            return Math.max(regs[n.args[0]], 1 + regs[n.args[1]]);
+        } else {
+            return Math.max(regs[n.args[1]], 1 + regs[n.args[0]]);
+        }
+    }
+
+    /** Return the cost of evaluating a node of the given type, including
+     *  the costs of its arguments.
+     */
+    int cost(ENode n, Type type, int[] depth, int[] regs, int[] cost,
+             ENode[] best) {
+        int c = 0;
+        for (int i=0; i<n.args.length; i++) {
+            c += cost[n.args[i]];
+        }
+        switch (n.op) {
+            case ID      : return c + a.cycles(AsmOp.MOVL) + IA32.LOAD_CYCLES;
+            case INTLIT  :
+            case BOOLLIT : return c + a.cycles(AsmOp.MOVL);
+            case UPLUS   : return c;
+            case UMINUS  : return c + a.cycles(AsmOp.NEGL);
+            case BNOT    : return c + a.cycles(type==Type.BOOLEAN ? AsmOp.XORL : AsmOp.NOTL);
+            case LNOT    : return c + a.cycles(AsmOp.XORL);
+            case LAND    :
+            case LOR     : return c + a.cycles(AsmOp.ORL) + a.cycles(AsmOp.JZ);
+        }
+        if (n.op==Op.DIV && divisor(n, best)!=0) {
+            return c - cost[n.args[1]] + a.divideCycles(divisor(n, best));
+        } else if (n.op==Op.MUL) {
+            for (int i=1; i>=0; i--) {
+                ENode k = best[n.args[i]];
+                if (k!=null && k.op==Op.INTLIT) {
+                    return c - cost[n.args[i]] + a.multiplyCycles(k.value);
+                }
+            }
+        }
+        c += binary(n, depth, regs);
+        switch (n.op) {
+            case ADD     : return c + a.cycles(AsmOp.ADDL);
+            case SUB     : return c + a.cycles(AsmOp.SUBL)
+                                    + (leftFirst(n, depth, regs) ? 0 : a.cycles(AsmOp.XCHGL));
+            case MUL     : return c + a.cycles(AsmOp.IMULL);
+            case DIV     : return c + a.cycles(AsmOp.TESTL) + a.cycles(AsmOp.JZ)
+                                    + a.cycles(AsmOp.CMPL) + a.cycles(AsmOp.JNZ)
+                                    + a.cycles(AsmOp.CLTD) + a.cycles(AsmOp.IDIVL)
+                                    + 2*a.cycles(AsmOp.XCHGL);
+            case BAND    : return c + a.cycles(AsmOp.ANDL);
+            case BOR     : return c + a.cycles(AsmOp.ORL);
+            case BXOR    : return c + a.cycles(AsmOp.XORL);
+            default      : return c + a.cycles(AsmOp.CMPL) + a.cycles(AsmOp.SETL)
+                                    + a.cycles(AsmOp.MOVZBL);
+        }
+    }
+
+    /** Return the cost of the spill code that is needed to evaluate the
+     *  arguments of a binary node if the node requires more registers than
+     *  are available.
+     */
+    private int binary(ENode n, int[] depth, int[] regs) {
+        return (regs(n, depth, regs)>a.getNumRegs())
+               ? (2*a.cycles(AsmOp.MOVL) + IA32.LOAD_CYCLES)
+               : 0;
+    }
+}
@@ -29,6 +29,17 @@ public class Div extends BinArithExpr {
      */
     public Div(Position pos, Expr left, Expr right) {
         super(pos, left, right);
+        if (divisor()==0) {
+            // A division that might trap must not be moved or removed:
+            depth = Math.max(depth, DEEP);
+        }
+    }
+
+    /** Return the value of the divisor if it is an integer literal, or
+     *  zero if it is not.
+     */
+    private int divisor() {
+        return (right.op()==Op.INTLIT) ? ((IntLit)right).getNum() : 0;
     }
 
     /** Return a string that provides a simple description of this
@@ -36,15 +47,26 @@ public class Div extends BinArithExpr {
      */
     String label() { return "Div"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.DIV; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, "/"); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
+    /** Output a translation of this expression into C, using a function
+     *  that reports division by zero and handles overflow in the same way
+     *  as the other backends.
      */
-    Expr fold(int n, int m) { return (m==0) ? this : new IntLit(pos, n/m); }
+    void emitC(CEmitter out) {
+        out.print(CEmitter.DIVIDE + "(");
+        left.emitC(out);
+        out.print(", ");
+        right.emitC(out);
+        out.print(")");
+    }
 
     /** Evaluate this expression.
      */
@@ -61,9 +83,20 @@ public class Div extends BinArithExpr {
     /** Generate assembly language code for this expression that will
      *  evaluate the expression when it is executed and leave the result
      *  in the specified free register, preserving any lower numbered
-     *  registers in the process.
+     *  registers in the process.  Division by a nonzero constant is
+     *  strength reduced using IA32.divideConst().
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        a.emit("Div is not yet implemented");
+    public void compileExpr(Backend a, int pushed, int free) {
+        int d = divisor();
+        if (d!=0) {
+            left.compileExpr(a, pushed, free);
+            a.divideConst(free, d, pushed);
+        } else {
+            if (!compileBin(a, left, right, pushed, free)) {
+                a.emit(AsmOp.XCHGL, a.reg(free+1), a.reg(free));
+            }
+            a.divide(free);
+            a.unspill(free+1, pushed);
+        }
     }
 }
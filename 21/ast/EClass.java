@@ -0,0 +1,63 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+
+/** Represents an equivalence class of nodes in an e-graph, all of which
+ *  are known to compute the same value.  Each class also records the
+ *  results of two simple analyses: whether the class has a known constant
+ *  value, and whether it contains at least one expression that can be
+ *  evaluated without side effects.
+ */
+class EClass {
+
+    /** The type of the values in this class.
+     */
+    Type type;
+
+    /** The nodes in this class.
+     */
+    ArrayList<ENode> nodes = new ArrayList<ENode>();
+
+    /** The nodes that use this class as an argument.
+     */
+    ArrayList<ENode> uses = new ArrayList<ENode>();
+
+    /** Records whether this class has a known constant value.
+     */
+    boolean hasConst = false;
+
+    /** The constant value for this class, if hasConst is set.
+     */
+    int constVal;
+
+    /** Records whether this class contains a side effect free expression.
+     */
+    boolean pure = false;
+
+    /** Default constructor.
+     */
+    EClass(Type type) {
+        this.type = type;
+    }
+}
@@ -0,0 +1,464 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** An e-graph provides a compact representation for a (potentially very
+ *  large) set of expressions that are all known to be equivalent.  Nodes
+ *  are grouped in to e-classes of equal values, and the arguments of each
+ *  node refer to classes rather than to specific expressions.  Equalities
+ *  are added by matching their left hand sides against the graph, adding
+ *  the corresponding right hand sides, and merging the two classes.  No
+ *  information is lost along the way, so the order in which equalities
+ *  are used does not matter, and a cost model can be used at the end to
+ *  extract the cheapest of all the expressions that have been discovered.
+ */
+class EGraph {
+
+    /** The position to use for any new nodes that are extracted.
+     */
+    private Position pos;
+
+    /** The union-find parent links for each e-class id.
+     */
+    private int[] parent = new int[64];
+
+    /** The e-classes in this graph, indexed by id.  Only the entries for
+     *  canonical ids (those for which find(c)==c) are up to date.
+     */
+    private ArrayList<EClass> classes = new ArrayList<EClass>();
+
+    /** Maps each canonical node to the id of the class that contains it.
+     */
+    private HashMap<ENode, Integer> memo = new HashMap<ENode, Integer>();
+
+    /** Classes that have been merged since the last call to rebuild().
+     */
+    private ArrayList<Integer> dirty = new ArrayList<Integer>();
+
+    /** The total number of nodes in this graph.
+     */
+    private int numNodes = 0;
+
+    /** Default constructor.
+     */
+    EGraph(Position pos) {
+        this.pos = pos;
+    }
+
+    /** Return the total number of nodes in this graph.
+     */
+    int getNumNodes() {
+        return numNodes;
+    }
+
+    /** Return the canonical id for the class c.
+     */
+    int find(int c) {
+        while (parent[c]!=c) {
+            parent[c] = parent[parent[c]];
+            c         = parent[c];
+        }
+        return c;
+    }
+
+    /** Return the class with id c.
+     */
+    EClass eclass(int c) {
+        return classes.get(find(c));
+    }
+
+    /** Add the given expression to this graph, returning the id of the
+     *  class that contains it.
+     */
+    int add(Expr e) {
+        switch (e.op()) {
+            case ID :
+                return add(new ENode(Op.ID, 0, (Id)e, new int[0]), e.type);
+            case INTLIT :
+                return addLiteral(Type.INT, ((IntLit)e).getNum());
+            case BOOLLIT :
+                return addLiteral(Type.BOOLEAN, ((BoolLit)e).getValue() ? 1 : 0);
+        }
+        if (e instanceof UnExpr) {
+            return add(e.op(), new int[] { add(((UnExpr)e).exp) });
+        } else {
+            BinExpr b = (BinExpr)e;
+            int     l = add(b.left);
+            return add(e.op(), new int[] { l, add(b.right) });
+        }
+    }
+
+    /** Add a literal of the given type to this graph.
+     */
+    int addLiteral(Type type, int v) {
+        Op op = (type==Type.BOOLEAN) ? Op.BOOLLIT : Op.INTLIT;
+        return add(new ENode(op, v, null, new int[0]), type);
+    }
+
+    /** Add a node with the given operator and argument classes.
+     */
+    int add(Op op, int[] args) {
+        return add(new ENode(op, 0, null, args),
+                   op.resultType(eclass(args[0]).type));
+    }
+
+    /** Add a node to this graph, reusing an existing copy if there is one.
+     */
+    private int add(ENode n, Type type) {
+        n = n.canonical(this);
+        Integer old = memo.get(n);
+        if (old!=null) {
+            return find(old);
+        }
+        int c = classes.size();
+        if (c>=parent.length) {
+            int[] newParent = new int[2*parent.length];
+            for (int i=0; i<c; i++) {
+                newParent[i] = parent[i];
+            }
+            parent = newParent;
+        }
+        parent[c] = c;
+        n.owner   = c;
+        EClass ec = new EClass(type);
+        classes.add(ec);
+        ec.nodes.add(n);
+        memo.put(n, c);
+        numNodes++;
+        for (int i=0; i<n.args.length; i++) {
+            eclass(n.args[i]).uses.add(n);
+        }
+        analyze(n, c);
+        return find(c);
+    }
+
+    /** Update the analysis results for class c to reflect the presence of
+     *  the node n.  If this allows us to determine a constant value for
+     *  the class, then a corresponding literal is added to the class.
+     */
+    private void analyze(ENode n, int c) {
+        EClass ec = eclass(c);
+        if (!ec.pure && pure(n)) {
+            ec.pure = true;
+            dirty.add(find(c));
+        }
+        if (!ec.hasConst) {
+            Expr e = fold(n);
+            if (e!=null) {
+                try {
+                    int v       = e.eval();
+                    ec.hasConst = true;
+                    ec.constVal = v;
+                    dirty.add(find(c));
+                    union(c, addLiteral(ec.type, v));
+                } catch (Failure f) {
+                    // The node does not have a constant value (for
+                    // example, because it includes a division by zero).
+                }
+            }
+        }
+    }
+
+    /** Test to see if the node n can be evaluated without side effects,
+     *  given what is currently known about its arguments.  A division is
+     *  only pure if its divisor is known to be a nonzero constant.
+     */
+    private boolean pure(ENode n) {
+        for (int i=0; i<n.args.length; i++) {
+            if (!eclass(n.args[i]).pure) {
+                return false;
+            }
+        }
+        if (n.op==Op.DIV) {
+            EClass d = eclass(n.args[1]);
+            return d.hasConst && d.constVal!=0;
+        }
+        return true;
+    }
+
+    /** Construct an expression that can be evaluated to find the value of
+     *  the node n if all of its arguments have known constant values, or
+     *  return null if that is not possible.
+     */
+    private Expr fold(ENode n) {
+        switch (n.op) {
+            case INTLIT :
+            case BOOLLIT :
+                return Rewriter.literal(pos, eclass(n.owner).type, n.value);
+            case ID :
+                return null;
+        }
+        Expr[] xs = new Expr[2];
+        for (int i=0; i<n.args.length; i++) {
+            EClass a = eclass(n.args[i]);
+            if (!a.hasConst) {
+                return null;
+            }
+            xs[i] = Rewriter.literal(pos, a.type, a.constVal);
+        }
+        return n.op.make(pos, xs[0], xs[1]);
+    }
+
+    /** Merge the classes a and b, returning true if they were previously
+     *  distinct.  The invariants of the graph are not restored until the
+     *  next call to rebuild().
+     */
+    boolean union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a==b) {
+            return false;
+        }
+        EClass ea = classes.get(a);
+        EClass eb = classes.get(b);
+        if (ea.nodes.size()+ea.uses.size() < eb.nodes.size()+eb.uses.size()) {
+            int    t  = a;  a  = b;  b  = t;
+            EClass et = ea; ea = eb; eb = et;
+        }
+        parent[b] = a;
+        ea.nodes.addAll(eb.nodes);
+        ea.uses.addAll(eb.uses);
+        if (!ea.hasConst && eb.hasConst) {
+            ea.hasConst = true;
+            ea.constVal = eb.constVal;
+        }
+        ea.pure |= eb.pure;
+        dirty.add(a);
+        return true;
+    }
+
+    /** Restore the invariants of the graph after a sequence of unions: the
+     *  hash table must only contain canonical nodes, congruent nodes (with
+     *  the same operator and equivalent arguments) must be in the same
+     *  class, and the analysis results must reflect all merged classes.
+     */
+    void rebuild() {
+        while (!dirty.isEmpty()) {
+            ArrayList<Integer> todo = dirty;
+            dirty = new ArrayList<Integer>();
+            HashSet<Integer> seen = new HashSet<Integer>();
+            for (int i=0; i<todo.size(); i++) {
+                int c = find(todo.get(i));
+                if (seen.add(c)) {
+                    repair(c);
+                }
+            }
+        }
+        numNodes = 0;
+        for (int c=0; c<classes.size(); c++) {
+            if (find(c)==c) {
+                EClass ec = classes.get(c);
+                ec.nodes  = canonical(ec.nodes);
+                numNodes += ec.nodes.size();
+            }
+        }
+    }
+
+    /** Repair the nodes that use class c after it has been merged with
+     *  another class or its analysis results have changed.  Nodes that
+     *  become identical once their arguments are made canonical are
+     *  congruent, so their classes are merged.
+     */
+    private void repair(int c) {
+        EClass           ec   = classes.get(c);
+        ArrayList<ENode> uses = ec.uses;
+        ec.uses = new ArrayList<ENode>();
+        for (int i=0; i<uses.size(); i++) {
+            memo.remove(uses.get(i));
+        }
+        ArrayList<ENode> fresh = new ArrayList<ENode>();
+        for (int i=0; i<uses.size(); i++) {
+            ENode   n   = uses.get(i).canonical(this);
+            Integer old = memo.get(n);
+            if (old==null) {
+                memo.put(n, find(n.owner));
+                fresh.add(n);
+            } else {
+                union(old, n.owner);
+            }
+        }
+        eclass(c).uses.addAll(fresh);
+        for (int i=0; i<fresh.size(); i++) {
+            analyze(fresh.get(i), fresh.get(i).owner);
+        }
+    }
+
+    /** Return a list of the canonical forms of the given nodes, with any
+     *  duplicates removed.
+     */
+    private ArrayList<ENode> canonical(ArrayList<ENode> nodes) {
+        HashSet<ENode>   seen   = new HashSet<ENode>();
+        ArrayList<ENode> result = new ArrayList<ENode>();
+        for (int i=0; i<nodes.size(); i++) {
+            ENode n = nodes.get(i).canonical(this);
+            n.owner = find(n.owner);
+            if (seen.add(n)) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /** Repeatedly apply the given equalities to every class in the graph
+     *  until no further changes are possible (saturation), or until the
+     *  limit on the number of iterations or on the size of the graph has
+     *  been reached.  Each iteration finds all matches before any of the
+     *  right hand sides are added, so the result does not depend on the
+     *  order in which the equalities are listed; the search for matches
+     *  stops early, however, once maxNodes have been found, because each
+     *  match can add a node.  Returns true if the graph was saturated, or
+     *  false if a limit stopped it first.
+     */
+    boolean saturate(Equality[] eqs, int maxIters, int maxNodes) {
+        for (int iter=0; iter<maxIters; iter++) {
+            ArrayList<Equality> rules   = new ArrayList<Equality>();
+            ArrayList<Integer>  roots   = new ArrayList<Integer>();
+            ArrayList<EMatch>   matches = new ArrayList<EMatch>();
+            ArrayList<EMatch>   ms      = new ArrayList<EMatch>();
+            int                 n       = classes.size();
+            boolean             full    = false;
+            for (int c=0; c<n && !full; c++) {
+                if (find(c)==c) {
+                    for (int j=0; j<eqs.length; j++) {
+                        ms.clear();
+                        eqs[j].getLhs().ematch(this, c, new EMatch(), ms);
+                        for (int k=0; k<ms.size(); k++) {
+                            if (eqs[j].when(this, ms.get(k))) {
+                                rules.add(eqs[j]);
+                                roots.add(c);
+                                matches.add(ms.get(k));
+                            }
+                        }
+                    }
+                    full = matches.size()>=maxNodes;
+                }
+            }
+            boolean changed = false;
+            for (int k=0; k<rules.size() && numNodes<maxNodes; k++) {
+                Equality eq = rules.get(k);
+                int      c  = roots.get(k);
+                if (union(c, eq.getRhs().instantiate(this, matches.get(k), c))) {
+                    eq.used();
+                    changed = true;
+                }
+            }
+            rebuild();
+            if (full || numNodes>=maxNodes) {
+                return false;
+            } else if (!changed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Records the cost of the most recently extracted expression.
+     */
+    private int extractedCost;
+
+    /** Return the cost of the most recently extracted expression.
+     */
+    int getExtractedCost() {
+        return extractedCost;
+    }
+
+    /** Use the given cost model to extract the cheapest expression in the
+     *  class c.  The cost of each class is calculated by iterating to a
+     *  fixed point, because classes may contain cycles.  This should be
+     *  called only after rebuild(), when all nodes are canonical.
+     */
+    Expr extract(int c, CostModel cm) {
+        int     n     = classes.size();
+        int[]   cost  = new int[n];
+        int[]   depth = new int[n];
+        int[]   regs  = new int[n];
+        ENode[] best  = new ENode[n];
+        for (int i=0; i<n; i++) {
+            cost[i] = Integer.MAX_VALUE;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i=0; i<n; i++) {
+                if (find(i)==i) {
+                    EClass ec = classes.get(i);
+                    for (int j=0; j<ec.nodes.size(); j++) {
+                        ENode node = ec.nodes.get(j);
+                        if (ready(node, cost)) {
+                            int k = cm.cost(node, ec.type, depth, regs, cost, best);
+                            if (k<cost[i]) {
+                                cost[i]  = k;
+                                best[i]  = node;
+                                depth[i] = cm.depth(node, depth, best);
+                                regs[i]  = cm.regs(node, depth, regs);
+                                changed  = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        c             = find(c);
+        extractedCost = cost[c];
+        return build(c, best, new Expr[n]);
+    }
+
+    /** Test to see if costs have been calculated for all of the arguments
+     *  of the given node.
+     */
+    private static boolean ready(ENode node, int[] cost) {
+        for (int i=0; i<node.args.length; i++) {
+            if (cost[node.args[i]]==Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Build an expression for the class c using the best node for each
+     *  class.  Classes that are used more than once share a single copy
+     *  of the corresponding expression.
+     */
+    private Expr build(int c, ENode[] best, Expr[] built) {
+        if (built[c]==null) {
+            ENode n = best[c];
+            switch (n.op) {
+                case ID :
+                    built[c] = n.id;
+                    break;
+                case INTLIT :
+                case BOOLLIT :
+                    built[c] = Rewriter.literal(pos, classes.get(c).type, n.value);
+                    break;
+                default :
+                    Expr l   = build(n.args[0], best, built);
+                    Expr r   = (n.args.length>1) ? build(n.args[1], best, built) : null;
+                    built[c] = n.op.make(pos, l, r);
+            }
+        }
+        return built[c];
+    }
+}
@@ -0,0 +1,135 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** A simplifier that uses equality saturation: each expression is added
+ *  to an e-graph, the graph is extended using a set of equalities until
+ *  it is saturated (or a budget on size or iterations is exhausted), and then
+ *  the cheapest equivalent expression, according to a cost model for the
+ *  target machine, is extracted.  Because all of the alternatives are
+ *  kept until the end, this can find improvements that a rewriter that
+ *  commits to each step as it goes would miss.
+ */
+public class EGraphOptimizer extends Simplifier {
+
+    /** The equalities that are used to saturate each e-graph.
+     */
+    private Equality[] eqs = EqualityRules.standard();
+
+    /** The cost model that is used for extraction.
+     */
+    private CostModel cm;
+
+    /** The maximum number of iterations for each expression.
+     */
+    private int maxIters;
+
+    /** The maximum number of nodes in the e-graph for each expression.
+     */
+    private int maxNodes;
+
+    /** Counts the number of expressions whose e-graphs were not saturated
+     *  because the limit on iterations or nodes was reached.  There is
+     *  deliberately no time limit, so that the result does not depend on
+     *  the speed or load of the machine.
+     */
+    private int cutShort = 0;
+
+    /** Counts the number of expressions that have been replaced.
+     */
+    private int rewrites = 0;
+
+    /** Counts the total estimated cost saving for replaced expressions.
+     */
+    private int saved = 0;
+
+    /** Construct an optimizer for the given target, with default limits.
+     */
+    public EGraphOptimizer(Backend a) {
+        this(a, 16, 10000);
+    }
+
+    /** Construct an optimizer for the given target, with explicit limits
+     *  on the number of iterations and nodes to spend on each expression.
+     */
+    public EGraphOptimizer(Backend a, int maxIters, int maxNodes) {
+        this.cm       = new CostModel(a);
+        this.maxIters = maxIters;
+        this.maxNodes = maxNodes;
+    }
+
+    /** Return the number of expressions that have been replaced so far.
+     */
+    public int getRewrites() {
+        return rewrites;
+    }
+
+    /** Return the number of expressions for which saturation was cut
+     *  short by the limits on iterations or nodes.
+     */
+    public int getCutShort() {
+        return cutShort;
+    }
+
+    /** Return a printable summary of the number of times that each
+     *  equality has been used, and the estimated saving in cycles.
+     */
+    public String ruleStats() {
+        StringBuffer buf = new StringBuffer();
+        for (int i=0; i<eqs.length; i++) {
+            if (eqs[i].getUses()>0) {
+                buf.append(eqs[i].getName());
+                buf.append('=');
+                buf.append(eqs[i].getUses());
+                buf.append(' ');
+            }
+        }
+        buf.append("saved=");
+        buf.append(saved);
+        return buf.toString();
+    }
+
+    /** Find the cheapest expression that is equivalent to e.  The original
+     *  expression is returned if no cheaper alternative is found.
+     */
+    Expr rewrite(Expr e) {
+        if (e.op().arity()==0) {
+            return e;
+        }
+        EGraph g    = new EGraph(e.pos);
+        int    root = g.add(e);
+        g.rebuild();
+        g.extract(root, cm);
+        int    cost = g.getExtractedCost();
+        if (!g.saturate(eqs, maxIters, maxNodes)) {
+            cutShort++;
+        }
+        Expr   r    = g.extract(root, cm);
+        if (g.getExtractedCost()<cost) {
+            rewrites++;
+            saved += cost - g.getExtractedCost();
+            return r;
+        }
+        return e;
+    }
+}
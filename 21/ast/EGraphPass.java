@@ -0,0 +1,68 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Pass;
+
+/** An optimization pass that uses equality saturation to replace each
+ *  expression in a program with the cheapest equivalent that it can find.
+ *  This pass expects its input to have been simplified first, so that
+ *  the e-graphs start from expressions that are already in normal form.
+ */
+public class EGraphPass extends Pass<Stmt> {
+
+    /** The optimizer that is used to rewrite each expression.
+     */
+    private EGraphOptimizer opt;
+
+    /** Construct an e-graph pass for the given target, with the default
+     *  limits on the effort spent for each expression.
+     */
+    public EGraphPass(Backend target) {
+        this(new EGraphOptimizer(target));
+    }
+
+    /** Construct an e-graph pass that uses the given optimizer.
+     */
+    public EGraphPass(EGraphOptimizer opt) {
+        super("egraph", "simplify");
+        this.opt = opt;
+    }
+
+    /** Run this pass on the given program, returning the number of
+     *  expressions that were replaced.
+     */
+    public int run(Stmt prog) {
+        int before = opt.getRewrites();
+        prog.simplify(opt);
+        return opt.getRewrites() - before;
+    }
+
+    /** Report the number of expressions for which saturation was cut
+     *  short, if there were any.
+     */
+    public String getNote() {
+        int n = opt.getCutShort();
+        return (n==0) ? null
+                      : ("saturation stopped by the iteration or node limit for "
+                         + n + " expression" + (n==1 ? "" : "s"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Records the bindings for pattern variables that are produced when the
+ *  left hand side of an equality is matched against the classes of an
+ *  e-graph.  Unlike Match, each EMatch is treated as a value: binding a
+ *  variable returns a new EMatch, so that alternative matches can share
+ *  a common prefix of bindings.
+ */
+class EMatch {
+
+    /** E-class ids bound to expression variables, or -1 if unbound.
+     */
+    private int[] vars = new int[Match.MAXVARS];
+
+    /** Values bound to integer literal variables.
+     */
+    private int[] ints = new int[Match.MAXVARS];
+
+    /** Records which integer literal variables have been bound.
+     */
+    private boolean[] hasInt = new boolean[Match.MAXVARS];
+
+    /** Construct an empty set of bindings.
+     */
+    EMatch() {
+        for (int i=0; i<vars.length; i++) {
+            vars[i] = (-1);
+        }
+    }
+
+    /** Return a copy of this set of bindings.
+     */
+    private EMatch copy() {
+        EMatch m = new EMatch();
+        for (int i=0; i<vars.length; i++) {
+            m.vars[i]   = vars[i];
+            m.ints[i]   = ints[i];
+            m.hasInt[i] = hasInt[i];
+        }
+        return m;
+    }
+
+    /** Bind expression variable i to the class c, returning the extended
+     *  set of bindings, or null if i is already bound to a different class.
+     */
+    EMatch bind(EGraph g, int i, int c) {
+        if (vars[i]<0) {
+            EMatch m = copy();
+            m.vars[i] = c;
+            return m;
+        }
+        return (g.find(vars[i])==g.find(c)) ? this : null;
+    }
+
+    /** Bind integer variable i to the value n, returning the extended set
+     *  of bindings, or null if i is already bound to a different value.
+     */
+    EMatch bindInt(int i, int n) {
+        if (!hasInt[i]) {
+            EMatch m = copy();
+            m.hasInt[i] = true;
+            m.ints[i]   = n;
+            return m;
+        }
+        return (ints[i]==n) ? this : null;
+    }
+
+    /** Return the class bound to variable i.
+     */
+    int getVar(int i) {
+        return vars[i];
+    }
+
+    /** Return the value bound to integer variable i.
+     */
+    int getInt(int i) {
+        return ints[i];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Represents a single node in an e-graph.  Each node records the kind of
+ *  operation that it performs, together with the ids of the e-classes for
+ *  its arguments (rather than pointers to specific expressions).  Leaf
+ *  nodes record the variable or literal value that they represent.  Two
+ *  nodes are equal if they have the same operation, the same leaf value,
+ *  and the same (canonical) argument classes; this allows the e-graph to
+ *  use a hash table to avoid storing duplicate nodes.
+ */
+class ENode {
+
+    /** The kind of operation for this node.
+     */
+    Op op;
+
+    /** The e-classes for the arguments of this node.
+     */
+    int[] args;
+
+    /** The value of a literal node.
+     */
+    int value;
+
+    /** The e-class that this node was added to; the current class for
+     *  the node is found by applying EGraph.find() to this value.
+     */
+    int owner;
+
+    /** The identifier for a variable node.
+     */
+    Id id;
+
+    /** Default constructor.
+     */
+    ENode(Op op, int value, Id id, int[] args) {
+        this.op    = op;
+        this.value = value;
+        this.id    = id;
+        this.args  = args;
+    }
+
+    /** Return a copy of this node with arguments replaced by the canonical
+     *  representatives of their classes in g.
+     */
+    ENode canonical(EGraph g) {
+        int[] cs = new int[args.length];
+        for (int i=0; i<args.length; i++) {
+            cs[i] = g.find(args[i]);
+        }
+        ENode n = new ENode(op, value, id, cs);
+        n.owner = owner;
+        return n;
+    }
+
+    /** Calculate a hash code for this node.
+     */
+    public int hashCode() {
+        int h = op.ordinal()*31 + value;
+        if (id!=null) {
+            h = h*31 + id.getName().hashCode();
+        }
+        for (int i=0; i<args.length; i++) {
+            h = h*31 + args[i];
+        }
+        return h;
+    }
+
+    /** Test to see if this node is the same as another object.
+     */
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ENode)) {
+            return false;
+        }
+        ENode n = (ENode)obj;
+        if (n.op!=op || n.value!=value || n.args.length!=args.length) {
+            return false;
+        } else if (id!=null && !id.sameVar(n.id)) {
+            return false;
+        }
+        for (int i=0; i<args.length; i++) {
+            if (args[i]!=n.args[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
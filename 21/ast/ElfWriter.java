@@ -0,0 +1,289 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/** Writes an ELF relocatable object file for the 32 bit x86 architecture,
+ *  containing a single .text section, together with the symbol table,
+ *  string tables, and relocations that a linker needs.  The only
+ *  relocations are PC relative references to external functions, using
+ *  the implicit addends that have already been written into the code.
+ */
+class ElfWriter {
+
+    // Constants from the ELF specification:
+    private static final int ET_REL      = 1,  EM_386       = 3;
+    private static final int SHT_PROGBITS = 1, SHT_SYMTAB   = 2;
+    private static final int SHT_STRTAB  = 3,  SHT_REL      = 9;
+    private static final int SHF_ALLOC   = 2,  SHF_EXECINSTR = 4;
+    private static final int SHF_INFO_LINK = 0x40;
+    private static final int STB_LOCAL   = 0,  STB_GLOBAL   = 1;
+    private static final int STT_NOTYPE  = 0,  STT_FILE     = 4;
+    private static final int SHN_UNDEF   = 0,  SHN_ABS      = 0xfff1;
+    private static final int R_386_PC32  = 2;
+
+    // Section numbers, in the order that the sections are written:
+    private static final int TEXT = 1, REL = 2, SYMTAB = 3, STRTAB = 4;
+    private static final int SHSTRTAB = 5, NOTE = 6, NUM_SECTIONS = 7;
+
+    // Sizes of the fixed size structures:
+    private static final int EHDR_SIZE = 52, SHDR_SIZE = 40;
+    private static final int SYM_SIZE  = 16, REL_SIZE  = 8;
+
+    /** The name of the source file, or null if none has been given.
+     */
+    private String sourceFile = null;
+
+    /** The names, values, and bindings of the symbols that are defined in
+     *  the .text section, in the order that they were added.
+     */
+    private ArrayList<String>  names    = new ArrayList<String>();
+    private ArrayList<Integer> values   = new ArrayList<Integer>();
+    private ArrayList<Boolean> isGlobal = new ArrayList<Boolean>();
+
+    /** The offsets in the .text section that must be relocated, and the
+     *  names of the symbols that they refer to.
+     */
+    private ArrayList<Integer> relocs    = new ArrayList<Integer>();
+    private ArrayList<String>  relocSyms = new ArrayList<String>();
+
+    /** Record the name of the source file, which is included as the first
+     *  entry in the symbol table.
+     */
+    void setSourceFile(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    /** Add a symbol that is defined at the given offset in the .text
+     *  section.
+     */
+    void addSymbol(String name, int value, boolean global) {
+        names.add(name);
+        values.add(value);
+        isGlobal.add(global);
+    }
+
+    /** Add a PC relative relocation at the given offset in the .text
+     *  section for a reference to the named symbol.  If the symbol is not
+     *  defined in this object, then it will be added to the symbol table
+     *  as an undefined global.
+     */
+    void addRelocation(int offset, String name) {
+        relocs.add(offset);
+        relocSyms.add(name);
+    }
+
+    /** Write out an object file with the given name and code.
+     */
+    void write(String filename, byte[] text) {
+        // Collect the symbols, with all locals before any globals:
+        ArrayList<String> globals = new ArrayList<String>();
+        for (int i=0; i<names.size(); i++) {
+            if (isGlobal.get(i)) {
+                globals.add(names.get(i));
+            }
+        }
+        for (int i=0; i<relocSyms.size(); i++) {
+            String name = relocSyms.get(i);
+            if (!names.contains(name) && !globals.contains(name)) {
+                globals.add(name);
+            }
+        }
+        ByteArrayOutputStream strtab = new ByteArrayOutputStream();
+        ByteArrayOutputStream symtab = new ByteArrayOutputStream();
+        ArrayList<String>     index  = new ArrayList<String>();
+        strtab.write(0);
+        sym(symtab, 0, 0, 0, 0);
+        index.add(null);
+        if (sourceFile!=null) {
+            sym(symtab, string(strtab, sourceFile), 0, STB_LOCAL<<4 | STT_FILE, SHN_ABS);
+            index.add(null);
+        }
+        for (int i=0; i<names.size(); i++) {
+            if (!isGlobal.get(i)) {
+                sym(symtab, string(strtab, names.get(i)), values.get(i),
+                    STB_LOCAL<<4 | STT_NOTYPE, TEXT);
+                index.add(names.get(i));
+            }
+        }
+        int firstGlobal = index.size();
+        for (int i=0; i<globals.size(); i++) {
+            String name = globals.get(i);
+            int    pos  = names.indexOf(name);
+            sym(symtab, string(strtab, name), (pos<0) ? 0 : values.get(pos),
+                STB_GLOBAL<<4 | STT_NOTYPE, (pos<0) ? SHN_UNDEF : TEXT);
+            index.add(name);
+        }
+
+        // Build the relocation table:
+        ByteArrayOutputStream rel = new ByteArrayOutputStream();
+        for (int i=0; i<relocs.size(); i++) {
+            u4(rel, relocs.get(i));
+            u4(rel, index.lastIndexOf(relocSyms.get(i))<<8 | R_386_PC32);
+        }
+
+        // Build the section name table:
+        ByteArrayOutputStream shstrtab = new ByteArrayOutputStream();
+        shstrtab.write(0);
+        int[] shname = new int[NUM_SECTIONS];
+        shname[TEXT]     = string(shstrtab, ".text");
+        shname[REL]      = string(shstrtab, ".rel.text");
+        shname[SYMTAB]   = string(shstrtab, ".symtab");
+        shname[STRTAB]   = string(shstrtab, ".strtab");
+        shname[SHSTRTAB] = string(shstrtab, ".shstrtab");
+        shname[NOTE]     = string(shstrtab, ".note.GNU-stack");
+
+        // Lay out the file: the header, the section contents (with
+        // padding where alignment is required), and the section headers:
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[EHDR_SIZE], 0, EHDR_SIZE);
+        int textOff   = section(out, 16, text);
+        int relOff    = section(out, 4, rel.toByteArray());
+        int symOff    = section(out, 4, symtab.toByteArray());
+        int strOff    = section(out, 1, strtab.toByteArray());
+        int shstrOff  = section(out, 1, shstrtab.toByteArray());
+        int shoff     = align(out, 4);
+
+        shdr(out, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        shdr(out, shname[TEXT], SHT_PROGBITS, SHF_ALLOC | SHF_EXECINSTR,
+             textOff, text.length, 0, 0, 16, 0);
+        shdr(out, shname[REL], SHT_REL, SHF_INFO_LINK,
+             relOff, rel.size(), SYMTAB, TEXT, 4, REL_SIZE);
+        shdr(out, shname[SYMTAB], SHT_SYMTAB, 0,
+             symOff, symtab.size(), STRTAB, firstGlobal, 4, SYM_SIZE);
+        shdr(out, shname[STRTAB], SHT_STRTAB, 0,
+             strOff, strtab.size(), 0, 0, 1, 0);
+        shdr(out, shname[SHSTRTAB], SHT_STRTAB, 0,
+             shstrOff, shstrtab.size(), 0, 0, 1, 0);
+        shdr(out, shname[NOTE], SHT_PROGBITS, 0,
+             shoff, 0, 0, 0, 1, 0);
+
+        // Fill in the header:
+        byte[] file = out.toByteArray();
+        ByteArrayOutputStream ehdr = new ByteArrayOutputStream();
+        ehdr.write(0x7f);
+        ehdr.write('E');
+        ehdr.write('L');
+        ehdr.write('F');
+        ehdr.write(1);                  // 32 bit objects
+        ehdr.write(1);                  // little endian
+        ehdr.write(1);                  // ELF version
+        ehdr.write(new byte[9], 0, 9);  // System V ABI, and padding
+        u2(ehdr, ET_REL);
+        u2(ehdr, EM_386);
+        u4(ehdr, 1);                    // ELF version
+        u4(ehdr, 0);                    // no entry point
+        u4(ehdr, 0);                    // no program headers
+        u4(ehdr, shoff);
+        u4(ehdr, 0);                    // flags
+        u2(ehdr, EHDR_SIZE);
+        u2(ehdr, 0);                    // program header entry size
+        u2(ehdr, 0);                    // number of program headers
+        u2(ehdr, SHDR_SIZE);
+        u2(ehdr, NUM_SECTIONS);
+        u2(ehdr, SHSTRTAB);
+        System.arraycopy(ehdr.toByteArray(), 0, file, 0, EHDR_SIZE);
+
+        try (FileOutputStream f = new FileOutputStream(filename)) {
+            f.write(file);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Append a section's contents to the file after padding to the given
+     *  alignment, and return the offset at which it starts.
+     */
+    private static int section(ByteArrayOutputStream out, int alignment,
+                               byte[] data) {
+        int off = align(out, alignment);
+        out.write(data, 0, data.length);
+        return off;
+    }
+
+    /** Pad the file with zeros to the given alignment, and return the
+     *  resulting offset.
+     */
+    private static int align(ByteArrayOutputStream out, int alignment) {
+        while (out.size()%alignment!=0) {
+            out.write(0);
+        }
+        return out.size();
+    }
+
+    /** Add a string to a string table, returning its offset.
+     */
+    private static int string(ByteArrayOutputStream tab, String s) {
+        int off = tab.size();
+        for (int i=0; i<s.length(); i++) {
+            tab.write(s.charAt(i));
+        }
+        tab.write(0);
+        return off;
+    }
+
+    /** Output a symbol table entry.
+     */
+    private static void sym(ByteArrayOutputStream out, int name, int value,
+                            int info, int shndx) {
+        u4(out, name);
+        u4(out, value);
+        u4(out, 0);                     // size
+        out.write(info);
+        out.write(0);                   // default visibility
+        u2(out, shndx);
+    }
+
+    /** Output a section header.
+     */
+    private static void shdr(ByteArrayOutputStream out, int name, int type,
+                             int flags, int offset, int size, int link,
+                             int info, int alignment, int entsize) {
+        u4(out, name);
+        u4(out, type);
+        u4(out, flags);
+        u4(out, 0);                     // address
+        u4(out, offset);
+        u4(out, size);
+        u4(out, link);
+        u4(out, info);
+        u4(out, alignment);
+        u4(out, entsize);
+    }
+
+    /** Output a two byte value in little endian order.
+     */
+    private static void u2(ByteArrayOutputStream out, int v) {
+        out.write(v);
+        out.write(v>>8);
+    }
+
+    /** Output a four byte value in little endian order.
+     */
+    private static void u4(ByteArrayOutputStream out, int v) {
+        out.write(v);
+        out.write(v>>8);
+        out.write(v>>16);
+        out.write(v>>24);
+    }
+}
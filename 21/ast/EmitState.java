@@ -0,0 +1,163 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/** Holds the state that IA32 changes as it generates code for a function.
+ *  Each worker that IA32 uses to compile a range of statements in parallel
+ *  starts with a fresh copy of this object, so any field that is added
+ *  here is automatically private to the thread that uses it.  Settings
+ *  and the frame layout, which do not change during code generation,
+ *  are kept in IA32 itself.
+ */
+class EmitState {
+
+    /** Default constructor.
+     */
+    EmitState(AsmOutput out, Peephole peephole) {
+        this.out      = out;
+        this.peephole = peephole;
+    }
+
+    /** The destination for the generated code.
+     */
+    AsmOutput out;
+
+    /** The peephole optimizer that instructions are passed through before
+     *  they are written out, or null if peephole optimization is disabled.
+     */
+    Peephole peephole;
+
+    /** A counter that is used to generate new labels; the counter is
+     *  incremented each time a new label is produced.  The labels that a
+     *  worker generates are numbered from zero, and are relocated when the
+     *  worker's code is merged into the output.
+     */
+    int labelCounter = 0;
+
+    /** Counts the number of instructions (and directives) that have been
+     *  generated, before any peephole optimization.
+     */
+    int instructions = 0;
+
+    /** The time at which the first instruction was generated.
+     */
+    long started = 0;
+
+    /** Counts the jumps and branches that have been removed or threaded.
+     */
+    int jumpsRemoved = 0;
+
+    /** The source line for the code that is currently being generated,
+     *  or zero if it is not known.
+     */
+    int line = 0;
+
+    /** The source line in the last .loc directive that was output.
+     */
+    int lastLine = 0;
+
+    /** The target of an unconditional jump that has not been output yet,
+     *  or -1 if there is none.
+     */
+    int pendingJump = -1;
+
+    /** The target of a conditional branch that has not been output yet,
+     *  or -1 if there is none.
+     */
+    int pendingBranch = -1;
+
+    /** The opcode for the pending conditional branch.
+     */
+    AsmOp pendingBranchOp = null;
+
+    /** Labels that have not been output yet; the first numPending entries
+     *  are in use.
+     */
+    int[] pendingLabels = new int[8];
+
+    /** The number of labels in pendingLabels.
+     */
+    int numPending = 0;
+
+    /** Maps labels that were never output to the labels that they stand
+     *  for, with -1 for labels that are not aliases.
+     */
+    int[] aliases = new int[0];
+
+    /** Labels that have been used as the target of a jump or branch.
+     */
+    BitSet referenced = new BitSet();
+
+    /** Holds the labels that were output by emitJoinLabel().
+     */
+    BitSet joins = new BitSet();
+
+    /** Holds the labels that other labels have been made aliases for, and
+     *  that must be kept because a later jump might use one of the aliases.
+     */
+    BitSet aliased = new BitSet();
+
+    /** Holds the source row for each loop label, and zero for the others.
+     */
+    int[] rows = new int[0];
+
+    /** Records whether the current position in the output can be reached
+     *  by falling through from the previous instruction.
+     */
+    boolean reachable = true;
+
+    /** Track the number of bytes by which the stack pointer should be
+     *  adjusted before the next instruction.  This mechanism allows us
+     *  to combine multiple adjustments into a single instruction, and
+     *  to omit adjustments completely when they are not required (for
+     *  example, immediately before a function's epilogue).
+     */
+    int pendingAdjust = 0;
+
+    /** Holds the label for the code that reports a division by zero in
+     *  the current function, or -1 if no division has needed it yet.
+     */
+    int divideByZero = -1;
+
+    /** Holds the labels that workers used for reporting a division by
+     *  zero, all of which are placed at the same code.
+     */
+    ArrayList<Integer> forkedTraps = new ArrayList<Integer>();
+
+    /** Holds the code that is to be generated out of line.
+     */
+    ArrayList<Runnable> deferred = new ArrayList<Runnable>();
+
+    /** Holds the code that was deferred by a worker, or null if there is
+     *  none.
+     */
+    AsmList cold = null;
+
+    /** Holds the code that workers deferred.
+     */
+    ArrayList<AsmList> forkedCold = new ArrayList<AsmList>();
+
+    /** Holds the label and the source position (as a row, column, and arm
+     *  number) of each block execution counter.
+     */
+    ArrayList<int[]> counters = new ArrayList<int[]>();
+}
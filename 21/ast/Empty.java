@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** Abstract syntax for empty statements.
  */
@@ -48,6 +49,14 @@ public class Empty extends PosStmt {
         out.println(";");
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n);
+        out.println(";");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -91,22 +100,42 @@ public class Empty extends PosStmt {
         return initialized;
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
+    public void simplify(Simplifier rw) {
         /* nothing to simplify here */
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
         /* nothing to do */
     }
 
     /** Generate code for executing this statement.
      */
-    public void compile(IA32 a, int pushed) {
+    public void compile(Backend a, int pushed) {
         // Nothing to do here ...
     }
+
+    /** Generate code for executing this statement and continuing at next.
+     */
+    void compileTo(Backend a, int pushed, int next) {
+        a.jump(next);
+    }
+
+    /** An empty statement has no effect.
+     */
+    boolean isEmpty() {
+        return true;
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
+        /* nothing to do */
+    }
 }
@@ -142,6 +142,40 @@ public class Env {
         return ia32Offset;
     }
 
+    /** Set a new stack offset for this variable.  This is used by
+     *  LinearScan, which can share a single offset between variables whose
+     *  live ranges do not overlap, even if they are in scope at the same
+     *  time.
+     */
+    void setIa32Offset(int offset) {
+        ia32Offset = offset;
+    }
+
+    /** Return the JVM local variable slot for this variable, numbering
+     *  the slots in the same way as the stack offsets, starting at first.
+     */
+    public int getJvmSlot(int first) {
+        return first - 1 - ia32Offset/IA32.WORDSIZE;
+    }
+
+    /** Holds the register that has been allocated to this variable by
+     *  LinearScan, or -1 if the variable is stored at its stack offset.
+     */
+    private int ia32Reg = -1;
+
+    /** Return the register that holds this variable, or -1 if it is
+     *  stored on the stack.
+     */
+    public int getIa32Reg() {
+        return ia32Reg;
+    }
+
+    /** Set the register that holds this variable.
+     */
+    void setIa32Reg(int reg) {
+        ia32Reg = reg;
+    }
+
     /** Holds the number of bytes that are needed to store the local variables
      *  for this program.
      */
@@ -153,4 +187,12 @@ public class Env {
     public static int getIa32Locals() {
         return ia32Locals;
     }
+
+    /** Set the number of bytes that are needed to store the values of the
+     *  local variables for this program, after their offsets have been
+     *  changed.
+     */
+    static void setIa32Locals(int bytes) {
+        ia32Locals = bytes;
+    }
 }
@@ -0,0 +1,103 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Represents an equality, lhs = rhs, that can be used to extend an
+ *  e-graph: any class that matches lhs also contains the corresponding
+ *  instance of rhs.  Equalities that discard part of the expression on
+ *  the left can name a pattern variable that must be side effect free.
+ */
+class Equality {
+
+    /** A short name for this equality, used in statistics output.
+     */
+    private String name;
+
+    /** The pattern that a class must match for the equality to apply.
+     */
+    private Pattern lhs;
+
+    /** The pattern that describes the equivalent expression.
+     */
+    private Pattern rhs;
+
+    /** A variable that must be bound to a pure class, or -1 if none.
+     */
+    private int pureVar;
+
+    /** Counts the number of times that this equality has been used.
+     */
+    private int uses = 0;
+
+    /** Default constructor.
+     */
+    Equality(String name, Pattern lhs, Pattern rhs) {
+        this(name, lhs, rhs, -1);
+    }
+
+    /** Construct an equality that requires variable pureVar to be free
+     *  from side effects.
+     */
+    Equality(String name, Pattern lhs, Pattern rhs, int pureVar) {
+        this.name    = name;
+        this.lhs     = lhs;
+        this.rhs     = rhs;
+        this.pureVar = pureVar;
+    }
+
+    /** Return the name of this equality.
+     */
+    String getName() {
+        return name;
+    }
+
+    /** Return the left hand side of this equality.
+     */
+    Pattern getLhs() {
+        return lhs;
+    }
+
+    /** Return the right hand side of this equality.
+     */
+    Pattern getRhs() {
+        return rhs;
+    }
+
+    /** Return the number of times that this equality has been used.
+     */
+    int getUses() {
+        return uses;
+    }
+
+    /** Record a use of this equality that added new information.
+     */
+    void used() {
+        uses++;
+    }
+
+    /** Check that the side condition for this equality is satisfied.
+     */
+    boolean when(EGraph g, EMatch m) {
+        return pureVar<0 || g.eclass(m.getVar(pureVar)).pure;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+import static ast.Pattern.*;
+
+/** Defines the standard set of equalities that are used to explore the
+ *  space of expressions that are equivalent to a given input.  Unlike the
+ *  rules in RewriteRules, these equalities do not need to make progress
+ *  towards a normal form, so they include commutativity, associativity,
+ *  and the reverse directions of many laws, such as:
+ *     factoring               x*y + x*z  =  x*(y+z),  (x&y)|(x&z) = ...
+ *     strength                x + x      =  x*2
+ *     negation                x - y      =  x + (-y),  ~x ^ y = ~(x^y)
+ *     De Morgan               ~(x&y)     =  ~x | ~y,  !(a&&b) = !a||!b
+ *     comparisons             x < y      =  y > x,  !(x<y) = x>=y, ...
+ *  Constant folding is not needed here because it is handled by the
+ *  constant analysis in EGraph.
+ */
+class EqualityRules {
+
+    /** Return a new copy of the standard set of equalities.
+     */
+    static Equality[] standard() {
+        ArrayList<Equality> eqs = new ArrayList<Equality>();
+        Pattern x = var(0);
+        Pattern y = var(1);
+        Pattern z = var(2);
+
+        // Commutativity and associativity:
+        Op[] ops = Op.values();
+        for (int i=0; i<ops.length; i++) {
+            Op op = ops[i];
+            if (op.isCommutative()) {
+                eqs.add(new Equality("comm" + op,
+                                     node(op, x, y), node(op, y, x)));
+            }
+            if (op.isAC()) {
+                eqs.add(new Equality("assocl" + op,
+                                     node(op, node(op, x, y), z),
+                                     node(op, x, node(op, y, z))));
+                eqs.add(new Equality("assocr" + op,
+                                     node(op, x, node(op, y, z)),
+                                     node(op, node(op, x, y), z)));
+            }
+        }
+
+        // Identities:
+        eqs.add(new Equality("uplus", node(Op.UPLUS, x), x));
+        eqs.add(new Equality("add0",  node(Op.ADD,  x, num(0)),  x));
+        eqs.add(new Equality("sub0",  node(Op.SUB,  x, num(0)),  x));
+        eqs.add(new Equality("mul1",  node(Op.MUL,  x, num(1)),  x));
+        eqs.add(new Equality("div1",  node(Op.DIV,  x, num(1)),  x));
+        eqs.add(new Equality("andm1", node(Op.BAND, x, num(-1)), x));
+        eqs.add(new Equality("or0",   node(Op.BOR,  x, num(0)),  x));
+        eqs.add(new Equality("xor0",  node(Op.BXOR, x, num(0)),  x));
+        eqs.add(new Equality("andxx", node(Op.BAND, x, x),       x));
+        eqs.add(new Equality("orxx",  node(Op.BOR,  x, x),       x));
+        eqs.add(new Equality("andt",  node(Op.BAND, x, bool(true)),  x));
+        eqs.add(new Equality("orf",   node(Op.BOR,  x, bool(false)), x));
+        eqs.add(new Equality("xorf",  node(Op.BXOR, x, bool(false)), x));
+        eqs.add(new Equality("landt", node(Op.LAND, x, bool(true)),  x));
+        eqs.add(new Equality("tland", node(Op.LAND, bool(true), x),  x));
+        eqs.add(new Equality("lorf",  node(Op.LOR,  x, bool(false)), x));
+        eqs.add(new Equality("flor",  node(Op.LOR,  bool(false), x), x));
+
+        // Annihilators, which are only valid if the discarded argument
+        // has no side effects:
+        eqs.add(new Equality("mul0",  node(Op.MUL,  x, num(0)),  num(0), 0));
+        eqs.add(new Equality("and0",  node(Op.BAND, x, num(0)),  num(0), 0));
+        eqs.add(new Equality("orm1",  node(Op.BOR,  x, num(-1)), num(-1), 0));
+        eqs.add(new Equality("subxx", node(Op.SUB,  x, x),       num(0), 0));
+        eqs.add(new Equality("xorxx", node(Op.BXOR, x, x),       num(0), 0));
+        eqs.add(new Equality("andf",  node(Op.BAND, x, bool(false)), bool(false), 0));
+        eqs.add(new Equality("ort",   node(Op.BOR,  x, bool(true)),  bool(true),  0));
+        eqs.add(new Equality("landf", node(Op.LAND, x, bool(false)), bool(false), 0));
+        eqs.add(new Equality("flandx",node(Op.LAND, bool(false), x), bool(false)));
+        eqs.add(new Equality("lort",  node(Op.LOR,  x, bool(true)),  bool(true),  0));
+        eqs.add(new Equality("tlorx", node(Op.LOR,  bool(true), x),  bool(true)));
+
+        // Negation and subtraction:
+        eqs.add(new Equality("subneg", node(Op.SUB, x, y),
+                                       node(Op.ADD, x, node(Op.UMINUS, y))));
+        eqs.add(new Equality("addneg", node(Op.ADD, x, node(Op.UMINUS, y)),
+                                       node(Op.SUB, x, y)));
+        eqs.add(new Equality("negsub", node(Op.UMINUS, node(Op.SUB, x, y)),
+                                       node(Op.SUB, y, x)));
+        eqs.add(new Equality("0sub",   node(Op.SUB, num(0), x),
+                                       node(Op.UMINUS, x)));
+        eqs.add(new Equality("negneg", node(Op.UMINUS, node(Op.UMINUS, x)), x));
+        eqs.add(new Equality("mulm1",  node(Op.MUL, x, num(-1)),
+                                       node(Op.UMINUS, x)));
+        eqs.add(new Equality("negmul", node(Op.UMINUS, node(Op.MUL, x, y)),
+                                       node(Op.MUL, node(Op.UMINUS, x), y)));
+
+        // Strength reduction and its inverse:
+        eqs.add(new Equality("addxx",  node(Op.ADD, x, x),
+                                       node(Op.MUL, x, num(2))));
+        eqs.add(new Equality("mul2",   node(Op.MUL, x, num(2)),
+                                       node(Op.ADD, x, x)));
+
+        // Distributivity, used in the factoring direction (and also to
+        // absorb a single extra copy of the common argument):
+        eqs.add(new Equality("factadd", node(Op.ADD, node(Op.MUL, x, y),
+                                                     node(Op.MUL, x, z)),
+                                        node(Op.MUL, x, node(Op.ADD, y, z))));
+        eqs.add(new Equality("factsub", node(Op.SUB, node(Op.MUL, x, y),
+                                                     node(Op.MUL, x, z)),
+                                        node(Op.MUL, x, node(Op.SUB, y, z))));
+        eqs.add(new Equality("factone", node(Op.ADD, node(Op.MUL, x, y), x),
+                                        node(Op.MUL, x, node(Op.ADD, y, num(1)))));
+        eqs.add(new Equality("factand", node(Op.BOR, node(Op.BAND, x, y),
+                                                     node(Op.BAND, x, z)),
+                                        node(Op.BAND, x, node(Op.BOR, y, z))));
+        eqs.add(new Equality("factor",  node(Op.BAND, node(Op.BOR, x, y),
+                                                      node(Op.BOR, x, z)),
+                                        node(Op.BOR, x, node(Op.BAND, y, z))));
+        eqs.add(new Equality("factxor", node(Op.BXOR, node(Op.BAND, x, y),
+                                                      node(Op.BAND, x, z)),
+                                        node(Op.BAND, x, node(Op.BXOR, y, z))));
+
+        // Bitwise complement and De Morgan's laws:
+        eqs.add(new Equality("notnot", node(Op.BNOT, node(Op.BNOT, x)), x));
+        eqs.add(new Equality("xorm1",  node(Op.BXOR, x, num(-1)),
+                                       node(Op.BNOT, x)));
+        eqs.add(new Equality("notxor", node(Op.BXOR, node(Op.BNOT, x), y),
+                                       node(Op.BNOT, node(Op.BXOR, x, y))));
+        eqs.add(new Equality("xornot", node(Op.BNOT, node(Op.BXOR, x, y)),
+                                       node(Op.BXOR, node(Op.BNOT, x), y)));
+        eqs.add(new Equality("dmand",  node(Op.BNOT, node(Op.BAND, x, y)),
+                                       node(Op.BOR, node(Op.BNOT, x),
+                                                    node(Op.BNOT, y))));
+        eqs.add(new Equality("dmor",   node(Op.BNOT, node(Op.BOR, x, y)),
+                                       node(Op.BAND, node(Op.BNOT, x),
+                                                     node(Op.BNOT, y))));
+        eqs.add(new Equality("undmand", node(Op.BOR, node(Op.BNOT, x),
+                                                      node(Op.BNOT, y)),
+                                        node(Op.BNOT, node(Op.BAND, x, y))));
+        eqs.add(new Equality("undmor",  node(Op.BAND, node(Op.BNOT, x),
+                                                      node(Op.BNOT, y)),
+                                        node(Op.BNOT, node(Op.BOR, x, y))));
+
+        // Logical negation:
+        eqs.add(new Equality("lnotnot", node(Op.LNOT, node(Op.LNOT, x)), x));
+        eqs.add(new Equality("xort",    node(Op.BXOR, x, bool(true)),
+                                        node(Op.LNOT, x)));
+        eqs.add(new Equality("dmland",  node(Op.LNOT, node(Op.LAND, x, y)),
+                                        node(Op.LOR, node(Op.LNOT, x),
+                                                     node(Op.LNOT, y))));
+        eqs.add(new Equality("dmlor",   node(Op.LNOT, node(Op.LOR, x, y)),
+                                        node(Op.LAND, node(Op.LNOT, x),
+                                                      node(Op.LNOT, y))));
+        eqs.add(new Equality("undmland",node(Op.LOR, node(Op.LNOT, x),
+                                                     node(Op.LNOT, y)),
+                                        node(Op.LNOT, node(Op.LAND, x, y))));
+        eqs.add(new Equality("undmlor", node(Op.LAND, node(Op.LNOT, x),
+                                                      node(Op.LNOT, y)),
+                                        node(Op.LNOT, node(Op.LOR, x, y))));
+
+        // Comparisons:
+        flip(eqs, Op.LT,  Op.GT);
+        flip(eqs, Op.GT,  Op.LT);
+        flip(eqs, Op.LTE, Op.GTE);
+        flip(eqs, Op.GTE, Op.LTE);
+        negate(eqs, Op.LT,  Op.GTE);
+        negate(eqs, Op.GTE, Op.LT);
+        negate(eqs, Op.GT,  Op.LTE);
+        negate(eqs, Op.LTE, Op.GT);
+        negate(eqs, Op.EQL, Op.NEQ);
+        negate(eqs, Op.NEQ, Op.EQL);
+
+        return eqs.toArray(new Equality[eqs.size()]);
+    }
+
+    /** Add an equality x op y = y rev x for a comparison operator op whose
+     *  arguments can be swapped by using the reverse comparison rev.
+     */
+    private static void flip(ArrayList<Equality> eqs, Op op, Op rev) {
+        eqs.add(new Equality("flip" + op, node(op,  var(0), var(1)),
+                                          node(rev, var(1), var(0))));
+    }
+
+    /** Add equalities !(x op y) = x neg y and its reverse for a comparison
+     *  operator op with the negated comparison neg.
+     */
+    private static void negate(ArrayList<Equality> eqs, Op op, Op neg) {
+        eqs.add(new Equality("not" + op, node(Op.LNOT, node(op, var(0), var(1))),
+                                         node(neg, var(0), var(1))));
+        eqs.add(new Equality("neg" + op, node(op, var(0), var(1)),
+                                         node(Op.LNOT, node(neg, var(0), var(1)))));
+    }
+}
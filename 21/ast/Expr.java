@@ -20,6 +20,11 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
+import ir.Const;
+import ir.Operand;
+import ir.Temp;
 
 /** Abstract syntax for expressions.
  */
@@ -38,6 +43,10 @@ public abstract class Expr {
      */
     String coordString() { return pos.coordString(); }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    abstract Op op();
+
     /** Print an indented description of this abstract syntax node,
      *  including a name for the node itself at the specified level
      *  of indentation, plus more deeply indented descriptions of
@@ -57,6 +66,10 @@ public abstract class Expr {
         this.print(out);
     }
 
+    /** Output a translation of this expression into C.
+     */
+    abstract void emitC(CEmitter out);
+
     /** Output a description of this node (with id n), including a
      *  link to its parent node (with id p) and returning the next
      *  available node id.
@@ -143,86 +156,6 @@ public abstract class Expr {
      */
     public abstract VarSet analyze(InitAnalysis init, VarSet initialized);
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    abstract Expr simplify();
-
-    /** Simplify an addition with a known integer as the right argument.
-     */
-    Expr simpAdd(Add orig, int m) { return newAdd(orig.pos, m); }
-
-    /** Construct an abstract syntax tree for an addition with a known
-     *  integer as the right argument.
-     */
-    Expr newAdd(Position pos, int n) {
-        return (n==0) ? this : new Add(pos, this, new IntLit(pos, n));
-    }
-
-    /** Simplify a multiplication with a known integer as the right argument.
-     */
-    Expr simpMul(Mul orig, int m) { return newMul(orig.pos, m); }
-
-    /** Construct an abstract syntax tree for a multiplication with a known
-     *  integer as the right argument.
-     */
-    Expr newMul(Position pos, int n) {
-        return (n==1) ? this                 // x * 1 == x
-             : (n==0) ? new IntLit(pos, 0)   // x * 0 == 0
-             : new Mul(pos, this, new IntLit(pos, n));
-    }
-
-    /** Simplify a bitwise and with a known integer as the right argument.
-     */
-    Expr simpBAnd(BAnd orig, int m) { return newBAnd(orig.pos, m); }
-
-    /** Construct an abstract syntax tree for a bitwise and with a known
-     *  integer as the right argument.
-     */
-    Expr newBAnd(Position pos, int n) {
-        return (n==(-1)) ? this                // x & (-1) == x
-             : (n==0)    ? new IntLit(pos, 0)  // x & 0    == 0
-             : new BAnd(pos, this, new IntLit(pos, n));
-    }
-
-    /** Simplify a bitwise or with a known integer as the right argument.
-     */
-    Expr simpBOr(BOr orig, int m) { return newBOr(orig.pos, m); }
-
-    /** Construct an abstract syntax tree for a bitwise or with a known
-     *  integer as the right argument.
-     */
-    Expr newBOr(Position pos, int n) {
-        return (n==(-1)) ? new IntLit(pos, -1) // x | (-1) == (-1)
-             : (n==0)    ? this                // x | 0    == x
-             : new BOr(pos, this, new IntLit(pos, n));
-    }
-
-    /** Simplify a bitwise xor with a known integer as the right argument.
-     */
-    Expr simpBXor(BXor orig, int m) { return newBXor(orig.pos, m); }
-
-    /** Construct an abstract syntax tree for a bitwise xor with a known
-     *  integer as the right argument.
-     */
-    Expr newBXor(Position pos, int n) {
-        return (n==(-1)) ? new BNot(pos, this) // x ^ (-1) == ~x
-             : (n==0)    ? this                // x ^ 0    == x
-             : new BXor(pos, this, new IntLit(pos, n));
-    }
-
     /** Test to see if this expression is an integer literal.
      */
     IntLit isIntLit() { return null; }
@@ -253,6 +186,15 @@ public abstract class Expr {
      */
     abstract int getDepth();
 
+    /** Return the number of registers that are needed to evaluate this
+     *  expression without spilling (its Ershov number), assuming that the
+     *  arguments of each binary operator are evaluated in the order that
+     *  BinExpr.leftFirst() chooses.  Variables and literals need just one.
+     */
+    int getNeed() {
+        return 1;
+    }
+
     /** Used as a depth value to indicate an expression that has a
      *  potential side effect, and hence requires order of evaluation
      *  to be preserved.  (The same depth value could, in theory, be
@@ -267,23 +209,125 @@ public abstract class Expr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public abstract void compileExpr(IA32 a, int pushed, int free);
+    public abstract void compileExpr(Backend a, int pushed, int free);
+
+    /** Return an operand that an instruction can use to read the value
+     *  of this expression directly, without first loading it into a
+     *  register, or AsmOperand.NONE if there is no such operand.
+     */
+    long operand(Backend a, int pushed) {
+        return AsmOperand.NONE;
+    }
+
+    /** Generate code for an assignment of this expression to the variable
+     *  lhs, if this can be done by updating the variable in place, and
+     *  return true, or return false, without generating any code, if the
+     *  assignment must be compiled in the usual way.
+     */
+    boolean compileUpdate(Backend a, int pushed, Id lhs) {
+        return false;
+    }
+
+    /** Record the variables that are used by this expression as part of
+     *  the linear scan register allocation in ls, and return the number of
+     *  registers that are needed to evaluate it.
+     */
+    int scan(LinearScan ls) {
+        return 1;
+    }
+
+    /** Generate code that will evaluate this (boolean-valued) expression
+     *  and set the flags, returning the conditional jump that would be
+     *  taken when the result is true (the corresponding setcc and cmovcc
+     *  instructions are found from it).
+     */
+    AsmOp compileFlags(Backend a, int pushed, int free) {
+        compileExpr(a, pushed, free);
+        a.emit(AsmOp.ORL, a.reg(free), a.reg(free));
+        return AsmOp.JNZ;
+    }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is true.
      */
-    void branchTrue(IA32 a, int pushed, int free, String lab) {
+    void branchTrue(Backend a, int pushed, int free, int lab) {
         compileExpr(a, pushed, free);
-        a.emit("orl", a.reg(free), a.reg(free));
-        a.emit("jnz", lab);
+        a.emit(AsmOp.ORL, a.reg(free), a.reg(free));
+        a.branch(AsmOp.JNZ, lab);
     }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is false.
      */
-    void branchFalse(IA32 a, int pushed, int free, String lab) {
+    void branchFalse(Backend a, int pushed, int free, int lab) {
         compileExpr(a, pushed, free);
-        a.emit("orl", a.reg(free), a.reg(free));
-        a.emit("jz", lab);
+        a.emit(AsmOp.ORL, a.reg(free), a.reg(free));
+        a.branch(AsmOp.JZ, lab);
+    }
+
+    /** Generate JVM bytecode that pushes the value of this expression.
+     */
+    abstract void compileJVM(JVMEmitter c);
+
+    /** Generate JVM bytecode that will evaluate this (boolean-valued)
+     *  expression and branch to the label lab if the result is true.
+     */
+    void branchTrueJVM(JVMEmitter c, int lab) {
+        compileJVM(c);
+        c.branch(JVMEmitter.IFNE, lab);
+    }
+
+    /** Generate JVM bytecode that will evaluate this (boolean-valued)
+     *  expression and branch to the label lab if the result is false.
+     */
+    void branchFalseJVM(JVMEmitter c, int lab) {
+        compileJVM(c);
+        c.branch(JVMEmitter.IFEQ, lab);
+    }
+
+    /** Generate JVM bytecode that pushes the value of this (boolean-valued)
+     *  expression by branching on it.
+     */
+    void compileCondJVM(JVMEmitter c) {
+        int lab1 = c.newLabel();
+        int lab2 = c.newLabel();
+        branchFalseJVM(c, lab1);
+        c.iconst(1);
+        c.jump(lab2);
+        c.label(lab1);
+        c.iconst(0);
+        c.label(lab2);
+    }
+
+    /** Lower this expression to intermediate code, returning an operand
+     *  for its value.
+     */
+    abstract Operand lower(Builder b);
+
+    /** Lower this (boolean-valued) expression to intermediate code that
+     *  will branch to ifTrue if the result is true, and to ifFalse if it
+     *  is false.
+     */
+    void lowerBranch(Builder b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        b.branch(lower(b), ifTrue, ifFalse);
+    }
+
+    /** Lower this (boolean-valued) expression to intermediate code that
+     *  uses lowerBranch() to set a new temporary to 1 or 0.
+     */
+    Operand lowerValue(Builder b) {
+        Temp       t    = b.newTemp();
+        BasicBlock yes  = b.newBlock();
+        BasicBlock no   = b.newBlock();
+        BasicBlock join = b.newBlock();
+        lowerBranch(b, yes, no);
+        b.setBlock(yes);
+        b.copy(t, new Const(1));
+        b.jump(join);
+        b.setBlock(no);
+        b.copy(t, new Const(0));
+        b.jump(join);
+        b.setBlock(join);
+        return t;
     }
 }
@@ -36,16 +36,15 @@ public class Gt extends BinCompExpr {
      */
     String label() { return "Gt"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.GT; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, ">"); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return new BoolLit(pos, n>m); }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -56,23 +55,32 @@ public class Gt extends BinCompExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        compileCondValue(a, "jg", pushed, free);
+    public void compileExpr(Backend a, int pushed, int free) {
+        compileCondValue(a, AsmOp.JG, pushed, free);
+    }
+
+    /** Generate code that will evaluate this (boolean-valued) expression
+     *  and set the flags, returning the conditional jump that is taken when
+     *  the result is true.
+     */
+    AsmOp compileFlags(Backend a, int pushed, int free) {
+        compileCond(a, pushed, free);
+        return AsmOp.JG;
     }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is true.
      */
-    void branchTrue(IA32 a, int pushed, int free, String lab) {
+    void branchTrue(Backend a, int pushed, int free, int lab) {
         compileCond(a, pushed, free);
-        a.emit("jg", lab);
+        a.branch(AsmOp.JG, lab);
     }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is false.
      */
-    void branchFalse(IA32 a, int pushed, int free, String lab) {
+    void branchFalse(Backend a, int pushed, int free, int lab) {
         compileCond(a, pushed, free);
-        a.emit("jng", lab);
+        a.branch(AsmOp.JNG, lab);
     }
 }
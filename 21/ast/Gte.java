@@ -36,16 +36,15 @@ public class Gte extends BinCompExpr {
      */
     String label() { return "Gte"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.GTE; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, ">="); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return new BoolLit(pos, n>=m); }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -56,23 +55,32 @@ public class Gte extends BinCompExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        compileCondValue(a, "jge", pushed, free);
+    public void compileExpr(Backend a, int pushed, int free) {
+        compileCondValue(a, AsmOp.JGE, pushed, free);
+    }
+
+    /** Generate code that will evaluate this (boolean-valued) expression
+     *  and set the flags, returning the conditional jump that is taken when
+     *  the result is true.
+     */
+    AsmOp compileFlags(Backend a, int pushed, int free) {
+        compileCond(a, pushed, free);
+        return AsmOp.JGE;
     }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is true.
      */
-    void branchTrue(IA32 a, int pushed, int free, String lab) {
+    void branchTrue(Backend a, int pushed, int free, int lab) {
         compileCond(a, pushed, free);
-        a.emit("jge", lab);
+        a.branch(AsmOp.JGE, lab);
     }
 
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is false.
      */
-    void branchFalse(IA32 a, int pushed, int free, String lab) {
+    void branchFalse(Backend a, int pushed, int free, int lab) {
         compileCond(a, pushed, free);
-        a.emit("jl", lab);
+        a.branch(AsmOp.JL, lab);
     }
 }
@@ -21,33 +21,76 @@ package ast;
 import compiler.Failure;
 import compiler.Position;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-/** Provides a simple mechanism for assembly language output.
+/** Generates 32 bit x86 code for a mini program, and provides the
+ *  primitives (instructions, labels, registers, and stack frames) that
+ *  the abstract syntax classes use to do this.  Instructions are int-coded
+ *  all the way from the code generators to the output: each one is an
+ *  AsmOp with operands encoded as longs by AsmOperand, and labels are
+ *  numbers.  They pass through an optional peephole optimizer on their
+ *  way to an AsmOutput, which is an AsmBuffer that writes the text of
+ *  the assembly language when it is closed, or an IA32Encoder that writes
+ *  an ELF object file.
+ *  Beyond straightforward emission, this class threads jumps, places
+ *  cold code out of line when a profile is available, inserts block
+ *  counters and line number information on request, and can compile
+ *  ranges of top-level statements in parallel.
+ *
+ *  The fields of this class hold settings and the frame layout of the
+ *  function, neither of which change while its body is generated.
+ *  Everything that does change is kept in an EmitState, so that a worker
+ *  made by fork() only needs a fresh EmitState to be independent of the
+ *  other threads.
  */
-public class IA32 {
+public class IA32 implements Backend, Cloneable {
 
-    private PrintStream out;
+    /** The code generation state for the function, or for the range of
+     *  statements, that this object is generating code for.
+     */
+    private EmitState st;
 
     /** Default constructor.
      */
     public IA32(PrintStream out) {
-        this.out = out;
+        this(out, MACOSX, IA32_REGS, IA32_CALLEE_SAVED);
+    }
+
+    /** Construct an assembly object for a variant of this machine with
+     *  the given platform flags and registers.  The regs array lists the
+     *  registers for evaluating expressions, and calleeSaved lists the
+     *  registers that a called function must preserve.
+     */
+    protected IA32(PrintStream out, int platform,
+                   int[] regs, int[] calleeSaved) {
+        this(new AsmBuffer(out), platform, regs, calleeSaved);
+    }
+
+    /** Construct an assembly object that sends its output to the given
+     *  destination, with the given platform flags and registers.
+     */
+    IA32(AsmOutput out, int platform, int[] regs, int[] calleeSaved) {
+        this.st          = new EmitState(out, null);
+        this.platform    = platform;
+        this.regs        = regs;
+        this.numRegs     = regs.length;
+        this.calleeSaved = calleeSaved;
     }
 
     /** Set the platform flag for this machine.
      */
-    public final int platform = MACOSX;
+    public final int platform;
 
     /** Include this code in the platform choice if external symbols
      *  require a leading underscore.
      */
     static final int UNDERSCORES = 1;
 
-    /** Include this code in the platform choice if the code generator
-     *  should avoid using the ebx register.
-     */
-    static final int AVOID_EBX = 2;
-
     /** Include this code in the platform choice if the code generator
      *  should ensure that stack frames are aligned on a 16 byte boundary.
      */
@@ -55,7 +98,7 @@ public class IA32 {
 
     /** Platform flags for Linux.
      */
-    static final int LINUX = AVOID_EBX;
+    static final int LINUX = 0;
 
     /** Platform flags for Mac OS X.
      */
@@ -69,24 +112,239 @@ public class IA32 {
      */
     public IA32(String filename)
       throws Exception {
-        this(new PrintStream(filename));
+        this(new AsmBuffer(filename), MACOSX, IA32_REGS, IA32_CALLEE_SAVED);
+    }
+
+    /** Construct an IA32 object that encodes its output directly as
+     *  machine code, writing an ELF relocatable object file with the given
+     *  name instead of an assembly language source file.  ELF objects are
+     *  only used on Linux, so no underscores are added to external names.
+     */
+    public static IA32 toObject(String filename) {
+        return new IA32(new IA32Encoder(filename), LINUX | ALIGN16,
+                        IA32_REGS, IA32_CALLEE_SAVED);
     }
 
     /** Output assembly code for the given program.
      */
     public void generateAssembly(String name, Stmt stmt) {
-        emit(".file",  "\"" + name + "\"");
-
-        String entry = name("Main_main");
-        emit(".globl", entry);
-        emitLabel(entry);
-        int pushed = emitPrologue(Env.getIa32Locals());
-        stmt.compile(this, pushed);
+        LinearScan ls = scan;
+        if (ls!=null) {
+            ls.allocate(stmt);
+        } else {
+            ls = new LinearScan(this);
+            setNumTemps(ls.tempsNeeded(stmt));
+        }
+        spillBase  = Env.getIa32Locals();
+        spillSlots = ls.spillSlots(numRegs);
+        saveTemps();
+        emitEntry(name, "Main_main");
+        int pushed = emitPrologue(spillBase + spillSlots*WORDSIZE);
+        if (threads>0) {
+            compileParallel(stmt.statements(), pushed);
+        } else if (threading) {
+            int done = newLabel();
+            stmt.compileTo(this, pushed, done);
+            emitJoinLabel(done);
+        } else {
+            stmt.compile(this, pushed);
+        }
         emitEpilogue();
+        emitDeferred();
+        emitDivideByZero();
+        emitCounters();
+        close();
+    }
+
+    /** The number of threads that are used for code generation, or zero
+     *  if the program is compiled sequentially.
+     */
+    private int threads = 0;
+
+    /** Set the number of threads that are used for code generation.  When
+     *  this is nonzero, the statements at the top level of the program are
+     *  split into ranges of RANGE_SIZE statements, and each range is
+     *  compiled by a separate copy of this object, with its own output
+     *  buffer, peephole window, and label numbers, which are relocated
+     *  when its code is appended to the output.  The ranges do not depend
+     *  on the number of threads, so neither does the output.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /** The number of top level statements in each range that is compiled
+     *  in parallel.
+     */
+    public static final int RANGE_SIZE = 64;
+
+    /** Generate code for a sequence of top level statements, compiling
+     *  ranges of the statements in parallel, and then appending the code
+     *  for each range to the output in order.
+     */
+    private void compileParallel(Stmt[] stmts, int pushed) {
+        handlePendingAdjust();
+        flush();
+        if (st.peephole!=null) {
+            st.peephole.flush(st.out);
+        }
+        int    n       = (stmts.length + RANGE_SIZE - 1) / RANGE_SIZE;
+        IA32[] workers = new IA32[n];
+        ArrayList<Future<?>> done = new ArrayList<Future<?>>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int k=0; k<n; k++) {
+                IA32 w = workers[k] = fork();
+                int  lo = k*RANGE_SIZE;
+                int  hi = Math.min(lo + RANGE_SIZE, stmts.length);
+                done.add(pool.submit(() -> w.compileRange(stmts, lo, hi, pushed)));
+            }
+            for (int k=0; k<n; k++) {
+                done.get(k).get();
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        for (int k=0; k<n; k++) {
+            EmitState ws   = workers[k].st;
+            int       base = st.labelCounter;
+            AsmList   code = (AsmList)ws.out;
+            st.labelCounter += ws.labelCounter;
+            code.relocate(base);
+            code.writeTo(st.out);
+            st.instructions += ws.instructions;
+            st.jumpsRemoved += ws.jumpsRemoved;
+            if (ws.divideByZero>=0) {
+                st.forkedTraps.add(base + ws.divideByZero);
+            }
+            for (int i=0; i<ws.counters.size(); i++) {
+                int[] c = ws.counters.get(i);
+                c[0] += base;
+                st.counters.add(c);
+            }
+            if (ws.cold!=null) {
+                ws.cold.relocate(base);
+                st.forkedCold.add(ws.cold);
+            }
+        }
+    }
+
+    /** Return a worker for compiling a range of top level statements.
+     *  The worker is a shallow copy of this object, so it shares the
+     *  settings and the register and frame layout that have been chosen
+     *  for the function (regs, numRegs, saved, spillBase, spillSlots,
+     *  frameBase and frameBytes), none of which change once the prologue
+     *  has been generated.  It has a fresh EmitState, with its own output
+     *  buffer and peephole window, and numbers its labels from zero, so
+     *  its code must be relocated when it is appended to the output.
+     */
+    private IA32 fork() {
+        try {
+            IA32 w = (IA32)clone();
+            w.st   = new EmitState(new AsmList(),
+                                   (st.peephole==null) ? null : st.peephole.fork());
+            return w;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Generate code for the statements from lo up to (but not including)
+     *  hi, leaving no pending adjustments, jumps, or labels at the end.
+     *  Any code that is deferred is generated separately in cold, so that
+     *  it can be placed after the end of the function.
+     */
+    private void compileRange(Stmt[] stmts, int lo, int hi, int pushed) {
+        for (int i=lo; i<hi; i++) {
+            if (threading) {
+                int lab = newLabel();
+                stmts[i].compileTo(this, pushed, lab);
+                emitJoinLabel(lab);
+            } else {
+                stmts[i].compile(this, pushed);
+            }
+        }
+        handlePendingAdjust();
+        flush();
+        if (st.peephole!=null) {
+            st.peephole.flush(st.out);
+        }
+        if (!st.deferred.isEmpty()) {
+            AsmOutput main = st.out;
+            st.out = st.cold = new AsmList();
+            emitDeferred();
+            st.out = main;
+        }
+    }
 
-        // Close this IA32 object and free up associated resources.
-        out.close();
-        out = null;
+    /** Close this IA32 object and free up associated resources.
+     */
+    public void close() {
+        flush();
+        if (st.peephole!=null) {
+            st.peephole.flush(st.out);
+        }
+        generationTime = System.nanoTime() - st.started;
+        st.out.close();
+        st.out = null;
+    }
+
+    /** The register allocator for variables, or null if variables are
+     *  always kept in their stack slots.
+     */
+    private LinearScan scan = null;
+
+    /** Set the register allocator for variables, or disable register
+     *  allocation if the argument is null.
+     */
+    public void setRegisterAllocator(LinearScan scan) {
+        this.scan = scan;
+    }
+
+    /** Set the peephole optimizer for this object, or disable peephole
+     *  optimization if the argument is null.
+     */
+    public void setPeephole(Peephole peephole) {
+        st.peephole = peephole;
+    }
+
+    /** Write a line of assembly code to the output, passing it through
+     *  the peephole optimizer if there is one.
+     */
+    private void write(AsmOp op, long a, long b, long c) {
+        if (op!=AsmOp.LABEL) {
+            if (st.instructions++==0) {
+                st.started = System.nanoTime();
+            }
+        }
+        if (st.peephole==null) {
+            st.out.write(op, a, b, c);
+        } else {
+            st.peephole.add(op, a, b, c, st.out);
+        }
+    }
+
+    /** Return the number of instructions that have been generated.
+     */
+    public int getInstructions() {
+        return st.instructions;
+    }
+
+    /** The time in nanoseconds from the first instruction to the point
+     *  where the output was closed.
+     */
+    private long generationTime = 0;
+
+    /** Return the time in nanoseconds that was spent generating code,
+     *  from the first instruction until the output was closed, but not
+     *  including the time taken to write the output file.
+     */
+    public long getGenerationTime() {
+        return generationTime;
     }
 
     /** In the current system, we assume that all values can be represented
@@ -94,54 +352,449 @@ public class IA32 {
      */
     public static final int WORDSIZE = 4;
 
-    /** A counter that is used to generate new labels; the counter is
-     *  incremented each time a new label is produced.
+    /** Return an operand for a label.  Labels are numbered, and are only
+     *  given names (which cannot clash with names in user programs) when
+     *  the output is written.
+     */
+    private long label(int lab) {
+        return AsmOperand.label(lab, (lab<st.rows.length) ? st.rows[lab] : 0);
+    }
+
+    /** Return a fresh (i.e., previously unused) label.
+     */
+    public int newLabel() {
+        return st.labelCounter++;
+    }
+
+    /** Return a fresh label for the top of a loop at the given position.
+     *  When line number information is enabled, the source line of the
+     *  loop is recorded, and included in the name of the label, so that
+     *  a profiler that reports samples against the nearest symbol shows
+     *  where they came from.
+     */
+    public int loopLabel(Position pos) {
+        int lab = newLabel();
+        if (sourceFile!=null && pos.getRow()>0) {
+            if (lab>=st.rows.length) {
+                st.rows = Arrays.copyOf(st.rows, Math.max(2*st.rows.length, lab+1));
+            }
+            st.rows[lab] = pos.getRow();
+        }
+        return lab;
+    }
+
+    /** The name of the source file that line number information refers
+     *  to, or null if no line number information is generated.
+     */
+    private String sourceFile = null;
+
+    /** Request line number information for the named source file, or
+     *  disable it if the argument is null.
+     */
+    public void setSourceFile(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    /** Record that the code that follows was generated from the source
+     *  line at the given position.  The .loc directive is not written
+     *  until the next instruction is output, so that it does not get in
+     *  the way of jump threading, and it is only written if the line has
+     *  changed.
      */
-    private int labelCounter = 0;
+    public void line(Position pos) {
+        if (sourceFile!=null && pos.getRow()>0) {
+            st.line = pos.getRow();
+        }
+    }
 
-    /** Generate a string for a label from an integer input.
-     *  We require that distinct inputs produce distinct outputs
-     *  and that none of the generated label names can clash with
-     *  names in user programs.
+    /** Output a .loc directive for the current source line if it differs
+     *  from the line that was last output.
      */
-    public String label(int l) {
-        return "l" + l;
+    private void writeLine() {
+        if (st.line!=st.lastLine) {
+            write(AsmOp.LOC, AsmOperand.number(1), AsmOperand.number(st.line),
+                  AsmOperand.NONE);
+            st.lastLine = st.line;
+        }
     }
 
-    /** Return a fresh (i.e., previously unused) label name.
+    /** Output the directives that begin the code for the named input
+     *  file, followed by the definition of the global name entry, at
+     *  which execution of the program starts.
      */
-    public String newLabel() {
-        return label(labelCounter++);
+    public void emitEntry(String name, String entry) {
+        directive(AsmOp.FILE, AsmOperand.string(name));
+        if (sourceFile!=null) {
+            write(AsmOp.FILE, AsmOperand.number(1), AsmOperand.string(sourceFile),
+                  AsmOperand.NONE);
+        }
+        globalLabel(entry);
     }
 
-    /** Output a label at the beginning of a line.
+    /** Output a label at the beginning of a line.  When jump threading
+     *  is enabled, the label is held back until the next instruction, so
+     *  that we can see whether it is the target of a pending jump, or
+     *  whether it is just an alias for the target of another jump.
      */
-    public void emitLabel(String name) {
+    public void emitLabel(int lab) {
         handlePendingAdjust();
-        out.print(name);
-        out.println(":");
+        if (threading) {
+            if (st.numPending==st.pendingLabels.length) {
+                st.pendingLabels = Arrays.copyOf(st.pendingLabels, 2*st.numPending);
+            }
+            st.pendingLabels[st.numPending++] = lab;
+        } else {
+            write(AsmOp.LABEL, label(lab), AsmOperand.NONE, AsmOperand.NONE);
+        }
     }
 
-    /** Output a function/variable name using the appropriate
-     *  platform naming conventions with respect to underscores.
+    /** Output the label that follows a statement compiled by compileTo().
+     *  When jump threading is enabled, the label is dropped when the
+     *  pending labels are flushed unless a jump or branch refers to it, so
+     *  that it does not get in the way of the peephole optimizer.
      */
-    public String name(String n) {
-        return (platform & UNDERSCORES)==0 ? n : ("_" + n);
+    public void emitJoinLabel(int lab) {
+        if (threading) {
+            st.joins.set(lab);
+        }
+        emitLabel(lab);
     }
 
-    private String[] regs = (platform & AVOID_EBX)==0
-        ? new String[] { "%eax",         "%ecx", "%esi", "%edi" }
-        : new String[] { "%eax", "%ebx", "%ecx", "%esi", "%edi" };
+    /** Records whether jump threading is enabled.  In this mode, jumps and
+     *  labels are output lazily: a jump to a label that immediately follows
+     *  is dropped, a label whose only code is a jump becomes an alias for
+     *  the target of that jump (so that later branches to it go straight
+     *  to the final target), a conditional branch over an unconditional
+     *  jump is inverted, and code that follows a jump without an
+     *  intervening label is discarded as unreachable.
+     */
+    private boolean threading = false;
 
-    private int numRegs = regs.length;
+    /** Enable or disable jump threading.
+     */
+    public void setJumpThreading(boolean threading) {
+        this.threading = threading;
+    }
 
-    /** Return the name of the physical register corresponding to a
+    /** Test to see if jump threading is enabled.
+     */
+    public boolean isThreading() {
+        return threading;
+    }
+
+    /** Return the number of jumps and branches that have been removed or
+     *  threaded.
+     */
+    public int getJumpsRemoved() {
+        return st.jumpsRemoved;
+    }
+
+    /** Return the label that a jump to lab should actually target.
+     */
+    private int resolve(int lab) {
+        for (int a=alias(lab); a>=0; a=alias(lab)) {
+            lab = a;
+        }
+        return lab;
+    }
+
+    /** Return the label that lab has been made an alias for, or -1 if it
+     *  is not an alias.
+     */
+    private int alias(int lab) {
+        return (lab<st.aliases.length) ? st.aliases[lab] : -1;
+    }
+
+    /** Test to see if a label is waiting to be output.
+     */
+    private boolean isPending(int lab) {
+        for (int i=0; i<st.numPending; i++) {
+            if (st.pendingLabels[i]==lab) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Output an unconditional jump to the given label.
+     */
+    public void jump(int lab) {
+        if (!threading) {
+            emit(AsmOp.JMP, label(lab));
+            return;
+        }
+        handlePendingAdjust();
+        lab = resolve(lab);
+        if (st.numPending>0) {
+            // Any pending label that has not been used yet can be replaced
+            // by the target of this jump:
+            int kept = 0;
+            for (int i=0; i<st.numPending; i++) {
+                int l = st.pendingLabels[i];
+                if (!st.referenced.get(l) && l!=lab) {
+                    if (l>=st.aliases.length) {
+                        int n      = st.aliases.length;
+                        st.aliases = Arrays.copyOf(st.aliases, Math.max(2*n, l+1));
+                        Arrays.fill(st.aliases, n, st.aliases.length, -1);
+                    }
+                    st.aliases[l] = lab;
+                    st.aliased.set(lab);
+                    st.jumpsRemoved++;
+                } else {
+                    st.pendingLabels[kept++] = l;
+                }
+            }
+            st.numPending = kept;
+            if (st.pendingJump>=0) {
+                st.pendingJump = resolve(st.pendingJump);
+            }
+            if (st.pendingBranch>=0) {
+                st.pendingBranch = resolve(st.pendingBranch);
+            }
+            if (st.numPending>0) {
+                flush();
+            }
+        }
+        if (st.pendingJump>=0 || !st.reachable) {
+            st.jumpsRemoved++;            // this jump is unreachable
+        } else {
+            st.pendingJump = lab;
+        }
+    }
+
+    /** Output a conditional branch, using the given opcode, to a label.
+     */
+    public void branch(AsmOp op, int lab) {
+        if (!threading) {
+            emit(op, label(lab));
+            return;
+        }
+        handlePendingAdjust();
+        flush();
+        if (st.reachable) {
+            st.pendingBranchOp = op;
+            st.pendingBranch   = resolve(lab);
+        }
+    }
+
+    /** Output any pending branch, jump, and labels.
+     */
+    private void flush() {
+        if (st.pendingBranch>=0) {
+            AsmOp op  = st.pendingBranchOp;
+            int   lab = st.pendingBranch;
+            st.pendingBranch = -1;
+            if (isPending(lab)) {
+                if (st.pendingJump<0) {
+                    st.jumpsRemoved++;     // jcc l; l:  ==>  l:
+                } else {
+                    print(op.invert(), st.pendingJump);
+                    st.pendingJump = -1;   // jcc l; jmp m; l:  ==>  jncc m; l:
+                    st.jumpsRemoved++;
+                }
+            } else {
+                print(op, lab);
+            }
+        }
+        if (st.pendingJump>=0) {
+            if (isPending(st.pendingJump)) {
+                st.jumpsRemoved++;         // jmp l; l:  ==>  l:
+            } else {
+                print(AsmOp.JMP, st.pendingJump);
+            }
+            st.pendingJump = -1;
+            st.reachable   = false;
+        }
+        if (st.numPending>0) {
+            for (int i=0; i<st.numPending; i++) {
+                int l = st.pendingLabels[i];
+                if (!st.joins.get(l) || st.referenced.get(l) || st.aliased.get(l)) {
+                    write(AsmOp.LABEL, label(l), AsmOperand.NONE, AsmOperand.NONE);
+                }
+            }
+            st.numPending = 0;
+            st.reachable  = true;
+        }
+    }
+
+    /** Output a jump or branch instruction, recording its target.
+     */
+    private void print(AsmOp op, int lab) {
+        st.referenced.set(lab);
+        write(op, label(lab), AsmOperand.NONE, AsmOperand.NONE);
+    }
+
+    /** Prepare to output an instruction when jump threading is enabled,
+     *  returning false if the instruction is unreachable and should be
+     *  discarded.
+     */
+    private boolean ready() {
+        if (threading) {
+            flush();
+            return st.reachable;
+        }
+        return true;
+    }
+
+    /** Return an operand for a function/variable name using the
+     *  appropriate platform naming conventions with respect to underscores.
+     */
+    protected long name(String n) {
+        return AsmOperand.symbol((platform & UNDERSCORES)==0 ? n : ("_" + n));
+    }
+
+    /** The numbers of the registers that are used for evaluating
+     *  expressions.  The caller saved registers come first, so that the
+     *  callee saved registers, which must be saved in the prologue, are
+     *  only used by programs that need them.
+     */
+    private int[] regs;
+
+    /** The registers that IA32 uses for evaluating expressions.
+     */
+    private static final int[] IA32_REGS
+        = { AsmOperand.EAX, AsmOperand.ECX, AsmOperand.ESI, AsmOperand.EDI,
+            AsmOperand.EBX };
+
+    /** Operands for the registers that division and multiplication use.
+     */
+    private static final long EAX = AsmOperand.reg(AsmOperand.EAX),
+                              EDX = AsmOperand.reg(AsmOperand.EDX),
+                              DL  = AsmOperand.byteReg(AsmOperand.EDX);
+
+    /** A missing operand.
+     */
+    private static final long NONE = AsmOperand.NONE;
+
+    private int numRegs;
+
+    /** Return the number of registers that are available for use in
+     *  evaluating expressions.
+     */
+    public int getNumRegs() {
+        return numRegs;
+    }
+
+    /** Set the number of registers that are used for evaluating
+     *  expressions, which must be at least two and no more than the
+     *  number of registers in regs.
+     */
+    public void setNumTemps(int temps) {
+        numRegs = temps;
+    }
+
+    /** The registers that the code we call must preserve, and which can
+     *  therefore hold variables across a call to print.
+     */
+    private int[] calleeSaved;
+
+    /** The registers that are callee saved in the IA32 calling convention.
+     */
+    private static final int[] IA32_CALLEE_SAVED
+        = { AsmOperand.EBX, AsmOperand.EDI, AsmOperand.ESI, AsmOperand.EBP };
+
+    /** Return the callee saved registers that are not used for evaluating
+     *  expressions when only the first temps registers in regs are used.
+     *  %ebp is only included when the frame pointer is omitted.
+     */
+    public int[] variableRegs(int temps) {
+        int[] vars = new int[calleeSaved.length];
+        int   n    = 0;
+        for (int i=0; i<calleeSaved.length; i++) {
+            int r = calleeSaved[i];
+            if (r==AsmOperand.EBP && !omitFramePointer) {
+                continue;
+            }
+            boolean used = false;
+            for (int j=0; j<temps; j++) {
+                used |= regs[j]==r;
+            }
+            if (!used) {
+                vars[n++] = r;
+            }
+        }
+        return Arrays.copyOf(vars, n);
+    }
+
+    /** Registers that must be saved on entry to the current function and
+     *  restored on exit because they are used to hold variables.  This is
+     *  part of the frame layout, so it is shared with workers.
+     */
+    private int[] saved = new int[0];
+
+    /** Record that a register must be saved on entry and restored on exit.
+     */
+    public void saveOnEntry(int reg) {
+        for (int i=0; i<saved.length; i++) {
+            if (saved[i]==reg) {
+                return;
+            }
+        }
+        saved = Arrays.copyOf(saved, saved.length+1);
+        saved[saved.length-1] = reg;
+    }
+
+    /** Record that the callee saved registers among those that are used
+     *  for evaluating expressions must be saved on entry.  This should be
+     *  called after setNumTemps(), so that only the registers that the
+     *  function actually uses are saved.
+     */
+    public void saveTemps() {
+        for (int i=0; i<numRegs; i++) {
+            for (int j=0; j<calleeSaved.length; j++) {
+                if (regs[i]==calleeSaved[j]) {
+                    saveOnEntry(regs[i]);
+                }
+            }
+        }
+    }
+
+    /** Return an estimate of the number of cycles that are needed to
+     *  execute an instruction with the given opcode.  These figures are
+     *  approximate latencies for a typical modern implementation, and are
+     *  used by the cost model when comparing different ways of computing
+     *  the same value.  Memory operands are accounted for separately.
+     */
+    public int cycles(AsmOp op) {
+        switch (op) {
+            case IMULL : return 3;
+            case IDIVL : return 26;
+            case XCHGL : return 2;
+            case PUSHL :
+            case POPL  : return 2;
+            default    : return 1;
+        }
+    }
+
+    /** An estimate of the additional number of cycles that are needed to
+     *  read a value from memory, assuming a cache hit.
+     */
+    public static final int LOAD_CYCLES = 3;
+
+    /** Return an operand for the physical register corresponding to a
+     *  specific logical register.
+     */
+    public long reg(int free) {
+        return AsmOperand.reg(regNum(free));
+    }
+
+    /** Return the number of the physical register corresponding to a
      *  specific logical register.
      */
-    public String reg(int free) {
+    protected int regNum(int free) {
         return regs[free % numRegs];
     }
 
+    /** Return an operand for a byte register that can be used to compute
+     *  a value for reg(free) with a setcc instruction: the low byte of
+     *  reg(free) if it has one, or %dl otherwise (%esi and %edi do not
+     *  have byte registers).
+     */
+    public long byteReg(int free) {
+        int r = regNum(free);
+        return AsmOperand.byteReg((r<4) ? r : AsmOperand.EDX);
+    }
+
     /** Determine whether spilling is required to access the specified
      *  logical register (i.e., whether the same physical register is
      *  already being used to hold the value of a different, lower index
@@ -152,104 +805,632 @@ public class IA32 {
     }
 
     /** Output code to preserve the value in a register that is
-     *  currently in use by pushing its value to the stack.  This
-     *  allows that same register to be used temporarily to hold
-     *  the value for a different logical register.
-     */
-    public int spill(int free) {
-        if (spillFor(free)) {
-            emit("pushl", reg(free));
-            return WORDSIZE;
-        } else {
+     *  currently in use by saving it in the frame slot for the logical
+     *  register, or by pushing it on the stack if no slot was reserved.
+     *  This allows that same register to be used temporarily to hold
+     *  the value for a different logical register.  Returns the number
+     *  of bytes that were pushed.
+     */
+    public int spill(int free, int pushed) {
+        if (!spillFor(free)) {
+            return 0;
+        } else if (hasSpillSlot(free)) {
+            emit(AsmOp.MOVL, reg(free), spillSlot(free, pushed));
             return 0;
+        } else {
+            push(reg(free));
+            return getWordSize();
         }
     }
 
     /** Output code to restore a register to its previously
-     *  held value, if any, by popping the old value off of
-     *  the stack.
+     *  held value, if any, from its frame slot or by popping
+     *  the old value off of the stack.
      */
-    public void unspill(int free) {
-        if (spillFor(free)) {
-            emit("popl", reg(free));
+    public void unspill(int free, int pushed) {
+        if (!spillFor(free)) {
+            return;
+        } else if (hasSpillSlot(free)) {
+            emit(AsmOp.MOVL, spillSlot(free, pushed), reg(free));
+        } else {
+            pop(reg(free));
         }
     }
 
+    /** The number of frame slots that are reserved, below the locals, for
+     *  spilling registers.  The slot for logical register free is used by
+     *  spill(free), so that nested spills use different slots.  This is
+     *  part of the frame layout, so it is shared with workers.
+     */
+    private int spillSlots = 0;
+
+    /** The number of bytes that are used for locals, above the spill slots.
+     *  This is part of the frame layout, so it is shared with workers.
+     */
+    private int spillBase = 0;
+
+    /** Test to see if a frame slot has been reserved for spilling the
+     *  register for the logical register free.
+     */
+    private boolean hasSpillSlot(int free) {
+        return free-numRegs < spillSlots;
+    }
+
+    /** Return a reference to the frame slot for spilling the register for
+     *  the logical register free.
+     */
+    private long spillSlot(int free, int pushed) {
+        return local(-(spillBase + (free-numRegs+1)*WORDSIZE), pushed);
+    }
+
+    /** Return the number of bytes that are pushed on to the stack by a
+     *  push or call instruction.
+     */
+    public int getWordSize() {
+        return WORDSIZE;
+    }
+
+    /** Output an instruction to push the value in a register on to the
+     *  stack.
+     */
+    protected void push(long reg) {
+        emit(AsmOp.PUSHL, reg);
+    }
+
+    /** Output an instruction to pop a value from the stack into a
+     *  register.
+     */
+    protected void pop(long reg) {
+        emit(AsmOp.POPL, reg);
+    }
+
+    /** Output an instruction that uses op (the 32 bit form of an
+     *  instruction) to operate on full words, such as the stack and frame
+     *  pointers.
+     */
+    protected void emitWord(AsmOp op, long src, long dst) {
+        emit(op, src, dst);
+    }
+
+    /** Return an operand for the stack pointer register.
+     */
+    protected long stackPointer() {
+        return AsmOperand.reg(AsmOperand.ESP);
+    }
+
+    /** Return an operand for the frame pointer register.
+     */
+    protected long framePointer() {
+        return AsmOperand.reg(AsmOperand.EBP);
+    }
+
+    /** Insert the alignment bytes that are needed before a call to the
+     *  print function, given the number of bytes that have been pushed,
+     *  and return the number of bytes that were inserted.  The argument
+     *  is pushed on the stack, so it is included in the calculation.
+     */
+    public int printAdjust(int pushed) {
+        int adjust = alignmentAdjust(pushed + WORDSIZE);
+        insertAdjust(adjust);
+        return adjust;
+    }
+
+    /** Pass the value in src (a register, memory, or immediate operand)
+     *  to the print function and call it, then remove the argument and
+     *  the adjust bytes that printAdjust() inserted.
+     */
+    public void callPrint(long src, int adjust) {
+        emit(AsmOp.PUSHL, src);
+        call("print", 0);
+        removeAdjust(adjust + WORDSIZE);
+    }
+
     /** Emit instructions for a simple function call.  On platforms with
      *  ALIGN16, the stack pointer should be 16 byte aligned at this point.
      */
     public void call(String lab, int free) {
-        emit("call", name(lab));
+        emit(AsmOp.CALL, name(lab));
         if ((free%numRegs)!=0) {
-            emit("movl", reg(0), reg(free));
+            emit(AsmOp.MOVL, reg(0), reg(free));
         }
     }
 
-    /** Emit an instruction with no operands.
+    /** Return the label for the code that reports a division by zero,
+     *  creating it the first time that it is needed in each function.
      */
-    public void emit(String op) {
-        handlePendingAdjust();
-        out.println("\t" + op);
+    private int divideByZeroLabel() {
+        if (st.divideByZero<0) {
+            st.divideByZero = newLabel();
+        }
+        return st.divideByZero;
     }
 
-    /** Emit an instruction with one operand.
+    /** Output the code that reports a division by zero, if any division
+     *  in the current function has referenced it.  This code is placed
+     *  after the epilogue, so it is only reached by a branch from one of
+     *  the divisions.  The runtime function does not return, so we can
+     *  realign the stack before calling it without restoring it later.
      */
-    public void emit(String op, String op1) {
-        handlePendingAdjust();
-        out.println("\t" + op + "\t" + op1);
+    public void emitDivideByZero() {
+        if (st.divideByZero>=0 || !st.forkedTraps.isEmpty()) {
+            if (st.divideByZero>=0) {
+                emitLabel(st.divideByZero);
+            }
+            for (int i=0; i<st.forkedTraps.size(); i++) {
+                emitLabel(st.forkedTraps.get(i));
+            }
+            st.forkedTraps.clear();
+            emitWord(AsmOp.ANDL, immed(-16), stackPointer());
+            emit(AsmOp.CALL, name("divideByZero"));
+            st.divideByZero = -1;
+        }
     }
 
-    /** Emit an instruction with two operands.
+    /** The profile that is used to guide block layout, or null if there
+     *  is none.
+     */
+    private Profile profile = null;
+
+    /** Set the profile that is used to guide block layout, or disable
+     *  profile guided layout if the argument is null.
+     */
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    /** Return the profile that is used to guide block layout, or null if
+     *  there is none.
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /** Arrange for code to be generated out of line, after the end of
+     *  the current function.  The code must begin with a label, and must
+     *  finish by jumping to next, which is therefore treated as referenced
+     *  even though the jump has not been generated yet.
+     */
+    public void defer(int next, Runnable code) {
+        st.referenced.set(next);
+        st.deferred.add(code);
+    }
+
+    /** Output the code that has been deferred, including any code that it
+     *  defers in turn, followed by the code that was deferred in copies of
+     *  this object made by fork().
      */
-    public void emit(String op, String op1, String op2) {
+    private void emitDeferred() {
+        for (int i=0; i<st.deferred.size(); i++) {
+            st.deferred.get(i).run();
+        }
+        st.deferred.clear();
         handlePendingAdjust();
-        out.println("\t" + op + "\t" + op1 + "," + op2);
+        flush();
+        if (st.peephole!=null) {
+            st.peephole.flush(st.out);
+        }
+        for (int i=0; i<st.forkedCold.size(); i++) {
+            st.forkedCold.get(i).writeTo(st.out);
+        }
+        st.forkedCold.clear();
     }
 
-    /** Return a number as a string for use in contexts where only
-     *  a number is allowed and hence no special characters are
-     *  required to distinguish an addressing mode.
+    /** Records whether the output includes code that counts the number of
+     *  times that each block is executed.
+     */
+    private boolean profiling = false;
+
+    /** Enable or disable block execution counters.
      */
-    public String number(int v) {
-        return Integer.toString(v);
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
     }
 
-    /** Return a string for an operand using immediate addressing.
+    /** Test to see if block execution counters are enabled.
      */
-    public String immed(int v) {
-        return "$" + v;
+    public boolean isProfiling() {
+        return profiling;
     }
 
-    /** Return a reference to a memory location using indirect
-     *  addressing.
+    /** Emit code to increment the execution counter for a block.  Blocks
+     *  are identified by the position of the statement that they belong
+     *  to, and an arm number that distinguishes the blocks of a single
+     *  statement: 0 for the true arm of an if or the test of a loop, and
+     *  1 for the false arm of an if or the body of a loop.
+     */
+    public void count(Position pos, int arm) {
+        if (profiling) {
+            int lab = newLabel();
+            st.counters.add(new int[] { lab, pos.getRow(), pos.getColumn(), arm });
+            emit(AsmOp.INCL, data(lab));
+        }
+    }
+
+    /** Return an operand that refers to the data at the given label.
+     */
+    protected long data(int lab) {
+        return AsmOperand.data(lab);
+    }
+
+    /** Output the block execution counters, and the positions of the
+     *  corresponding blocks, if profiling is enabled.  The runtime looks
+     *  for Main_numBlocks, and if it is defined, then it writes the counts
+     *  out when the program exits.
+     */
+    private void emitCounters() {
+        if (profiling) {
+            flush();
+            directive(AsmOp.BSS, NONE);
+            directive(AsmOp.ALIGN, AsmOperand.number(4));
+            globalLabel("Main_counts");
+            for (int i=0; i<st.counters.size(); i++) {
+                write(AsmOp.LABEL, label(st.counters.get(i)[0]), NONE, NONE);
+                directive(AsmOp.SPACE, AsmOperand.number(WORDSIZE));
+            }
+            directive(AsmOp.DATA, NONE);
+            directive(AsmOp.ALIGN, AsmOperand.number(4));
+            globalLabel("Main_blocks");
+            for (int i=0; i<st.counters.size(); i++) {
+                int[] c = st.counters.get(i);
+                write(AsmOp.LONG, AsmOperand.number(c[1]), AsmOperand.number(c[2]),
+                      AsmOperand.number(c[3]));
+            }
+            globalLabel("Main_numBlocks");
+            directive(AsmOp.LONG, AsmOperand.number(st.counters.size()));
+        }
+    }
+
+    /** Output a directive with at most one operand, whether or not the
+     *  current point in the code is reachable.
+     */
+    private void directive(AsmOp op, long op1) {
+        write(op, op1, NONE, NONE);
+    }
+
+    /** Output the definition of a global name.
+     */
+    private void globalLabel(String n) {
+        long sym = name(n);
+        directive(AsmOp.GLOBL, sym);
+        write(AsmOp.LABEL, sym, NONE, NONE);
+    }
+
+    /** Emit code to divide the value in reg(free) by the value in
+     *  reg(free+1), leaving the quotient in reg(free) and preserving all
+     *  other registers, or to trap if the divisor is zero.  The idivl
+     *  instruction requires the dividend in %eax and overwrites %edx with
+     *  the remainder.  We never use %edx as one of our registers, so it
+     *  can be overwritten, but %eax might hold either the divisor or the
+     *  value of a lower numbered register, so we exchange it with the
+     *  dividend before the division and swap it back afterwards.  If %eax
+     *  is the divisor, then it will be restored when reg(free+1) is
+     *  unspilled.  Division by -1 is handled separately by negating the
+     *  dividend, because idivl traps when the quotient overflows.
      */
-    public String indirect(int n, String s) {
-        if (n==0) {
-            return "(" + s + ")";
+    public void divide(int free) {
+        long n    = reg(free);
+        long d    = reg(free+1);
+        int  lab1 = newLabel();  // jump here to use idivl
+        int  lab2 = newLabel();  // jump here when done
+        emit(AsmOp.TESTL, d, d);
+        branch(AsmOp.JZ, divideByZeroLabel());
+        emit(AsmOp.CMPL, immed(-1), d);
+        branch(AsmOp.JNZ, lab1);
+        emit(AsmOp.NEGL, n);
+        jump(lab2);
+        emitLabel(lab1);
+        if (n==EAX) {
+            emit(AsmOp.CLTD);
+            emit(AsmOp.IDIVL, d);
+        } else if (d==EAX) {
+            emit(AsmOp.XCHGL, n, EAX);
+            emit(AsmOp.CLTD);
+            emit(AsmOp.IDIVL, n);
+            emit(AsmOp.MOVL, EAX, n);
         } else {
-            return n + "(" + s + ")";
+            emit(AsmOp.XCHGL, n, EAX);
+            emit(AsmOp.CLTD);
+            emit(AsmOp.IDIVL, d);
+            emit(AsmOp.XCHGL, n, EAX);
         }
+        emitLabel(lab2);
     }
 
-    /** Track the number of bytes by which the stack pointer should be
-     *  adjusted before the next instruction.  This mechanism allows us
-     *  to combine multiple adjustments into a single instruction, and
-     *  to omit adjustments completely when they are not required (for
-     *  example, immediately before a function's epilogue).
+    /** Emit code to divide the value in reg(free) by the nonzero constant
+     *  d, leaving the quotient in reg(free) and preserving all other
+     *  registers.  Division by a power of two uses an arithmetic shift,
+     *  after first adding d-1 to negative dividends so that the result
+     *  is rounded towards zero.  Any other divisor is handled by using
+     *  imull to multiply by a "magic" approximation of 2^(32+s)/d and
+     *  taking the high word of the result, as described in Chapter 10 of
+     *  "Hacker's Delight" by Henry S. Warren.  Negative divisors use the
+     *  code for -d and then negate the result.
      */
-    private int pendingAdjust = 0;
+    public void divideConst(int free, int d, int pushed) {
+        long n = reg(free);
+        int  m = Math.abs(d);
+        if (d==Integer.MIN_VALUE) {          // Result is 1 if n==d, else 0
+            emit(AsmOp.CMPL, immed(d), n);
+            emit(AsmOp.SETE, DL);
+            emit(AsmOp.MOVZBL, DL, n);
+            return;
+        } else if ((m & (m-1))==0) {         // Divide by a power of two
+            int k = Integer.numberOfTrailingZeros(m);
+            if (k>0) {
+                emit(AsmOp.MOVL, n, EDX);
+                if (k>1) {
+                    emit(AsmOp.SARL, immed(31), EDX);
+                }
+                emit(AsmOp.SHRL, immed(32-k), EDX);
+                emit(AsmOp.ADDL, EDX, n);
+                emit(AsmOp.SARL, immed(k), n);
+            }
+        } else {                             // Multiply by magic number
+            int[] ms  = divideMagic(m);
+            long  t   = reg(free+1);
+            long  src = n;
+            spill(free+1, pushed);
+            if (n==EAX) {
+                emit(AsmOp.MOVL, n, t);      // Keep a copy of n in t
+                src = t;
+            } else if (t!=EAX) {
+                emit(AsmOp.MOVL, EAX, t);    // Save %eax in t
+            }
+            emit(AsmOp.MOVL, immed(ms[0]), EAX);
+            emit(AsmOp.IMULL, src);
+            if (ms[0]<0) {
+                emit(AsmOp.ADDL, src, EDX);
+            }
+            if (ms[1]>0) {
+                emit(AsmOp.SARL, immed(ms[1]), EDX);
+            }
+            if (n!=EAX && t!=EAX) {
+                emit(AsmOp.MOVL, t, EAX);    // Restore %eax
+            }
+            emit(AsmOp.MOVL, EDX, n);        // Add one if the result is
+            emit(AsmOp.SHRL, immed(31), EDX);// negative to round towards
+            emit(AsmOp.ADDL, EDX, n);        // zero
+            unspill(free+1, pushed);
+        }
+        if (d<0) {
+            emit(AsmOp.NEGL, n);
+        }
+    }
+
+    /** Return an estimate of the number of cycles that are needed for the
+     *  code that divideConst() produces for the divisor d.
+     */
+    public int divideCycles(int d) {
+        int m = Math.abs(d);
+        int c = (d<0) ? cycles(AsmOp.NEGL) : 0;
+        if (d==Integer.MIN_VALUE) {
+            return cycles(AsmOp.CMPL) + cycles(AsmOp.SETE) + cycles(AsmOp.MOVZBL);
+        } else if ((m & (m-1))==0) {
+            return (m==1) ? c
+                          : c + cycles(AsmOp.MOVL) + cycles(AsmOp.SARL)
+                              + cycles(AsmOp.SHRL) + cycles(AsmOp.ADDL)
+                              + cycles(AsmOp.SARL);
+        } else {
+            return c + 4*cycles(AsmOp.MOVL) + cycles(AsmOp.IMULL)
+                     + cycles(AsmOp.ADDL) + cycles(AsmOp.SARL)
+                     + cycles(AsmOp.SHRL) + cycles(AsmOp.ADDL);
+        }
+    }
+
+    /** Calculate the magic number and shift for division by the constant
+     *  d, which must be at least 2 and not a power of two.  This is the
+     *  algorithm from Figure 10-1 of "Hacker's Delight", using longs to
+     *  represent the unsigned 32 bit quantities in the original.
+     */
+    private static int[] divideMagic(int d) {
+        final long two31 = 0x80000000L;
+        long anc = two31 - 1 - two31 % d;    // Absolute value of nc
+        int  p   = 31;
+        long q1  = two31 / anc;              // q1 = 2^p/|nc|
+        long r1  = two31 - q1*anc;           // r1 = rem(2^p, |nc|)
+        long q2  = two31 / d;                // q2 = 2^p/d
+        long r2  = two31 - q2*d;             // r2 = rem(2^p, d)
+        long delta;
+        do {
+            p++;
+            q1 = 2*q1;
+            r1 = 2*r1;
+            if (r1>=anc) {
+                q1++;
+                r1 -= anc;
+            }
+            q2 = 2*q2;
+            r2 = 2*r2;
+            if (r2>=d) {
+                q2++;
+                r2 -= d;
+            }
+            delta = d - r2;
+        } while (q1<delta || (q1==delta && r1==0));
+        return new int[] { (int)(q2+1), p-32 };
+    }
+
+    /** Emit code to multiply the value in reg(free) by the constant c,
+     *  leaving the result in reg(free) and preserving all other registers.
+     *  We use the cheapest of the sequences that mulPlan() finds, falling
+     *  back to imull with an immediate operand if none of them is faster.
+     */
+    public void multiplyConst(int free, int c) {
+        long n = reg(free);
+        ArrayList<long[]> plan = mulPlan(c, n);
+        if (plan==null) {
+            emit(AsmOp.IMULL, immed(c), n);
+        } else {
+            for (int i=0; i<plan.size(); i++) {
+                long[] is = plan.get(i);
+                emit(AsmOp.of((int)is[0]), is[1], is[2]);
+            }
+        }
+    }
+
+    /** Return an estimate of the number of cycles that are needed for the
+     *  code that multiplyConst() produces for the constant c.
+     */
+    public int multiplyCycles(int c) {
+        ArrayList<long[]> plan = mulPlan(c, reg(0));
+        return (plan==null) ? cycles(AsmOp.IMULL) : planCycles(plan);
+    }
+
+    /** Find the cheapest sequence of shifts and leal instructions that
+     *  multiplies the register n by c, or return null if imull would be at
+     *  least as fast.  Each instruction is represented by an array holding
+     *  the ordinal of its opcode and its two operands; %edx may be used as
+     *  a temporary.  The candidates are: a single shift for a
+     *  power of two; leal with a scaled index for 3, 5, or 9 times a power
+     *  of two; two leal instructions for a product of two of those; and
+     *  two leal instructions for 1 + s*f, with s in 2, 4, 8 and f in 3, 5,
+     *  9.  A negative factor uses the code for its absolute value followed
+     *  by negl.  (Integer.MIN_VALUE is its own absolute value, and is
+     *  handled correctly as a shift by 31.)
+     */
+    private ArrayList<long[]> mulPlan(int c, long n) {
+        ArrayList<long[]> best = new ArrayList<long[]>();
+        if (c==0) {
+            best.add(instr(AsmOp.MOVL, immed(0), n));
+            return best;
+        }
+        int m = (c<0 && c!=Integer.MIN_VALUE) ? -c : c;
+        if (m!=1) {
+            best = null;
+            if ((m & (m-1))==0) {
+                best = plan(sall(Integer.numberOfTrailingZeros(m), n));
+            }
+            for (int i=0; i<LEA_FACTORS.length; i++) {
+                int f = LEA_FACTORS[i];
+                if (m%f==0 && ((m/f) & (m/f-1))==0) {
+                    int k = Integer.numberOfTrailingZeros(m/f);
+                    best  = cheaper(best, (k==0) ? plan(leal(f, n, n))
+                                                 : plan(leal(f, n, n), sall(k, n)));
+                }
+                for (int j=0; j<LEA_FACTORS.length; j++) {
+                    int g = LEA_FACTORS[j];
+                    if (m==f*g) {
+                        best = cheaper(best, plan(leal(f, n, n), leal(g, n, n)));
+                    }
+                    if (m==1+(g-1)*f) {
+                        best = cheaper(best, plan(leal(f, n, EDX),
+                                       instr(AsmOp.LEAL, AsmOperand.index(n, EDX, g-1), n)));
+                    }
+                }
+            }
+            if (best==null) {
+                return null;
+            }
+        }
+        if (c<0 && c!=Integer.MIN_VALUE) {
+            best.add(instr(AsmOp.NEGL, n, NONE));
+        }
+        return (planCycles(best)<cycles(AsmOp.IMULL)) ? best : null;
+    }
+
+    /** The factors that can be computed by a single leal instruction.
+     */
+    private static final int[] LEA_FACTORS = { 3, 5, 9 };
+
+    /** Return an array that represents a single instruction in a plan.
+     */
+    private static long[] instr(AsmOp op, long a, long b) {
+        return new long[] { op.ordinal(), a, b };
+    }
+
+    /** Return an instruction that uses leal to multiply n by f, which
+     *  must be one of the LEA_FACTORS, leaving the result in dst.
+     */
+    private static long[] leal(int f, long n, long dst) {
+        return instr(AsmOp.LEAL, AsmOperand.index(n, n, f-1), dst);
+    }
+
+    /** Return an instruction that shifts n left by k bits.
+     */
+    private long[] sall(int k, long n) {
+        return instr(AsmOp.SALL, immed(k), n);
+    }
+
+    /** Make a plan from a sequence of instructions.
+     */
+    private static ArrayList<long[]> plan(long[]... is) {
+        ArrayList<long[]> plan = new ArrayList<long[]>();
+        for (int i=0; i<is.length; i++) {
+            plan.add(is[i]);
+        }
+        return plan;
+    }
+
+    /** Return the cheaper of two plans, either of which may be null.
+     *  Ties are broken in favor of the shorter plan, and then the first.
+     */
+    private ArrayList<long[]> cheaper(ArrayList<long[]> p, ArrayList<long[]> q) {
+        if (p==null) {
+            return q;
+        } else if (q==null) {
+            return p;
+        }
+        int c = planCycles(q) - planCycles(p);
+        return (c<0 || (c==0 && q.size()<p.size())) ? q : p;
+    }
+
+    /** Return the estimated number of cycles for the given plan.
+     */
+    private int planCycles(ArrayList<long[]> plan) {
+        int c = 0;
+        for (int i=0; i<plan.size(); i++) {
+            c += cycles(AsmOp.of((int)plan.get(i)[0]));
+        }
+        return c;
+    }
+
+    /** Emit an instruction with no operands.
+     */
+    public void emit(AsmOp op) {
+        emit(op, NONE, NONE);
+    }
+
+    /** Emit an instruction with one operand.
+     */
+    public void emit(AsmOp op, long op1) {
+        emit(op, op1, NONE);
+    }
+
+    /** Emit an instruction with two operands.
+     */
+    public void emit(AsmOp op, long op1, long op2) {
+        handlePendingAdjust();
+        if (!ready()) {
+            return;
+        }
+        writeLine();
+        write(op, op1, op2, NONE);
+    }
+
+    /** Return an operand using immediate addressing.
+     */
+    public long immed(int v) {
+        return AsmOperand.immed(v);
+    }
+
+    /** Return a reference to a memory location using indirect
+     *  addressing.
+     */
+    public long indirect(int n, long s) {
+        return AsmOperand.mem(n, s);
+    }
 
     /** Check to see if a stack adjustment is required before the next
      *  instruction is emitted.
      */
     public void handlePendingAdjust() {
-        if (pendingAdjust!=0) {
-            int adjust    = pendingAdjust;
-            pendingAdjust = 0;
+        if (st.pendingAdjust!=0) {
+            int adjust    = st.pendingAdjust;
+            st.pendingAdjust = 0;
             if (adjust>0) {
-                emit("subl", immed(adjust),  "%esp");
+                emitWord(AsmOp.SUBL, immed(adjust),  stackPointer());
             } else {
-                emit("addl", immed(-adjust), "%esp");
+                emitWord(AsmOp.ADDL, immed(-adjust), stackPointer());
             }
         }
     }
@@ -258,15 +1439,15 @@ public class IA32 {
      *  bytes.  Can be used to reserve space for locals, or to establish
      *  alignment constraints.
      */
-    void insertAdjust(int adjust) {
-        pendingAdjust += adjust;
+    public void insertAdjust(int adjust) {
+        st.pendingAdjust += adjust;
     }
 
     /** Adjust the stack by removing space for the specified number of
      *  bytes.
      */
-    void removeAdjust(int adjust) {
-        pendingAdjust -= adjust;
+    public void removeAdjust(int adjust) {
+        st.pendingAdjust -= adjust;
     }
 
     /** Calculate how many additional bytes need to be pushed onto
@@ -274,49 +1455,89 @@ public class IA32 {
      *  have been pushed, and allowing for an extra word to be pushed
      *  for a return address.
      */
-    int alignmentAdjust(int pushed) {
+    public int alignmentAdjust(int pushed) {
         // For platforms that need it (i.e., Mac OS X), we determine
         // how many extra bytes must be added to the stack to ensure
         // alignment on a 16 byte boundary.  For other platforms, we
         // can just return zero.
         return ((platform & ALIGN16)==0)
                  ? 0
-                 : ((16 - (pushed + WORDSIZE)) & 15);
+                 : ((16 - (pushed + getWordSize())) & 15);
     }
 
     /** Output the prologue code section at the start of a program.
-     *  Returns the number of bytes that have been pushed onto the
-     *  stack since the function was entered.
+     *  Any registers that must be saved are pushed before the frame
+     *  pointer, so that locals keep the same offsets from %ebp.  When the
+     *  frame pointer is omitted, %ebp is not saved or set up, and locals
+     *  are addressed relative to %esp instead.  Returns the number of
+     *  bytes that have been pushed onto the stack since the function was
+     *  entered.
      */
     public int emitPrologue(int localBytes) {
-        emit("pushl", "%ebp");
-        emit("movl",  "%esp", "%ebp");
-        pendingAdjust = localBytes;
-        return localBytes + pushedOnEntry;
+        for (int i=0; i<saved.length; i++) {
+            push(AsmOperand.reg(saved[i]));
+        }
+        frameBase = saved.length*getWordSize();
+        if (!omitFramePointer) {
+            push(framePointer());
+            emitWord(AsmOp.MOVL, stackPointer(), framePointer());
+            frameBase += getWordSize();
+        }
+        frameBytes    = localBytes;
+        st.pendingAdjust = localBytes;
+        return localBytes + frameBase;
+    }
+
+    /** Records whether the frame pointer is omitted, in which case locals
+     *  are addressed relative to %esp, and %ebp can be used to hold a
+     *  variable.  This relies on every caller of local() passing an
+     *  accurate count of the number of bytes that have been pushed.
+     */
+    private boolean omitFramePointer = false;
+
+    /** Enable or disable frame pointer omission.
+     */
+    public void setOmitFramePointer(boolean omitFramePointer) {
+        this.omitFramePointer = omitFramePointer;
     }
 
-    /** Records the number of bytes that are pushed on to the top of
-     *  the stack on entry to a function before reserving space for
-     *  any local variables.  This is typically just enough space to
-     *  store the old base pointer value.
+    /** The number of bytes that were pushed between entry to the current
+     *  function and the point from which local offsets are measured.  This
+     *  is set by the prologue, before any workers are made, and is shared
+     *  with them.
+     */
+    private int frameBase = 0;
+
+    /** The number of bytes that were reserved for locals in the current
+     *  function.  This is set by the prologue, before any workers are
+     *  made, and is shared with them.
      */
-    public static final int pushedOnEntry = WORDSIZE;
+    private int frameBytes = 0;
 
-    /** return a string that references the memory location for a
+    /** Return an operand that references the memory location for a
      *  specific local variable.
      */
-    public String local(int offset, int pushed) {
-        return indirect(offset, "%ebp");
-        // The following should also work, if we don't have a base pointer:
-        // return indirect(offset+pushed-pushedOnEntry, "%esp");
+    public long local(int offset, int pushed) {
+        return omitFramePointer ? indirect(offset+pushed-frameBase, stackPointer())
+                                : indirect(offset, framePointer());
     }
 
-    /** Output the epilogue code section at the end of a program.
+    /** Output the epilogue code section at the end of a program.  This
+     *  must be used at a point where the stack holds exactly the values
+     *  that were there at the end of the prologue.
      */
     public void emitEpilogue() {
-        pendingAdjust = 0;
-        emit("movl", "%ebp", "%esp");
-        emit("popl", "%ebp");
-        emit("ret");
+        if (omitFramePointer) {
+            st.pendingAdjust -= frameBytes;   // Includes any unapplied adjust
+            handlePendingAdjust();
+        } else {
+            st.pendingAdjust = 0;
+            emitWord(AsmOp.MOVL, framePointer(), stackPointer());
+            pop(framePointer());
+        }
+        for (int i=saved.length-1; i>=0; i--) {
+            pop(AsmOperand.reg(saved[i]));
+        }
+        emit(AsmOp.RET);
     }
 }
@@ -0,0 +1,494 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import static ast.AsmOperand.*;
+
+/** Encodes the IA32 instructions that the code generators produce
+ *  directly as machine code, and writes the result as an ELF relocatable
+ *  object file, so that no external assembler is needed.  Only the subset
+ *  of the instruction set and of the operand forms that IA32 uses is
+ *  supported: registers, immediates, and memory operands of the forms
+ *  n(%reg) and (%base,%index,scale).  The opcodes and operands are read
+ *  straight from their int encodings, so no text is ever built or
+ *  parsed.  Instructions are collected until
+ *  close() is called, at which point jumps are given short (8 bit)
+ *  displacements wherever possible, in the same way as the GNU assembler,
+ *  and calls to labels that are not defined in the program are recorded
+ *  as relocations for the linker.
+ */
+class IA32Encoder extends AsmList {
+
+    /** The name of the object file that will be written.
+     */
+    private String filename;
+
+    /** Default constructor.
+     */
+    IA32Encoder(String filename) {
+        this.filename = filename;
+    }
+
+    // Kinds of line:
+    private static final int LINE = 0, CODE = 1, JMP = 2, JCC = 3, CALLS = 4;
+
+    /** Encode the program, and write it out as an object file.
+     */
+    public void close() {
+        int      n      = size();
+        int[]    kind   = new int[n];
+        byte[][] enc    = new byte[n][];
+        ElfWriter elf   = new ElfWriter();
+        ArrayList<Long> globals = new ArrayList<Long>();
+
+        // Encode everything except for the jumps and calls:
+        HashMap<Long,Integer> labels = new HashMap<Long,Integer>();
+        for (int i=0; i<n; i++) {
+            AsmOp op = op(i);
+            if (op==AsmOp.LABEL) {
+                kind[i] = LINE;
+                labels.put(key(arg(i, 0)), i);
+            } else if (op==AsmOp.FILE) {
+                kind[i] = CODE;
+                if (kind(arg(i, 0))==STR) {
+                    elf.setSourceFile(symbol(arg(i, 0)));
+                }
+            } else if (op==AsmOp.GLOBL) {
+                kind[i] = CODE;
+                globals.add(key(arg(i, 0)));
+            } else if (op==AsmOp.JMP) {
+                kind[i] = JMP;
+            } else if (op==AsmOp.CALL) {
+                kind[i] = CALLS;
+            } else if (op.isBranch()) {
+                kind[i] = JCC;
+            } else {
+                kind[i] = CODE;
+                enc[i]  = encode(i);
+            }
+        }
+
+        // Lengthen any jumps whose targets are out of range for an 8 bit
+        // displacement, repeating until no more jumps change:
+        boolean[] isLong = new boolean[n];
+        int[]     addr   = new int[n+1];
+        boolean   changed;
+        do {
+            changed = false;
+            for (int i=0; i<n; i++) {
+                addr[i+1] = addr[i] + size(kind[i], enc[i], isLong[i]);
+            }
+            for (int i=0; i<n; i++) {
+                if ((kind[i]==JMP || kind[i]==JCC) && !isLong[i]) {
+                    int disp = addr[target(labels, arg(i, 0))] - addr[i+1];
+                    if (disp<-128 || disp>127) {
+                        isLong[i] = true;
+                        changed   = true;
+                    }
+                }
+            }
+        } while (changed);
+
+        // Output the code with final displacements:
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int i=0; i<n; i++) {
+            switch (kind[i]) {
+                case LINE :
+                    long lab = arg(i, 0);
+                    elf.addSymbol(name(lab), addr[i], globals.contains(key(lab)));
+                    break;
+
+                case CODE :
+                    if (enc[i]!=null) {
+                        text.write(enc[i], 0, enc[i].length);
+                    }
+                    break;
+
+                case CALLS :
+                    long    fn  = arg(i, 0);
+                    Integer def = labels.get(key(fn));
+                    text.write(0xe8);
+                    if (def==null) {
+                        elf.addRelocation(addr[i]+1, name(fn));
+                        u4(text, -4);
+                    } else {
+                        u4(text, addr[def] - addr[i+1]);
+                    }
+                    break;
+
+                default :
+                    int cc   = op(i).getCond();
+                    int disp = addr[target(labels, arg(i, 0))] - addr[i+1];
+                    if (!isLong[i]) {
+                        text.write((kind[i]==JMP) ? 0xeb : (0x70+cc));
+                        text.write(disp);
+                    } else {
+                        if (kind[i]==JMP) {
+                            text.write(0xe9);
+                        } else {
+                            text.write(0x0f);
+                            text.write(0x80+cc);
+                        }
+                        u4(text, disp);
+                    }
+                    break;
+            }
+        }
+        elf.write(filename, text.toByteArray());
+        clear();
+    }
+
+    /** Return the number of bytes that are needed for a line of the given
+     *  kind.
+     */
+    private static int size(int kind, byte[] enc, boolean isLong) {
+        switch (kind) {
+            case CODE  : return (enc==null) ? 0 : enc.length;
+            case JMP   : return isLong ? 5 : 2;
+            case JCC   : return isLong ? 6 : 2;
+            case CALLS : return 5;
+        }
+        return 0;
+    }
+
+    /** Return the position of the label that a jump instruction targets.
+     */
+    private static int target(HashMap<Long,Integer> labels, long lab) {
+        Integer pos = labels.get(key(lab));
+        if (pos==null) {
+            throw new IllegalArgumentException("Undefined label " + name(lab));
+        }
+        return pos;
+    }
+
+    /** Output a four byte value in little endian order.
+     */
+    private static void u4(ByteArrayOutputStream out, int v) {
+        out.write(v);
+        out.write(v>>8);
+        out.write(v>>16);
+        out.write(v>>24);
+    }
+
+    /** Holds the bytes for the instruction that is being encoded.
+     */
+    private ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+    /** Return the machine code for line i.  Directives that have no effect
+     *  on the code are encoded as null.
+     */
+    private byte[] encode(int i) {
+        AsmOp op  = op(i);
+        long  src = arg(i, 0);
+        long  dst = arg(i, 1);
+        buf.reset();
+        switch (op) {
+            case ADDL   : alu(0, src, dst); break;
+            case ORL    : alu(1, src, dst); break;
+            case ANDL   : alu(4, src, dst); break;
+            case SUBL   : alu(5, src, dst); break;
+            case XORL   : alu(6, src, dst); break;
+            case CMPL   : alu(7, src, dst); break;
+            case MOVL   : mov(src, dst);    break;
+            case TESTL  : test(src, dst);   break;
+            case IMULL  : imul(src, dst);   break;
+            case XCHGL  : xchg(src, dst);   break;
+            case SALL   : shift(4, src, dst); break;
+            case SHRL   : shift(5, src, dst); break;
+            case SARL   : shift(7, src, dst); break;
+            case NOTL   : unary(2, src);    break;
+            case NEGL   : unary(3, src);    break;
+            case IDIVL  : unary(7, src);    break;
+            case INCL   : incdec(0, src);   break;
+            case DECL   : incdec(1, src);   break;
+            case PUSHL  : push(src);        break;
+            case POPL   : pop(src);         break;
+            case CLTD   : u1(0x99);         break;
+            case RET    : u1(0xc3);         break;
+            case LEAL   : u1(0x8d); modrm(regNum(dst), src);  break;
+            case MOVZBL : u2(0x0f, 0xb6); modrm(regNum(dst), src); break;
+            default :
+                if (op.isSet()) {
+                    u2(0x0f, 0x90 + op.getCond());
+                    modrm(0, src);
+                } else if (op.isCmov()) {
+                    u2(0x0f, 0x40 + op.getCond());
+                    modrm(regNum(dst), src);
+                } else if (!op.isDirective()) {
+                    throw new IllegalArgumentException("Cannot encode " + op);
+                } else {
+                    return null;
+                }
+        }
+        return buf.toByteArray();
+    }
+
+    /** Encode one of the eight arithmetic/logic operations that share the
+     *  same encodings, with n identifying the operation.  Small immediates
+     *  use the sign extended 8 bit form, and there is a short form for
+     *  operations on %eax.
+     */
+    private void alu(int n, long src, long dst) {
+        if (kind(src)==IMM) {
+            int v = value(src);
+            if (isByte(v)) {
+                u1(0x83);
+                modrm(n, dst);
+                u1(v);
+            } else if (regNum(dst)==EAX && kind(dst)==REG) {
+                u1(0x05 + 8*n);
+                u4(v);
+            } else {
+                u1(0x81);
+                modrm(n, dst);
+                u4(v);
+            }
+        } else if (regNum(src)>=0) {
+            u1(0x01 + 8*n);
+            modrm(regNum(src), dst);
+        } else {
+            u1(0x03 + 8*n);
+            modrm(regNum(dst), src);
+        }
+    }
+
+    /** Encode a movl instruction.
+     */
+    private void mov(long src, long dst) {
+        if (kind(src)==IMM) {
+            if (regNum(dst)>=0) {
+                u1(0xb8 + regNum(dst));
+            } else {
+                u1(0xc7);
+                modrm(0, dst);
+            }
+            u4(value(src));
+        } else if (regNum(src)>=0) {
+            u1(0x89);
+            modrm(regNum(src), dst);
+        } else {
+            u1(0x8b);
+            modrm(regNum(dst), src);
+        }
+    }
+
+    /** Encode a testl instruction.
+     */
+    private void test(long src, long dst) {
+        if (kind(src)==IMM) {
+            if (regNum(dst)==EAX && kind(dst)==REG) {
+                u1(0xa9);
+            } else {
+                u1(0xf7);
+                modrm(0, dst);
+            }
+            u4(value(src));
+        } else if (regNum(src)>=0) {
+            u1(0x85);
+            modrm(regNum(src), dst);
+        } else {
+            u1(0x85);
+            modrm(regNum(dst), src);
+        }
+    }
+
+    /** Encode an imull instruction: the one operand form multiplies %eax,
+     *  leaving the result in %edx:%eax, while the two operand forms
+     *  multiply a register by an immediate or by another operand.
+     */
+    private void imul(long src, long dst) {
+        if (dst==NONE) {
+            unary(5, src);
+        } else if (kind(src)==IMM) {
+            int v = value(src);
+            u1(isByte(v) ? 0x6b : 0x69);
+            modrm(regNum(dst), dst);
+            if (isByte(v)) {
+                u1(v);
+            } else {
+                u4(v);
+            }
+        } else {
+            u2(0x0f, 0xaf);
+            modrm(regNum(dst), src);
+        }
+    }
+
+    /** Encode an xchgl instruction, using the short form if one of the
+     *  operands is %eax.
+     */
+    private void xchg(long src, long dst) {
+        if (src==reg(EAX) && regNum(dst)>=0) {
+            u1(0x90 + regNum(dst));
+        } else if (dst==reg(EAX) && regNum(src)>=0) {
+            u1(0x90 + regNum(src));
+        } else if (regNum(src)>=0) {
+            u1(0x87);
+            modrm(regNum(src), dst);
+        } else {
+            u1(0x87);
+            modrm(regNum(dst), src);
+        }
+    }
+
+    /** Encode a shift instruction, with n identifying the operation.  The
+     *  shift count may be an immediate, or %cl; a single operand means a
+     *  shift by one, which also has its own encoding.
+     */
+    private void shift(int n, long src, long dst) {
+        if (dst==NONE) {
+            u1(0xd1);
+            modrm(n, src);
+        } else if (src==byteReg(ECX)) {
+            u1(0xd3);
+            modrm(n, dst);
+        } else {
+            int v = value(src);
+            u1((v==1) ? 0xd1 : 0xc1);
+            modrm(n, dst);
+            if (v!=1) {
+                u1(v);
+            }
+        }
+    }
+
+    /** Encode one of the single operand instructions that share opcode
+     *  0xf7, with n identifying the operation.
+     */
+    private void unary(int n, long dst) {
+        u1(0xf7);
+        modrm(n, dst);
+    }
+
+    /** Encode an increment (n==0) or decrement (n==1) instruction.
+     */
+    private void incdec(int n, long dst) {
+        if (regNum(dst)>=0) {
+            u1(0x40 + 8*n + regNum(dst));
+        } else {
+            u1(0xff);
+            modrm(n, dst);
+        }
+    }
+
+    /** Encode a pushl instruction.
+     */
+    private void push(long src) {
+        if (kind(src)==IMM) {
+            int v = value(src);
+            if (isByte(v)) {
+                u1(0x6a);
+                u1(v);
+            } else {
+                u1(0x68);
+                u4(v);
+            }
+        } else if (regNum(src)>=0) {
+            u1(0x50 + regNum(src));
+        } else {
+            u1(0xff);
+            modrm(6, src);
+        }
+    }
+
+    /** Encode a popl instruction.
+     */
+    private void pop(long dst) {
+        if (regNum(dst)>=0) {
+            u1(0x58 + regNum(dst));
+        } else {
+            u1(0x8f);
+            modrm(0, dst);
+        }
+    }
+
+    /** Output a ModR/M byte, together with any SIB byte and displacement
+     *  that are needed, for an instruction whose reg field is r, and whose
+     *  other operand, rm, is either a register or a memory reference.
+     *  Offsets from %ebp always need a displacement, and any reference
+     *  using %esp as a base needs a SIB byte.
+     */
+    private void modrm(int r, long rm) {
+        int reg = regNum(rm);
+        if (reg>=0) {
+            u1(0xc0 | (r<<3) | reg);
+            return;
+        }
+        int k = kind(rm);
+        if ((k!=MEM && k!=INDEX) || isWide(rm) || reg(rm)>7
+                                 || (k==INDEX && index(rm)>7)) {
+            throw new IllegalArgumentException("Cannot encode operand "
+                                               + AsmOperand.toString(rm));
+        }
+        int     disp = value(rm);
+        int     base = reg(rm);
+        boolean sib  = k==INDEX || base==ESP;
+        int     mod  = (disp==0 && base!=EBP) ? 0 : isByte(disp) ? 1 : 2;
+        u1((mod<<6) | (r<<3) | (sib ? ESP : base));
+        if (sib) {
+            int index = (k==INDEX) ? index(rm) : ESP;
+            int scale = (k==INDEX) ? Integer.numberOfTrailingZeros(scale(rm)) : 0;
+            u1((scale<<6) | (index<<3) | base);
+        }
+        if (mod==1) {
+            u1(disp);
+        } else if (mod==2) {
+            u4(disp);
+        }
+    }
+
+    /** Return the number of a 32 or 8 bit register operand, or -1 if the
+     *  operand is not a register.  Only the eight IA32 registers can be
+     *  encoded.
+     */
+    private static int regNum(long x) {
+        if (!isReg(x) || isWide(x) || reg(x)>7) {
+            return -1;
+        }
+        return reg(x);
+    }
+
+    /** Test to see if a value can be represented as a signed byte.
+     */
+    private static boolean isByte(int v) {
+        return v>=-128 && v<=127;
+    }
+
+    /** Output a single byte of code.
+     */
+    private void u1(int b) {
+        buf.write(b);
+    }
+
+    /** Output a two byte opcode.
+     */
+    private void u2(int b1, int b2) {
+        buf.write(b1);
+        buf.write(b2);
+    }
+
+    /** Output a four byte value in little endian order.
+     */
+    private void u4(int v) {
+        u4(buf, v);
+    }
+}
@@ -20,6 +20,9 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Operand;
+import ir.Temp;
 
 /** Abstract syntax for identifiers/variables.
  */
@@ -36,6 +39,10 @@ public class Id extends Expr {
         this.name = name;
     }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.ID; }
+
     /** Return a printable description of this expression.
      */
     public String toString() {
@@ -56,6 +63,10 @@ public class Id extends Expr {
      */
     public void print(TextOutput out) { out.printUse(this); }
 
+    /** Output a translation of this expression into C.
+     */
+    void emitC(CEmitter out) { out.printUse(this); }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -82,6 +93,13 @@ public class Id extends Expr {
         return name;
     }
 
+    /** Test to see if this identifier refers to the same variable as
+     *  the other identifier.
+     */
+    boolean sameVar(Id other) {
+        return v==other.v;
+    }
+
     /** Run scope analysis on this expression.  The scoping parameter
      *  provides access to the scope analysis phase (in particular,
      *  to the associated error handler), and the env parameter
@@ -209,25 +227,6 @@ public class Id extends Expr {
         return initialized;
     }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        return this;
-    }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -260,11 +259,13 @@ public class Id extends Expr {
         return 1;
     }
 
-    /** Return a string that specifies the location in memory
-     *  where this variable is stored.
+    /** Return an operand that specifies the location in memory
+     *  where this variable is stored, or the register that holds it
+     *  if it was allocated one by LinearScan.
      */
-    String fromStackFrame(IA32 a, int pushed) {
-        return a.local(v.getIa32Offset(), pushed);
+    long fromStackFrame(Backend a, int pushed) {
+        int reg = v.getIa32Reg();
+        return (reg>=0) ? AsmOperand.reg(reg) : a.local(v.getIa32Offset(), pushed);
     }
 
     /** Generate assembly language code for this expression that will
@@ -272,7 +273,45 @@ public class Id extends Expr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        a.emit("movl", fromStackFrame(a, pushed), a.reg(free));
+    public void compileExpr(Backend a, int pushed, int free) {
+        a.emit(AsmOp.MOVL, fromStackFrame(a, pushed), a.reg(free));
+    }
+
+    /** Return a memory operand for the stack slot of this variable.
+     */
+    long operand(Backend a, int pushed) {
+        return fromStackFrame(a, pushed);
+    }
+
+    /** Record a use of this variable.
+     */
+    int scan(LinearScan ls) {
+        ls.use(v);
+        return 1;
+    }
+
+    /** Return the temporary that represents this variable in intermediate
+     *  code.
+     */
+    Temp lowerVar(Builder b) {
+        return b.var(v, name);
+    }
+
+    /** Generate JVM bytecode that pushes the value of this variable.
+     */
+    void compileJVM(JVMEmitter c) {
+        c.iload(v.getJvmSlot(JVMEmitter.FIRST_SLOT));
+    }
+
+    /** Generate JVM bytecode that pops a value into this variable.
+     */
+    void storeJVM(JVMEmitter c) {
+        c.istore(v.getJvmSlot(JVMEmitter.FIRST_SLOT));
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return lowerVar(b);
     }
 }
@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
 
 /** Abstract syntax for if-then-else statements.
  */
@@ -37,6 +39,11 @@ public class If extends PosStmt {
      */
     private Stmt ifFalse;
 
+    /** Set if this statement should be compiled using a conditional move
+     *  instead of branches; see IfConversionPass.
+     */
+    private boolean select = false;
+
     /** Default constructor.
      */
     public If(Position pos, Expr test, Stmt ifTrue, Stmt ifFalse) {
@@ -69,6 +76,21 @@ public class If extends PosStmt {
         ifTrue.printThenElse(out, n, ifFalse);
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n, "if (");
+        test.emitC(out);
+        out.println(") {");
+        ifTrue.emitCBody(out, n+1);
+        out.indent(n);
+        out.println("} else {");
+        ifFalse.emitCBody(out, n+1);
+        out.indent(n);
+        out.println("}");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -126,35 +148,241 @@ public class If extends PosStmt {
                             initialized);
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
-        test = test.simplify();
-        ifTrue.simplify();
-        ifFalse.simplify();
+    public void simplify(Simplifier rw) {
+        test = rw.rewrite(test);
+        ifTrue.simplify(rw);
+        ifFalse.simplify(rw);
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
         if (test.eval()!=0) {
-            ifTrue.exec();
+            if (profile!=null) {
+                profile.hit(pos, 0);
+            }
+            ifTrue.exec(out, profile);
         } else {
-            ifFalse.exec();
+            if (profile!=null) {
+                profile.hit(pos, 1);
+            }
+            ifFalse.exec(out, profile);
+        }
+    }
+
+    /** Find the if-then-else statements within this statement that can be
+     *  compiled using conditional moves, including this statement itself.
+     */
+    int ifConvert(IfConversionPass ic) {
+        int     n   = ifTrue.ifConvert(ic) + ifFalse.ifConvert(ic);
+        boolean old = select;
+        select      = canSelect(ic.getMaxDepth());
+        return (select && !old) ? n+1 : n;
+    }
+
+    /** Test to see if this statement can be compiled using a conditional
+     *  move.  This requires either one branch to be empty and the other a
+     *  single assignment, or both branches to be single assignments to the
+     *  same variable.  Both values will be computed before the test, so
+     *  the right hand sides must not have side effects, and their depth is
+     *  limited by maxDepth to bound the amount of extra work that is done.
+     */
+    private boolean canSelect(int maxDepth) {
+        Assign t = ifTrue.singleAssign();
+        Assign f = ifFalse.singleAssign();
+        if (t!=null && f!=null) {
+            return t.getLhs().sameVar(f.getLhs())
+                && t.getRhs().getDepth()<=maxDepth
+                && f.getRhs().getDepth()<=maxDepth;
+        } else if (t!=null) {
+            return ifFalse.isEmpty() && t.getRhs().getDepth()<=maxDepth;
+        } else if (f!=null) {
+            return ifTrue.isEmpty() && f.getRhs().getDepth()<=maxDepth;
         }
+        return false;
+    }
+
+    /** Generate code for a statement that has been selected for conversion,
+     *  computing the value for the false case in reg(0), the value for the
+     *  true case in reg(1) (or using it directly as an operand), and then
+     *  using a conditional move to pick between them.  An empty branch
+     *  is treated as an assignment of the variable to itself.  Returns
+     *  false, without generating any code, if there are not enough
+     *  registers to do this without spilling.
+     */
+    private boolean compileSelect(Backend a, int pushed) {
+        if (a.spillFor(2)) {
+            return false;
+        }
+        Assign t  = ifTrue.singleAssign();
+        Assign f  = ifFalse.singleAssign();
+        Id     x  = (t!=null) ? t.getLhs() : f.getLhs();
+        Expr   tv = (t!=null) ? t.getRhs() : x;
+        Expr   fv = (f!=null) ? f.getRhs() : x;
+        fv.compileExpr(a, pushed, 0);
+        long src = Rewriter.isLiteral(tv) ? AsmOperand.NONE : tv.operand(a, pushed);
+        if (src==AsmOperand.NONE) {   // cmov has no immediate form
+            tv.compileExpr(a, pushed, 1);
+            src = a.reg(1);
+        }
+        AsmOp cc = test.compileFlags(a, pushed, 2);
+        a.emit(cc.cmov(), src, a.reg(0));
+        a.emit(AsmOp.MOVL, a.reg(0), x.fromStackFrame(a, pushed));
+        return true;
+    }
+
+    /** Return the true branch for arm 0, or the false branch for arm 1.
+     */
+    private Stmt arm(int k) {
+        return (k==0) ? ifTrue : ifFalse;
+    }
+
+    /** Generate code that branches to lab if the test selects arm k.
+     */
+    private void branchTo(Backend a, int pushed, int k, int lab) {
+        if (k==0) {
+            test.branchTrue(a, pushed, 0, lab);
+        } else {
+            test.branchFalse(a, pushed, 0, lab);
+        }
+    }
+
+    /** Return the arm that should follow the test directly: the true
+     *  branch unless a profile shows that the false branch is executed
+     *  more often.
+     */
+    private int hotArm(Backend a) {
+        Profile profile = a.getProfile();
+        return (profile==null) ? 0 : profile.hotArm(pos);
+    }
+
+    /** Test to see if a profile shows that arm k is so rarely executed
+     *  that it should be moved out of line.
+     */
+    private boolean isCold(Backend a, int k) {
+        Profile profile = a.getProfile();
+        return profile!=null && profile.isCold(pos, k);
+    }
+
+    /** Generate code for executing this statement.  The arm that is
+     *  executed most often follows the test, and a cold arm is moved out
+     *  of line, so that the common path has no taken branches.
+     */
+    public void compile(Backend a, int pushed) {
+        a.line(pos);
+        if (select && !a.isProfiling() && compileSelect(a, pushed)) {
+            return;
+        }
+        int    hot  = hotArm(a);
+        int    cold = 1-hot;
+        int    lab1 = a.newLabel();
+        int    lab2 = a.newLabel();
+        branchTo(a, pushed, cold, lab1);
+        a.count(pos, hot);
+        arm(hot).compile(a, pushed);
+        if (isCold(a, cold)) {
+            a.emitLabel(lab2);
+            a.defer(lab2, () -> {
+                a.emitLabel(lab1);
+                a.line(pos);
+                a.count(pos, cold);
+                arm(cold).compile(a, pushed);
+                a.jump(lab2);
+            });
+        } else {
+            a.jump(lab2);
+            a.emitLabel(lab1);
+            a.count(pos, cold);
+            arm(cold).compile(a, pushed);
+            a.emitLabel(lab2);
+        }
+    }
+
+    /** Generate code for executing this statement and continuing at next.
+     *  Both branches jump directly to next rather than to a join label, and
+     *  the test branches straight to next if one of the branches can be
+     *  skipped.  When block execution counters are enabled, both branches
+     *  are always compiled, so that each has a counter.
+     */
+    void compileTo(Backend a, int pushed, int next) {
+        a.line(pos);
+        if (select && !a.isProfiling() && compileSelect(a, pushed)) {
+            a.jump(next);
+            return;
+        }
+        int    hot  = hotArm(a);
+        int    cold = 1-hot;
+        int    h    = a.isProfiling() ? -1 : arm(hot).skipTo(next);
+        int    c    = a.isProfiling() ? -1 : arm(cold).skipTo(next);
+        if (c>=0) {
+            branchTo(a, pushed, cold, c);
+            arm(hot).compileTo(a, pushed, next);
+        } else if (isCold(a, cold)) {
+            int lab = a.newLabel();
+            branchTo(a, pushed, cold, lab);
+            a.count(pos, hot);
+            arm(hot).compileTo(a, pushed, next);
+            a.defer(next, () -> {
+                a.emitLabel(lab);
+                a.line(pos);
+                a.count(pos, cold);
+                arm(cold).compileTo(a, pushed, next);
+            });
+        } else if (h>=0) {
+            branchTo(a, pushed, hot, h);
+            arm(cold).compileTo(a, pushed, next);
+        } else {
+            int lab = a.newLabel();
+            branchTo(a, pushed, cold, lab);
+            a.count(pos, hot);
+            arm(hot).compileTo(a, pushed, next);
+            a.emitLabel(lab);
+            a.count(pos, cold);
+            arm(cold).compileTo(a, pushed, next);
+        }
+    }
+
+    /** Record the variables that are used by this statement.
+     */
+    void scan(LinearScan ls) {
+        ls.step();
+        int n = test.scan(ls);
+        ls.need(select ? 2+n : n);    // compileSelect tests in reg(2)
+        ifTrue.scan(ls);
+        ifFalse.scan(ls);
+    }
+
+    /** Generate JVM bytecode for executing this statement.
+     */
+    void compileJVM(JVMEmitter c) {
+        int lab1 = c.newLabel();
+        int lab2 = c.newLabel();
+        test.branchFalseJVM(c, lab1);
+        ifTrue.compileJVM(c);
+        c.jump(lab2);
+        c.label(lab1);
+        ifFalse.compileJVM(c);
+        c.label(lab2);
     }
 
-    /** Generate code for executing this statement.
+    /** Lower this statement to intermediate code.
      */
-    public void compile(IA32 a, int pushed) {
-        String lab1 = a.newLabel();
-        String lab2 = a.newLabel();
-        test.branchFalse(a, pushed, 0, lab1);
-        ifTrue.compile(a, pushed);
-        a.emit("jmp", lab2);
-        a.emitLabel(lab1);
-        ifFalse.compile(a, pushed);
-        a.emitLabel(lab2);
+    public void lower(Builder b) {
+        BasicBlock t = b.newBlock();
+        BasicBlock f = b.newBlock();
+        BasicBlock j = b.newBlock();
+        test.lowerBranch(b, t, f);
+        b.setBlock(t);
+        ifTrue.lower(b);
+        b.jump(j);
+        b.setBlock(f);
+        ifFalse.lower(b);
+        b.jump(j);
+        b.setBlock(j);
     }
 }
@@ -0,0 +1,55 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import compiler.Pass;
+
+/** An optimization pass that selects if-then-else statements that assign
+ *  to a single variable for compilation using conditional moves (cmovcc)
+ *  instead of branches.  Both of the values are computed before the
+ *  test, so the pass only selects statements where the expressions are
+ *  free from side effects and no deeper than a given limit.
+ */
+public class IfConversionPass extends Pass<Stmt> {
+
+    /** The maximum depth of the expressions in each branch.
+     */
+    private int maxDepth;
+
+    /** Construct an if-conversion pass that allows expressions of up to
+     *  the given depth in each branch.
+     */
+    public IfConversionPass(int maxDepth) {
+        super("ifconvert", "simplify");
+        this.maxDepth = maxDepth;
+    }
+
+    /** Return the maximum depth of the expressions in each branch.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** Run this pass on the given program, returning the number of
+     *  statements that were newly selected for conversion.
+     */
+    public int run(Stmt prog) {
+        return prog.ifConvert(this);
+    }
+}
@@ -20,6 +20,9 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Const;
+import ir.Operand;
 
 /** Abstract syntax for integer literals.
  */
@@ -36,6 +39,10 @@ public class IntLit extends Expr {
         this.num = num;
     }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.INTLIT; }
+
     /** Return a printable description of this expression.
      */
     public String toString() {
@@ -56,6 +63,20 @@ public class IntLit extends Expr {
      */
     public void print(TextOutput out) { out.print(Integer.toString(num)); }
 
+    /** Output a translation of this expression into C.  Negative numbers
+     *  are parenthesized, and the most negative int is written as an int
+     *  expression because the literal 2147483648 does not fit in an int.
+     */
+    void emitC(CEmitter out) {
+        if (num==Integer.MIN_VALUE) {
+            out.print("(-2147483647-1)");
+        } else if (num<0) {
+            out.print("(" + num + ")");
+        } else {
+            out.print(Integer.toString(num));
+        }
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -105,25 +126,6 @@ public class IntLit extends Expr {
         return initialized;
     }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        return this;
-    }
-
     /** Test to see if this expression is an integer literal.
      */
     IntLit isIntLit() { return this; }
@@ -151,7 +153,25 @@ public class IntLit extends Expr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        a.emit("movl", a.immed(num), a.reg(free));
+    public void compileExpr(Backend a, int pushed, int free) {
+        a.emit(AsmOp.MOVL, a.immed(num), a.reg(free));
+    }
+
+    /** Return an immediate operand for this literal.
+     */
+    long operand(Backend a, int pushed) {
+        return a.immed(num);
+    }
+
+    /** Generate JVM bytecode that pushes the value of this expression.
+     */
+    void compileJVM(JVMEmitter c) {
+        c.iconst(num);
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return new Const(num);
     }
 }
@@ -0,0 +1,688 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import compiler.Failure;
+import compiler.Handler;
+import compiler.Warning;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/** Translates a mini program into a JVM class and loads it as a hidden
+ *  class so that the program can be executed by the JIT compiler instead
+ *  of the tree interpreter.  HotSpot will not compile a method with more
+ *  than HUGE_METHOD bytes of bytecode, so the top-level statements are
+ *  split into ranges, each of which becomes a static method part<n>(sink,
+ *  vars) that is called in turn by run(PrintSink).  The values of the mini
+ *  variables are passed between the parts in the vars array: each part
+ *  loads the variables that it uses into locals on entry, with each
+ *  variable held in the local that Env.getJvmSlot() assigns to it, and
+ *  stores the ones that it assigns back on exit.  The class file uses
+ *  version 49 so that no StackMapTable is required.  A division by zero
+ *  raises an ArithmeticException from idiv, and the JVM's idiv already
+ *  wraps for Integer.MIN_VALUE/-1 as mini requires.
+ */
+public class JVMEmitter {
+
+    /** The handler that is used to report statements that are too large
+     *  for the JIT compiler.
+     */
+    private Handler handler;
+
+    /** Default constructor.
+     */
+    public JVMEmitter(Handler handler) {
+        this.handler = handler;
+    }
+
+    /** The name of the generated class.
+     */
+    private static final String CLASS = "ast/MiniProgram";
+
+    /** The name of the class that receives the program's output.
+     */
+    private static final String SINK = "ast/PrintSink";
+
+    /** The local variable slot that holds the sink.
+     */
+    static final int SINK_SLOT = 0;
+
+    /** The local variable slot that holds the array of variable values.
+     */
+    static final int VARS_SLOT = 1;
+
+    /** The first local variable slot that holds a mini variable.
+     */
+    static final int FIRST_SLOT = 2;
+
+    /** The largest method, in bytes of bytecode, that HotSpot will JIT
+     *  compile (its HugeMethodLimit).
+     */
+    static final int HUGE_METHOD = 8000;
+
+    /** An upper bound on the number of bytes that are needed to load or
+     *  store one variable in the entry or exit code for a part.
+     */
+    private static final int MOVE_BYTES = 10;
+
+    // Opcodes:
+    static final int ICONST_0  = 0x03, BIPUSH    = 0x10, SIPUSH    = 0x11;
+    static final int LDC       = 0x12, LDC_W     = 0x13, ILOAD     = 0x15;
+    static final int ALOAD     = 0x19, IALOAD    = 0x2e, ISTORE    = 0x36;
+    static final int ASTORE    = 0x3a, IASTORE   = 0x4f, IADD      = 0x60;
+    static final int ISUB      = 0x64, IMUL      = 0x68, IDIV      = 0x6c;
+    static final int INEG      = 0x74, IAND      = 0x7e, IOR       = 0x80;
+    static final int IXOR      = 0x82, IFEQ      = 0x99, IFNE      = 0x9a;
+    static final int IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4;
+    static final int GOTO      = 0xa7, RETURN    = 0xb1, INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8, NEWARRAY = 0xbc, WIDE   = 0xc4;
+    static final int T_INT     = 10;
+
+    /** Holds the bytecode for the statement that is being compiled, or
+     *  for the method that is being assembled from those statements.
+     */
+    private ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    /** The local variable slots that are read or written by the statement
+     *  that is being compiled.
+     */
+    private BitSet used = new BitSet();
+
+    /** The local variable slots that are written by the statement that is
+     *  being compiled.
+     */
+    private BitSet stored = new BitSet();
+
+    /** The number of values on the operand stack at the current point.
+     */
+    private int stack = 0;
+
+    /** The largest number of values on the operand stack.
+     */
+    private int maxStack = 0;
+
+    /** Records whether the current point can be reached by falling through
+     *  from the previous instruction.
+     */
+    private boolean reachable = true;
+
+    /** The address of each label, or -1 if it has not been placed yet.
+     */
+    private ArrayList<Integer> labels = new ArrayList<Integer>();
+
+    /** The stack depth at each label, recorded from the branches to it.
+     */
+    private ArrayList<Integer> depths = new ArrayList<Integer>();
+
+    /** Branches whose offsets must be filled in once all labels are
+     *  placed: each entry holds the address of the branch instruction and
+     *  the label that it targets.
+     */
+    private ArrayList<int[]> fixups = new ArrayList<int[]>();
+
+    /** Describes the code for one or more top-level statements, with its
+     *  branch offsets already filled in so that it can be placed anywhere
+     *  in a method.
+     */
+    private static class Piece {
+
+        /** The bytecode for the statements.
+         */
+        byte[] bytes;
+
+        /** The largest number of values on the operand stack.
+         */
+        int maxStack;
+
+        /** The local variable slots that the code reads or writes.
+         */
+        BitSet used;
+
+        /** The local variable slots that the code writes.
+         */
+        BitSet stored;
+
+        /** Default constructor.
+         */
+        Piece(byte[] bytes, int maxStack, BitSet used, BitSet stored) {
+            this.bytes    = bytes;
+            this.maxStack = maxStack;
+            this.used     = used;
+            this.stored   = stored;
+        }
+
+        /** Return an upper bound on the size of a method for this piece,
+         *  including the code that loads and stores its variables.
+         */
+        int methodSize() {
+            return bytes.length + MOVE_BYTES*(used.cardinality()
+                                              + stored.cardinality()) + 1;
+        }
+
+        /** Return a piece that runs this piece and then p.
+         */
+        Piece append(Piece p) {
+            byte[] bs = new byte[bytes.length + p.bytes.length];
+            System.arraycopy(bytes, 0, bs, 0, bytes.length);
+            System.arraycopy(p.bytes, 0, bs, bytes.length, p.bytes.length);
+            BitSet u = (BitSet)used.clone();
+            BitSet s = (BitSet)stored.clone();
+            u.or(p.used);
+            s.or(p.stored);
+            return new Piece(bs, Math.max(maxStack, p.maxStack), u, s);
+        }
+    }
+
+    /** Add the statements that are executed in sequence by s to the list
+     *  stmts, looking inside nested blocks so that each one can be
+     *  compiled separately.
+     */
+    private static void flatten(Stmt s, ArrayList<Stmt> stmts) {
+        Stmt[] ss = s.statements();
+        if (ss.length==1 && ss[0]==s) {
+            stmts.add(s);
+        } else {
+            for (int i=0; i<ss.length; i++) {
+                flatten(ss[i], stmts);
+            }
+        }
+    }
+
+    /** Generate a class for the given program, returning a handle for its
+     *  run(PrintSink) method.  Consecutive top-level statements are
+     *  grouped into parts for as long as the part stays within
+     *  HUGE_METHOD; a single statement that is larger than that is
+     *  reported with a warning, because it will not be JIT compiled.
+     */
+    public MethodHandle compile(Stmt prog)
+      throws Failure {
+        ArrayList<Stmt> stmts = new ArrayList<Stmt>();
+        flatten(prog, stmts);
+        ArrayList<Piece> parts = new ArrayList<Piece>();
+        Piece            part  = null;
+        for (int i=0; i<stmts.size(); i++) {
+            Piece p = statement(stmts.get(i));
+            if (p.bytes.length==0) {
+                continue;
+            } else if (p.methodSize()>HUGE_METHOD) {
+                handler.report(new Warning("A top-level statement needs "
+                                   + p.bytes.length + " bytes of JVM bytecode,"
+                                   + " more than the " + HUGE_METHOD
+                                   + " that HotSpot will JIT compile, so it"
+                                   + " will only be interpreted"));
+            }
+            Piece joined = (part==null) ? p : part.append(p);
+            if (part!=null && joined.methodSize()>HUGE_METHOD) {
+                parts.add(part);
+                part = p;
+            } else {
+                part = joined;
+            }
+        }
+        if (part!=null) {
+            parts.add(part);
+        }
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup()
+                                                  .defineHiddenClass(toClassFile(parts), true);
+            return l.findStatic(l.lookupClass(), "run",
+                                MethodType.methodType(void.class, PrintSink.class));
+        } catch (Exception e) {
+            throw new Failure("Unable to load JVM code: " + e);
+        }
+    }
+
+    /** Run a program that has been compiled by compile(), sending its
+     *  output to out.  Any output that was produced before a division by
+     *  zero is written out before the failure is reported.
+     */
+    public static void run(MethodHandle prog, PrintStream out)
+      throws Failure {
+        PrintSink sink = new PrintSink(out);
+        try {
+            prog.invokeExact(sink);
+        } catch (ArithmeticException e) {
+            throw new Failure("Divide by zero");
+        } catch (Throwable e) {
+            throw new Failure("Exception: " + e);
+        } finally {
+            sink.flush();
+        }
+    }
+
+    /** Output a single byte of code.
+     */
+    private void u1(int b) {
+        code.write(b);
+    }
+
+    /** Output a two byte value in big endian order.
+     */
+    private void u2(int v) {
+        code.write(v>>8);
+        code.write(v);
+    }
+
+    /** Output an instruction with no operands that changes the number of
+     *  values on the stack by delta.
+     */
+    void emit(int op, int delta) {
+        u1(op);
+        adjust(delta);
+        reachable = (op!=RETURN && op!=GOTO);
+    }
+
+    /** Record a change in the number of values on the stack.
+     */
+    private void adjust(int delta) {
+        stack += delta;
+        if (stack>maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    /** Output code to push an integer constant.
+     */
+    void iconst(int v) {
+        if (v>=-1 && v<=5) {
+            u1(ICONST_0 + v);
+        } else if (v>=Byte.MIN_VALUE && v<=Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(v);
+        } else if (v>=Short.MIN_VALUE && v<=Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(v);
+        } else {
+            int i = constant(v);
+            if (i<256) {
+                u1(LDC);
+                u1(i);
+            } else {
+                u1(LDC_W);
+                u2(i);
+            }
+        }
+        adjust(1);
+    }
+
+    /** Compile a single top-level statement, returning its code.
+     */
+    private Piece statement(Stmt s)
+      throws Failure {
+        code      = new ByteArrayOutputStream();
+        fixups    = new ArrayList<int[]>();
+        used      = new BitSet();
+        stored    = new BitSet();
+        stack     = 0;
+        maxStack  = 0;
+        reachable = true;
+        s.compileJVM(this);
+        byte[] bytes = code.toByteArray();
+        for (int i=0; i<fixups.size(); i++) {
+            int   at  = fixups.get(i)[0];
+            int   off = labels.get(fixups.get(i)[1]) - at;
+            if (off<Short.MIN_VALUE || off>Short.MAX_VALUE) {
+                throw new Failure("Program is too large for the JVM backend");
+            }
+            bytes[at+1] = (byte)(off>>8);
+            bytes[at+2] = (byte)off;
+        }
+        return new Piece(bytes, maxStack, used, stored);
+    }
+
+    /** Output an instruction that loads or stores a local variable.
+     */
+    private void local(int op, int slot) {
+        if (slot<256) {
+            u1(op);
+            u1(slot);
+        } else {
+            u1(WIDE);
+            u1(op);
+            u2(slot);
+        }
+    }
+
+    /** Output code to push the value of a local variable.
+     */
+    void iload(int slot) {
+        local(ILOAD, slot);
+        adjust(1);
+        used.set(slot);
+    }
+
+    /** Output code to pop a value into a local variable.
+     */
+    void istore(int slot) {
+        local(ISTORE, slot);
+        adjust(-1);
+        used.set(slot);
+        stored.set(slot);
+    }
+
+    /** Output code to call print on the sink, with the sink and the value
+     *  on the stack.
+     */
+    void print() {
+        u1(INVOKEVIRTUAL);
+        u2(method(SINK, "print", "(I)V"));
+        adjust(-2);
+    }
+
+    /** Output code to push the sink on to the stack.
+     */
+    void sink() {
+        local(ALOAD, SINK_SLOT);
+        adjust(1);
+    }
+
+    /** Output code for a unary operator, with its argument on the stack.
+     */
+    void unary(Op op, Type type) {
+        switch (op) {
+            case UMINUS : emit(INEG, 0);
+                          break;
+            case BNOT   : iconst((type==Type.BOOLEAN) ? 1 : -1);
+                          emit(IXOR, -1);
+                          break;
+            case LNOT   : iconst(1);
+                          emit(IXOR, -1);
+                          break;
+            default     : break;
+        }
+    }
+
+    /** Return the opcode for a binary arithmetic or bitwise operator, or
+     *  -1 if op is not such an operator.
+     */
+    static int arithmetic(Op op) {
+        switch (op) {
+            case ADD  : return IADD;
+            case SUB  : return ISUB;
+            case MUL  : return IMUL;
+            case DIV  : return IDIV;
+            case BAND : return IAND;
+            case BOR  : return IOR;
+            case BXOR : return IXOR;
+            default   : return -1;
+        }
+    }
+
+    /** Return the opcode for a comparison that branches when op is true
+     *  (or when it is false, if sense is false), or -1 if op is not a
+     *  comparison.
+     */
+    static int compare(Op op, boolean sense) {
+        switch (op) {
+            case LT  : return sense ? IF_ICMPLT : IF_ICMPGE;
+            case LTE : return sense ? IF_ICMPLE : IF_ICMPGT;
+            case GT  : return sense ? IF_ICMPGT : IF_ICMPLE;
+            case GTE : return sense ? IF_ICMPGE : IF_ICMPLT;
+            case EQL : return sense ? IF_ICMPEQ : IF_ICMPNE;
+            case NEQ : return sense ? IF_ICMPNE : IF_ICMPEQ;
+            default  : return -1;
+        }
+    }
+
+    /** Return a new label.
+     */
+    int newLabel() {
+        labels.add(-1);
+        depths.add(-1);
+        return labels.size()-1;
+    }
+
+    /** Place a label at the current position.  If the label cannot be
+     *  reached by falling through, then the stack depth is the depth that
+     *  was recorded by the branches to it.
+     */
+    void label(int l) {
+        labels.set(l, code.size());
+        if (!reachable && depths.get(l)>=0) {
+            stack = depths.get(l);
+        }
+        reachable = true;
+    }
+
+    /** Output a conditional branch or goto, using the given opcode, to
+     *  the label l.  The values that the branch tests are popped first.
+     */
+    void branch(int op, int l) {
+        adjust((op==GOTO) ? 0 : (op==IFEQ || op==IFNE) ? -1 : -2);
+        depths.set(l, stack);
+        fixups.add(new int[] { code.size(), l });
+        u1(op);
+        u2(0);
+        reachable = (op!=GOTO);
+    }
+
+    /** Output an unconditional jump to the label l.
+     */
+    void jump(int l) {
+        branch(GOTO, l);
+    }
+
+    /** The constant pool, as a sequence of bytes.
+     */
+    private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    /** The index that will be given to the next constant pool entry.
+     *  Entries are numbered from one.
+     */
+    private int poolCount = 1;
+
+    /** Maps a description of each constant pool entry to its index, so
+     *  that the same entry is not added twice.
+     */
+    private HashMap<String, Integer> entries = new HashMap<String, Integer>();
+
+    /** Add an entry with the given tag and contents to the constant pool,
+     *  unless it is already there, and return its index.
+     */
+    private int entry(String key, int tag, byte[] contents) {
+        Integer i = entries.get(key);
+        if (i==null) {
+            pool.write(tag);
+            pool.write(contents, 0, contents.length);
+            entries.put(key, i = poolCount++);
+        }
+        return i;
+    }
+
+    /** Return the bytes for the given two byte values.
+     */
+    private static byte[] u2s(int... vs) {
+        byte[] bs = new byte[2*vs.length];
+        for (int i=0; i<vs.length; i++) {
+            bs[2*i]   = (byte)(vs[i]>>8);
+            bs[2*i+1] = (byte)vs[i];
+        }
+        return bs;
+    }
+
+    /** Return the index of a Utf8 constant for the given string.
+     */
+    private int utf8(String s) {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(bs).writeUTF(s);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return entry("Utf8 " + s, 1, bs.toByteArray());
+    }
+
+    /** Return the index of an Integer constant.
+     */
+    private int constant(int v) {
+        return entry("Integer " + v, 3, new byte[] { (byte)(v>>24), (byte)(v>>16),
+                                                     (byte)(v>>8),  (byte)v });
+    }
+
+    /** Return the index of a Class constant for the named class.
+     */
+    private int classRef(String name) {
+        return entry("Class " + name, 7, u2s(utf8(name)));
+    }
+
+    /** Return the index of a Methodref constant for the given method.
+     */
+    private int method(String cls, String name, String desc) {
+        int c  = classRef(cls);
+        int nt = entry("NameAndType " + name + desc, 12, u2s(utf8(name), utf8(desc)));
+        return entry("Methodref " + cls + "." + name + desc, 10, u2s(c, nt));
+    }
+
+    /** Output code that moves each variable whose slot is in slots
+     *  between the vars array and its local, loading it if load is true
+     *  and storing it otherwise.
+     */
+    private void moveVars(BitSet slots, boolean load) {
+        for (int s=slots.nextSetBit(0); s>=0; s=slots.nextSetBit(s+1)) {
+            local(ALOAD, VARS_SLOT);
+            adjust(1);
+            iconst(s - FIRST_SLOT);
+            if (load) {
+                emit(IALOAD, -1);
+                istore(s);
+            } else {
+                iload(s);
+                emit(IASTORE, -3);
+            }
+        }
+    }
+
+    /** Return the code for the method that runs the given part: the
+     *  variables that it uses are loaded on entry, and those that it
+     *  assigns are stored back before it returns.
+     */
+    private Piece partMethod(Piece part) {
+        code     = new ByteArrayOutputStream();
+        stack    = 0;
+        maxStack = part.maxStack;
+        moveVars(part.used, true);
+        code.write(part.bytes, 0, part.bytes.length);
+        moveVars(part.stored, false);
+        emit(RETURN, 0);
+        return new Piece(code.toByteArray(), maxStack, part.used, part.stored);
+    }
+
+    /** Return the code for run(), which allocates the vars array and then
+     *  calls each of the given number of parts in turn.
+     */
+    private Piece runMethod(int numParts) {
+        code     = new ByteArrayOutputStream();
+        stack    = 0;
+        maxStack = 0;
+        iconst(Env.getIa32Locals()/IA32.WORDSIZE);
+        u1(NEWARRAY);
+        u1(T_INT);
+        local(ASTORE, VARS_SLOT);
+        adjust(-1);
+        for (int i=0; i<numParts; i++) {
+            sink();
+            local(ALOAD, VARS_SLOT);
+            adjust(1);
+            u1(INVOKESTATIC);
+            u2(method(CLASS, "part" + i, PART_DESC));
+            adjust(-2);
+        }
+        emit(RETURN, 0);
+        return new Piece(code.toByteArray(), maxStack, new BitSet(), new BitSet());
+    }
+
+    /** The descriptor of each part method.
+     */
+    private static final String PART_DESC = "(L" + SINK + ";[I)V";
+
+    /** Output a method with the given access flags, name, descriptor,
+     *  and code.
+     */
+    private void writeMethod(DataOutputStream out, int access, String name,
+                             String desc, Piece m)
+      throws IOException, Failure {
+        if (m.bytes.length>65535) {
+            throw new Failure("Program is too large for the JVM backend");
+        }
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(desc));
+        out.writeShort(1);                       // attributes
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + m.bytes.length);
+        out.writeShort(m.maxStack);
+        out.writeShort(FIRST_SLOT + Env.getIa32Locals()/IA32.WORDSIZE);
+        out.writeInt(m.bytes.length);
+        out.write(m.bytes);
+        out.writeShort(0);                       // exception table
+        out.writeShort(0);                       // code attributes
+    }
+
+    /** Return the complete class file for the given parts.  All of the
+     *  constant pool entries are added before the pool is written out.
+     */
+    private byte[] toClassFile(ArrayList<Piece> parts)
+      throws Failure {
+        Piece[] methods = new Piece[parts.size()];
+        for (int i=0; i<methods.length; i++) {
+            methods[i] = partMethod(parts.get(i));
+            utf8("part" + i);
+        }
+        Piece run        = runMethod(methods.length);
+        int   thisClass  = classRef(CLASS);
+        int   superClass = classRef("java/lang/Object");
+        utf8("run");
+        utf8("(L" + SINK + ";)V");
+        utf8(PART_DESC);
+        utf8("Code");
+
+        ByteArrayOutputStream bs  = new ByteArrayOutputStream();
+        DataOutputStream      out = new DataOutputStream(bs);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);                   // minor version
+            out.writeShort(49);                  // major version (Java 5)
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(0x0031);              // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                   // interfaces
+            out.writeShort(0);                   // fields
+            out.writeShort(1 + methods.length);  // methods
+            writeMethod(out, 0x0009, "run", "(L" + SINK + ";)V", run);
+            for (int i=0; i<methods.length; i++) {
+                writeMethod(out, 0x000a, "part" + i, PART_DESC, methods[i]);
+            }
+            out.writeShort(0);                   // class attributes
+        } catch (IOException e) {
+            throw new Failure("Unable to generate JVM code: " + e);
+        }
+        return bs.toByteArray();
+    }
+}
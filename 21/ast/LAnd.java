@@ -20,6 +20,9 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for logical and expressions (&&).
  */
@@ -36,6 +39,10 @@ public class LAnd extends BinLogicExpr {
      */
     String label() { return "LAnd"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.LAND; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
@@ -51,11 +58,14 @@ public class LAnd extends BinLogicExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        String lab = a.newLabel();
+    public void compileExpr(Backend a, int pushed, int free) {
+        if (compileLogicValue(a, AsmOp.ANDL, pushed, free)) {
+            return;
+        }
+        int lab = a.newLabel();
         left.compileExpr(a, pushed, free);
-        a.emit("orl", a.reg(free), a.reg(free));
-        a.emit("jz",  lab);
+        a.emit(AsmOp.ORL, a.reg(free), a.reg(free));
+        a.branch(AsmOp.JZ,  lab);
         right.compileExpr(a, pushed, free);
         a.emitLabel(lab);
       }
@@ -63,8 +73,8 @@ public class LAnd extends BinLogicExpr {
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is true.
      */
-    void branchTrue(IA32 a, int pushed, int free, String lab) {
-        String lab1 = a.newLabel();
+    void branchTrue(Backend a, int pushed, int free, int lab) {
+        int lab1 = a.newLabel();
         left.branchFalse(a, pushed, free, lab1);
         right.branchTrue(a, pushed, free, lab);
         a.emitLabel(lab1);
@@ -73,8 +83,42 @@ public class LAnd extends BinLogicExpr {
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is false.
      */
-    void branchFalse(IA32 a, int pushed, int free, String lab) {
+    void branchFalse(Backend a, int pushed, int free, int lab) {
         left.branchFalse(a, pushed, free, lab);
         right.branchFalse(a, pushed, free, lab);
     }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  true, evaluating the right argument only if it is needed.
+     */
+    void branchTrueJVM(JVMEmitter c, int lab) {
+        int lab1 = c.newLabel();
+        left.branchFalseJVM(c, lab1);
+        right.branchTrueJVM(c, lab);
+        c.label(lab1);
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  false, evaluating the right argument only if it is needed.
+     */
+    void branchFalseJVM(JVMEmitter c, int lab) {
+        left.branchFalseJVM(c, lab);
+        right.branchFalseJVM(c, lab);
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return lowerValue(b);
+    }
+
+    /** Lower this expression to intermediate code that branches on its
+     *  value, only evaluating the right argument if the left is true.
+     */
+    void lowerBranch(Builder b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        BasicBlock next = b.newBlock();
+        left.lowerBranch(b, next, ifFalse);
+        b.setBlock(next);
+        right.lowerBranch(b, ifTrue, ifFalse);
+    }
 }
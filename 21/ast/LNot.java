@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
 
 /** Abstract syntax for logical not expressions (!).
  */
@@ -36,6 +38,10 @@ public class LNot extends UnExpr {
      */
     String label() { return "LNot"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.LNOT; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
@@ -64,8 +70,43 @@ public class LNot extends UnExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
+    public void compileExpr(Backend a, int pushed, int free) {
         exp.compileExpr(a, pushed, free);
-        a.emit("xorl", a.immed(1), a.reg(free));
+        a.emit(AsmOp.XORL, a.immed(1), a.reg(free));
+    }
+
+    /** Generate code that will evaluate this (boolean-valued) expression
+     *  and jump to the specified label if the result is true.
+     */
+    void branchTrue(Backend a, int pushed, int free, int lab) {
+        exp.branchFalse(a, pushed, free, lab);
+    }
+
+    /** Generate code that will evaluate this (boolean-valued) expression
+     *  and jump to the specified label if the result is false.
+     */
+    void branchFalse(Backend a, int pushed, int free, int lab) {
+        exp.branchTrue(a, pushed, free, lab);
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  true, by branching if the argument is false.
+     */
+    void branchTrueJVM(JVMEmitter c, int lab) {
+        exp.branchFalseJVM(c, lab);
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  false, by branching if the argument is true.
+     */
+    void branchFalseJVM(JVMEmitter c, int lab) {
+        exp.branchTrueJVM(c, lab);
+    }
+
+    /** Lower this expression to intermediate code that branches on its
+     *  value, by swapping the branch targets for the argument.
+     */
+    void lowerBranch(Builder b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        exp.lowerBranch(b, ifFalse, ifTrue);
     }
 }
@@ -20,6 +20,9 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for logical or expressions (||).
  */
@@ -36,6 +39,10 @@ public class LOr extends BinLogicExpr {
      */
     String label() { return "LOr"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.LOR; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
@@ -51,11 +58,14 @@ public class LOr extends BinLogicExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        String lab = a.newLabel();
+    public void compileExpr(Backend a, int pushed, int free) {
+        if (compileLogicValue(a, AsmOp.ORL, pushed, free)) {
+            return;
+        }
+        int lab = a.newLabel();
         left.compileExpr(a, pushed, free);
-        a.emit("orl", a.reg(free), a.reg(free));
-        a.emit("jnz",  lab);
+        a.emit(AsmOp.ORL, a.reg(free), a.reg(free));
+        a.branch(AsmOp.JNZ,  lab);
         right.compileExpr(a, pushed, free);
         a.emitLabel(lab);
       }
@@ -63,7 +73,7 @@ public class LOr extends BinLogicExpr {
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is true.
      */
-    void branchTrue(IA32 a, int pushed, int free, String lab) {
+    void branchTrue(Backend a, int pushed, int free, int lab) {
         left.branchTrue(a, pushed, free, lab);
         right.branchTrue(a, pushed, free, lab);
     }
@@ -71,10 +81,44 @@ public class LOr extends BinLogicExpr {
     /** Generate code that will evaluate this (boolean-valued) expression
      *  and jump to the specified label if the result is false.
      */
-    void branchFalse(IA32 a, int pushed, int free, String lab) {
-        String lab1 = a.newLabel();
+    void branchFalse(Backend a, int pushed, int free, int lab) {
+        int lab1 = a.newLabel();
         left.branchTrue(a, pushed, free, lab1);
         right.branchFalse(a, pushed, free, lab);
         a.emitLabel(lab1);
     }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  true, evaluating the right argument only if it is needed.
+     */
+    void branchTrueJVM(JVMEmitter c, int lab) {
+        left.branchTrueJVM(c, lab);
+        right.branchTrueJVM(c, lab);
+    }
+
+    /** Generate JVM bytecode that branches to lab if this expression is
+     *  false, evaluating the right argument only if it is needed.
+     */
+    void branchFalseJVM(JVMEmitter c, int lab) {
+        int lab1 = c.newLabel();
+        left.branchTrueJVM(c, lab1);
+        right.branchFalseJVM(c, lab);
+        c.label(lab1);
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return lowerValue(b);
+    }
+
+    /** Lower this expression to intermediate code that branches on its
+     *  value, only evaluating the right argument if the left is false.
+     */
+    void lowerBranch(Builder b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        BasicBlock next = b.newBlock();
+        left.lowerBranch(b, ifTrue, next);
+        b.setBlock(next);
+        right.lowerBranch(b, ifTrue, ifFalse);
+    }
 }
@@ -0,0 +1,321 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/** Implements linear scan register allocation for the variables in a
+ *  program, following Poletto and Sarkar, "Linear Scan Register
+ *  Allocation" (TOPLAS 1999).  Each statement is given a position in a
+ *  linear order, and the live range of each variable runs from the first
+ *  to the last position at which it is used; for structured programs
+ *  without loops, this covers every path between two uses.  A range that
+ *  overlaps a loop is extended to cover the whole loop, because the value
+ *  may be carried around the back edge.  Ranges are then assigned to the
+ *  registers that are not needed for expression temporaries, in order of
+ *  their start positions.  When all of the registers are in use, the
+ *  range with the lowest weight (uses weighted by ten for each level of
+ *  loop nesting) is left in its usual stack slot.
+ */
+public class LinearScan {
+
+    /** The target machine.
+     */
+    private Backend a;
+
+    /** The current position in the program.
+     */
+    private int pos = 0;
+
+    /** The weight for each use at the current loop nesting depth.
+     */
+    private int loopWeight = 1;
+
+    /** The largest weight that we use for a loop, to avoid overflow.
+     */
+    private static final int MAX_WEIGHT = 100000;
+
+    /** Holds the start positions of the loops that enclose the current
+     *  position.
+     */
+    private ArrayList<Integer> loops = new ArrayList<Integer>();
+
+    /** Holds the range of positions for each loop in the program, as
+     *  pairs of start and end positions.
+     */
+    private ArrayList<int[]> loopRanges = new ArrayList<int[]>();
+
+    /** Maps each variable to its live range.
+     */
+    private IdentityHashMap<Env, LiveRange> ranges
+        = new IdentityHashMap<Env, LiveRange>();
+
+    /** Holds the live ranges in the order that they were created, so that
+     *  the allocation does not depend on the iteration order of ranges.
+     */
+    private ArrayList<LiveRange> created = new ArrayList<LiveRange>();
+
+    /** The largest number of registers needed to evaluate an expression.
+     */
+    private int maxNeed = 1;
+
+    /** Counts the number of variables that were allocated registers.
+     */
+    private int allocated = 0;
+
+    /** Counts the number of variables that were left on the stack.
+     */
+    private int spilled = 0;
+
+    /** Counts the number of stack slots that are used for the variables
+     *  that were left on the stack.
+     */
+    private int slots = 0;
+
+    /** Default constructor.
+     */
+    public LinearScan(Backend a) {
+        this.a = a;
+    }
+
+    /** Move to the next position in the program.
+     */
+    void step() {
+        pos++;
+    }
+
+    /** Record the start of a loop.
+     */
+    void enterLoop() {
+        loops.add(pos);
+        loopWeight = weight(loops.size());
+    }
+
+    /** Record the end of a loop.
+     */
+    void exitLoop() {
+        int start = loops.remove(loops.size()-1);
+        loopRanges.add(new int[] { start, pos });
+        loopWeight = weight(loops.size());
+    }
+
+    /** Return the weight for a use at the given loop nesting depth.
+     */
+    private static int weight(int depth) {
+        int w = 1;
+        for (int i=0; i<depth && w<MAX_WEIGHT; i++) {
+            w *= 10;
+        }
+        return w;
+    }
+
+    /** Record a use of the variable v at the current position.
+     */
+    void use(Env v) {
+        LiveRange r = ranges.get(v);
+        if (r==null) {
+            ranges.put(v, r = new LiveRange(v, pos));
+            created.add(r);
+        }
+        r.end     = pos;
+        r.weight += loopWeight;
+    }
+
+    /** Record that an expression needs n registers.
+     */
+    void need(int n) {
+        maxNeed = Math.max(maxNeed, n);
+    }
+
+    /** Scan the given program and return the number of registers that it
+     *  needs for evaluating expressions, which is at least two (because
+     *  some code sequences need a scratch register) and no more than the
+     *  number that the target has available.
+     */
+    public int tempsNeeded(Stmt prog) {
+        prog.scan(this);
+        return Math.max(2, Math.min(maxNeed, a.getNumRegs()));
+    }
+
+    /** Return the number of frame slots that are needed to spill
+     *  registers when the given number of registers are used for
+     *  temporaries.  This must be called after tempsNeeded().
+     */
+    public int spillSlots(int temps) {
+        return Math.max(0, maxNeed - temps);
+    }
+
+    /** Allocate registers for the variables in the given program, and set
+     *  the number of registers that the target uses for temporaries.
+     */
+    public void allocate(Stmt prog) {
+        int   temps = tempsNeeded(prog);
+        int[] free  = a.variableRegs(temps);
+        a.setNumTemps(temps);
+
+        // Extend each range to cover any loop that it overlaps:
+        ArrayList<LiveRange> rs = new ArrayList<LiveRange>(created);
+        for (int i=0; i<rs.size(); i++) {
+            LiveRange r = rs.get(i);
+            for (int j=0; j<loopRanges.size(); j++) {
+                int[] l = loopRanges.get(j);
+                if (r.overlaps(l[0], l[1])) {
+                    r.start = Math.min(r.start, l[0]);
+                    r.end   = Math.max(r.end,   l[1]);
+                }
+            }
+        }
+        Collections.sort(rs, new Comparator<LiveRange>() {
+            public int compare(LiveRange x, LiveRange y) {
+                return Integer.compare(x.start, y.start);
+            }
+        });
+
+        // Scan the ranges in order of their start positions:
+        ArrayList<LiveRange> active = new ArrayList<LiveRange>();
+        ArrayList<Integer>   avail  = new ArrayList<Integer>();
+        for (int i=0; i<free.length; i++) {
+            avail.add(free[i]);
+        }
+        for (int i=0; i<rs.size(); i++) {
+            LiveRange r = rs.get(i);
+            for (int j=0; j<active.size(); j++) {     // Expire old ranges
+                LiveRange q = active.get(j);
+                if (q.end<r.start) {
+                    avail.add(q.reg);
+                    active.remove(j--);
+                }
+            }
+            if (!avail.isEmpty()) {
+                r.reg = avail.remove(0);
+                active.add(r);
+            } else {
+                LiveRange cheapest = r;                  // Choose a spill
+                for (int j=0; j<active.size(); j++) {
+                    LiveRange q = active.get(j);
+                    if (q.weight<cheapest.weight
+                     || (q.weight==cheapest.weight && q.end>cheapest.end)) {
+                        cheapest = q;
+                    }
+                }
+                if (cheapest!=r) {
+                    r.reg        = cheapest.reg;
+                    cheapest.reg = -1;
+                    active.remove(cheapest);
+                    active.add(r);
+                }
+            }
+        }
+
+        // Record the results:
+        for (int i=0; i<rs.size(); i++) {
+            LiveRange r = rs.get(i);
+            if (r.reg<0) {
+                spilled++;
+            } else {
+                allocated++;
+                r.var.setIa32Reg(r.reg);
+                a.saveOnEntry(r.reg);
+            }
+        }
+        assignSlots(rs);
+    }
+
+    /** Assign stack slots to the variables that were not allocated
+     *  registers, given their live ranges in order of start position.  A
+     *  second linear scan lets variables whose live ranges do not overlap
+     *  share a slot, even if they are in scope at the same time.  The
+     *  slots are then ordered by the total weight of the variables that
+     *  they hold, so that the most heavily used variables are packed
+     *  together at the smallest offsets, and the frame only needs to hold
+     *  the slots that are actually used.
+     */
+    private void assignSlots(ArrayList<LiveRange> rs) {
+        ArrayList<LiveRange> active  = new ArrayList<LiveRange>();
+        ArrayList<Integer>   avail   = new ArrayList<Integer>();
+        ArrayList<Integer>   weights = new ArrayList<Integer>();
+        for (int i=0; i<rs.size(); i++) {
+            LiveRange r = rs.get(i);
+            if (r.reg>=0) {
+                continue;
+            }
+            for (int j=0; j<active.size(); j++) {     // Expire old ranges
+                LiveRange q = active.get(j);
+                if (q.end<r.start) {
+                    avail.add(q.slot);
+                    active.remove(j--);
+                }
+            }
+            if (avail.isEmpty()) {
+                r.slot = weights.size();
+                weights.add(0);
+            } else {
+                r.slot = avail.remove(0);
+            }
+            weights.set(r.slot, weights.get(r.slot) + r.weight);
+            active.add(r);
+        }
+
+        // Number the slots in order of decreasing weight:
+        slots = weights.size();
+        ArrayList<Integer> order = new ArrayList<Integer>();
+        for (int i=0; i<slots; i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            public int compare(Integer x, Integer y) {
+                return Integer.compare(weights.get(y), weights.get(x));
+            }
+        });
+        int[] rank = new int[slots];
+        for (int i=0; i<slots; i++) {
+            rank[order.get(i)] = i;
+        }
+        for (int i=0; i<rs.size(); i++) {
+            LiveRange r = rs.get(i);
+            if (r.reg<0) {
+                r.var.setIa32Offset(-(rank[r.slot]+1) * IA32.WORDSIZE);
+            }
+        }
+        Env.setIa32Locals(slots * IA32.WORDSIZE);
+    }
+
+    /** Return the number of variables that were allocated registers.
+     */
+    public int getAllocated() {
+        return allocated;
+    }
+
+    /** Return the number of variables that were left on the stack.
+     */
+    public int getSpilled() {
+        return spilled;
+    }
+
+    /** Return the number of stack slots that hold the variables that were
+     *  left on the stack.
+     */
+    public int getSlots() {
+        return slots;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+
+/** Records the range of positions in the program over which a variable
+ *  is live, together with a weight that estimates how often the variable
+ *  is used, for use in linear scan register allocation.
+ */
+class LiveRange {
+
+    /** The variable that this range describes.
+     */
+    Env var;
+
+    /** The first position at which the variable is used.
+     */
+    int start;
+
+    /** The last position at which the variable is live.
+     */
+    int end;
+
+    /** The total weight of the uses of the variable, with each use
+     *  weighted by the loop nesting depth at which it occurs.
+     */
+    int weight = 0;
+
+    /** The register that has been allocated to this variable, or -1 if
+     *  there is none.
+     */
+    int reg = -1;
+
+    /** The stack slot that has been chosen for this variable, if it was
+     *  not allocated a register.
+     */
+    int slot = -1;
+
+    /** Default constructor.
+     */
+    LiveRange(Env var, int start) {
+        this.var   = var;
+        this.start = start;
+        this.end   = start;
+    }
+
+    /** Test to see if this range overlaps the range from start to end.
+     */
+    boolean overlaps(int start, int end) {
+        return this.start<=end && start<=this.end;
+    }
+}
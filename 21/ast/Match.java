@@ -0,0 +1,101 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Records the bindings for pattern variables that are produced when
+ *  the left hand side of a rewrite rule is matched against an expression.
+ */
+class Match {
+
+    /** The maximum number of variables of each kind in a single rule.
+     */
+    static final int MAXVARS = 4;
+
+    /** Expressions bound to expression variables.
+     */
+    private Expr[] vars = new Expr[MAXVARS];
+
+    /** Values bound to integer literal variables.
+     */
+    private int[] ints = new int[MAXVARS];
+
+    /** Records which integer literal variables have been bound.
+     */
+    private boolean[] hasInt = new boolean[MAXVARS];
+
+    /** The expression that is being matched.
+     */
+    private Expr root;
+
+    /** Clear all bindings, ready for a new attempt to match against the
+     *  given expression.
+     */
+    void reset(Expr root) {
+        this.root = root;
+        for (int i=0; i<MAXVARS; i++) {
+            vars[i]   = null;
+            hasInt[i] = false;
+        }
+    }
+
+    /** Bind expression variable i to e, or, if it is already bound,
+     *  check that the existing binding is the same as e.
+     */
+    boolean bind(int i, Expr e) {
+        if (vars[i]==null) {
+            vars[i] = e;
+            return true;
+        }
+        return Rewriter.same(vars[i], e);
+    }
+
+    /** Bind integer variable i to the value n, or, if it is already
+     *  bound, check that the existing binding is the same as n.
+     */
+    boolean bindInt(int i, int n) {
+        if (!hasInt[i]) {
+            hasInt[i] = true;
+            ints[i]   = n;
+            return true;
+        }
+        return ints[i]==n;
+    }
+
+    /** Return the expression that is being matched.
+     */
+    Expr getRoot() {
+        return root;
+    }
+
+    /** Return the expression bound to variable i.
+     */
+    Expr getVar(int i) {
+        return vars[i];
+    }
+
+    /** Return the value bound to integer variable i.
+     */
+    int getInt(int i) {
+        return ints[i];
+    }
+}
@@ -36,39 +36,15 @@ public class Mul extends BinArithExpr {
      */
     String label() { return "Mul"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.MUL; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, "*"); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return new IntLit(pos, n*m); }
-
-    /** Simplification of a binary expression when the left operand
-     *  (but not the right) is a known integer constant.
-     */
-    Expr simpL(int m) {
-        // Commutative operator: swap operands and then use simpR:
-        Expr temp = left; left = right; right = temp;
-        return simpR(m);
-    }
-
-    /** Simplification of a binary expression when the right operand
-     *  (but not the left) is a known integer constant.
-     */
-    Expr simpR(int m) { return left.simpMul(this, m);  }
-
-    /** Simplify a multiplication with a known integer as the right argument.
-     */
-    Expr simpMul(Mul orig, int m) {
-        IntLit rightInt = right.isIntLit();
-        return (rightInt==null)
-                ? orig
-                : left.newMul(orig.pos, m * rightInt.getNum());
-    }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -77,9 +53,18 @@ public class Mul extends BinArithExpr {
     /** Generate assembly language code for this expression that will
      *  evaluate the expression when it is executed and leave the result
      *  in the specified free register, preserving any lower numbered
-     *  registers in the process.
+     *  registers in the process.  Multiplication by a constant is strength
+     *  reduced using IA32.multiplyConst().
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        compileCommutativeOp(a, "imull", pushed, free);
+    public void compileExpr(Backend a, int pushed, int free) {
+        if (right.op()==Op.INTLIT) {
+            left.compileExpr(a, pushed, free);
+            a.multiplyConst(free, ((IntLit)right).getNum());
+        } else if (left.op()==Op.INTLIT) {
+            right.compileExpr(a, pushed, free);
+            a.multiplyConst(free, ((IntLit)left).getNum());
+        } else {
+            compileCommutativeOp(a, AsmOp.IMULL, pushed, free);
+        }
     }
 }
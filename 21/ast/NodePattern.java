@@ -0,0 +1,107 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+
+/** A pattern that matches a unary or binary operator node.
+ */
+class NodePattern extends Pattern {
+
+    /** The kind of node that this pattern matches.
+     */
+    private Op op;
+
+    /** The pattern for the first argument.
+     */
+    private Pattern p;
+
+    /** The pattern for the second argument, or null for a unary node.
+     */
+    private Pattern q;
+
+    /** Default constructor.
+     */
+    NodePattern(Op op, Pattern p, Pattern q) {
+        this.op = op;
+        this.p  = p;
+        this.q  = q;
+    }
+
+    /** Return the kind of node at the root of this pattern.
+     */
+    Op rootOp() { return op; }
+
+    /** Test to see if this pattern matches the given expression,
+     *  recording any bindings for pattern variables in m.
+     */
+    boolean match(Expr e, Match m) {
+        if (e.op()!=op) {
+            return false;
+        } else if (q==null) {
+            return p.match(((UnExpr)e).exp, m);
+        } else {
+            BinExpr b = (BinExpr)e;
+            return p.match(b.left, m) && q.match(b.right, m);
+        }
+    }
+
+    /** Construct an expression from this pattern, using the bindings
+     *  in m for pattern variables and taking the position for new
+     *  nodes from the original expression.
+     */
+    Expr build(Match m, Expr orig) {
+        return op.make(orig.pos, p.build(m, orig),
+                       (q==null) ? null : q.build(m, orig));
+    }
+
+    /** Find all of the ways in which this pattern can match the e-class
+     *  c of g, trying each node of the appropriate kind in turn.
+     */
+    void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms) {
+        ArrayList<ENode> nodes = g.eclass(c).nodes;
+        for (int i=0; i<nodes.size(); i++) {
+            ENode n = nodes.get(i);
+            if (n.op==op) {
+                if (q==null) {
+                    p.ematch(g, n.args[0], m, ms);
+                } else {
+                    ArrayList<EMatch> ps = new ArrayList<EMatch>();
+                    p.ematch(g, n.args[0], m, ps);
+                    for (int j=0; j<ps.size(); j++) {
+                        q.ematch(g, n.args[1], ps.get(j), ms);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Add an instance of this pattern to g, returning its e-class.
+     */
+    int instantiate(EGraph g, EMatch m, int root) {
+        int[] args = (q==null)
+                   ? new int[] { p.instantiate(g, m, root) }
+                   : new int[] { p.instantiate(g, m, root),
+                                 q.instantiate(g, m, root) };
+        return g.add(op, args);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Identifies each of the different kinds of expression node.  These
+ *  codes allow the rewrite engine to index rules by the kind of node
+ *  that they apply to, and to construct new nodes of a given kind
+ *  without knowing the corresponding concrete class.
+ */
+public enum Op {
+    ID(0),      INTLIT(0),  BOOLLIT(0),
+    UPLUS(1),   UMINUS(1),  BNOT(1),    LNOT(1),
+    ADD(2, Op.AC), SUB(2),  MUL(2, Op.AC), DIV(2),
+    BAND(2, Op.AC), BOR(2, Op.AC), BXOR(2, Op.AC),
+    LAND(2),    LOR(2),
+    LT(2),      LTE(2),     GT(2),      GTE(2),
+    EQL(2, Op.COMMUTATIVE), NEQ(2, Op.COMMUTATIVE);
+
+    /** Flag for operators whose arguments can be swapped.
+     */
+    static final int COMMUTATIVE = 1;
+
+    /** Flag for operators that are both associative and commutative.
+     */
+    static final int AC = COMMUTATIVE | 2;
+
+    /** The number of subexpressions for this kind of node.
+     */
+    private final int arity;
+
+    /** Algebraic properties of this operator.
+     */
+    private final int flags;
+
+    Op(int arity) {
+        this(arity, 0);
+    }
+
+    Op(int arity, int flags) {
+        this.arity = arity;
+        this.flags = flags;
+    }
+
+    /** Return the number of subexpressions for this kind of node.
+     */
+    public int arity() {
+        return arity;
+    }
+
+    /** Test to see if the arguments of this operator can be swapped.
+     */
+    public boolean isCommutative() {
+        return (flags & COMMUTATIVE)!=0;
+    }
+
+    /** Test to see if this operator is associative and commutative,
+     *  which allows the operands of nested uses to be regrouped.
+     */
+    public boolean isAC() {
+        return (flags & AC)==AC;
+    }
+
+    /** Construct a new node of this kind with the given subexpressions.
+     *  The type of the new node is calculated from the types of its
+     *  arguments, so the result can be used in later compiler phases
+     *  without having to rerun type checking.
+     */
+    Expr make(Position pos, Expr l, Expr r) {
+        Expr e;
+        switch (this) {
+            case UPLUS  : e = new UPlus(pos, l);     break;
+            case UMINUS : e = new UMinus(pos, l);    break;
+            case BNOT   : e = new BNot(pos, l);      break;
+            case LNOT   : e = new LNot(pos, l);      break;
+            case ADD    : e = new Add(pos, l, r);    break;
+            case SUB    : e = new Sub(pos, l, r);    break;
+            case MUL    : e = new Mul(pos, l, r);    break;
+            case DIV    : e = new Div(pos, l, r);    break;
+            case BAND   : e = new BAnd(pos, l, r);   break;
+            case BOR    : e = new BOr(pos, l, r);    break;
+            case BXOR   : e = new BXor(pos, l, r);   break;
+            case LAND   : e = new LAnd(pos, l, r);   break;
+            case LOR    : e = new LOr(pos, l, r);    break;
+            case LT     : e = new Lt(pos, l, r);     break;
+            case LTE    : e = new Lte(pos, l, r);    break;
+            case GT     : e = new Gt(pos, l, r);     break;
+            case GTE    : e = new Gte(pos, l, r);    break;
+            case EQL    : e = new Eql(pos, l, r);    break;
+            case NEQ    : e = new Neq(pos, l, r);    break;
+            default     : throw new IllegalArgumentException("Cannot make " + this);
+        }
+        e.type = resultType(l.type);
+        return e;
+    }
+
+    /** Return the type of a node of this kind whose first argument
+     *  has the specified type.
+     */
+    Type resultType(Type argType) {
+        switch (this) {
+            case BAND : case BOR : case BXOR : case BNOT :
+                return argType;
+            case BOOLLIT : case LNOT : case LAND : case LOR :
+            case LT : case LTE : case GT : case GTE : case EQL : case NEQ :
+                return Type.BOOLEAN;
+            default :
+                return Type.INT;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.PassManager;
+
+/** Describes the standard optimization pipelines for each of the levels
+ *  that can be selected using the -O0 ... -O3 command line flags:
+ *     -O0   no optimization
+ *     -O1   rule-based simplification and if-conversion
+ *     -O2   simplification followed by equality saturation and if-conversion
+ *     -O3   as -O2, but with larger budgets and more rounds, and allowing
+ *           more complex expressions to be if-converted
+ */
+public class Optimizations {
+
+    /** The lowest optimization level.
+     */
+    public static final int MIN_LEVEL = 0;
+
+    /** The highest optimization level.
+     */
+    public static final int MAX_LEVEL = 3;
+
+    /** The optimization level that is used if none is specified.  This
+     *  is the full -O2 pipeline, so programs compiled without a -O flag
+     *  are also if-converted, and the pipeline is repeated until it
+     *  reaches a fixpoint; before the pass manager was introduced, the
+     *  compiler made just one rule-based simplification followed by one
+     *  round of equality saturation.
+     */
+    public static final int DEFAULT_LEVEL = 2;
+
+    /** Return a pass manager for the AST passes at the given level.
+     */
+    public static PassManager<Stmt> forLevel(int level, Backend target) {
+        switch (level) {
+            case 0 :
+                return new PassManager<Stmt>(0, 0);
+            case 1 :
+                return new PassManager<Stmt>(1, 1000000)
+                          .add(new SimplifyPass())
+                          .add(new IfConversionPass(2));
+            case 2 :
+                return new PassManager<Stmt>(4, 1000000)
+                          .add(new SimplifyPass())
+                          .add(new EGraphPass(target))
+                          .add(new IfConversionPass(2));
+            default :
+                return new PassManager<Stmt>(8, 10000000)
+                          .add(new SimplifyPass())
+                          .add(new EGraphPass(new EGraphOptimizer(target, 32, 50000)))
+                          .add(new IfConversionPass(3));
+        }
+    }
+}
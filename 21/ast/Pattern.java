@@ -0,0 +1,182 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+
+/** Represents a pattern that can be used on the left hand side of a
+ *  rewrite rule, to match against expressions, or on the right hand
+ *  side, to construct the replacement for an expression that matched.
+ *  Patterns are described using a small set of combinators:
+ *     var(i)         matches any expression, binding it to variable i
+ *     lit(i)         matches any integer literal, binding its value to i
+ *     num(n)         matches only the integer literal n
+ *     bool(b)        matches only the Boolean literal b
+ *     node(op, ...)  matches a node of kind op with matching arguments
+ *  A variable that appears more than once on the left of a rule only
+ *  matches if each occurrence corresponds to the same expression.
+ *  The same patterns can also be matched against the classes of an
+ *  e-graph, where a single pattern may match in several different ways.
+ */
+abstract class Pattern {
+
+    /** Return the kind of node at the root of this pattern, or null if
+     *  the pattern is not restricted to a particular kind of node.
+     */
+    Op rootOp() { return null; }
+
+    /** Test to see if this pattern matches the given expression,
+     *  recording any bindings for pattern variables in m.
+     */
+    abstract boolean match(Expr e, Match m);
+
+    /** Construct an expression from this pattern, using the bindings
+     *  in m for pattern variables.  New nodes are annotated with the
+     *  position of the original expression, and literals take the type
+     *  of the original expression.
+     */
+    abstract Expr build(Match m, Expr orig);
+
+    /** Find all of the ways in which this pattern can match the e-class
+     *  c of g, extending the bindings in m, and add each of the resulting
+     *  matches to ms.
+     */
+    abstract void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms);
+
+    /** Add an instance of this pattern to g, using the bindings in m for
+     *  pattern variables, and return the e-class that contains it.  The
+     *  root parameter identifies the class that the corresponding left
+     *  hand side matched, and is used to determine the type of literals.
+     */
+    abstract int instantiate(EGraph g, EMatch m, int root);
+
+    /** Add m to the list ms if it is not null.
+     */
+    static void found(EMatch m, ArrayList<EMatch> ms) {
+        if (m!=null) {
+            ms.add(m);
+        }
+    }
+
+    /** Return a pattern that matches any expression.
+     */
+    static Pattern var(final int i) {
+        return new Pattern() {
+            boolean match(Expr e, Match m) {
+                return m.bind(i, e);
+            }
+            Expr build(Match m, Expr orig) {
+                return m.getVar(i);
+            }
+            void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms) {
+                found(m.bind(g, i, c), ms);
+            }
+            int instantiate(EGraph g, EMatch m, int root) {
+                return m.getVar(i);
+            }
+        };
+    }
+
+    /** Return a pattern that matches any integer literal.
+     */
+    static Pattern lit(final int i) {
+        return new Pattern() {
+            Op rootOp() { return Op.INTLIT; }
+            boolean match(Expr e, Match m) {
+                IntLit l = e.isIntLit();
+                return l!=null && m.bindInt(i, l.getNum());
+            }
+            Expr build(Match m, Expr orig) {
+                return Rewriter.literal(orig.pos, Type.INT, m.getInt(i));
+            }
+            void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms) {
+                EClass ec = g.eclass(c);
+                if (ec.hasConst && ec.type==Type.INT) {
+                    found(m.bindInt(i, ec.constVal), ms);
+                }
+            }
+            int instantiate(EGraph g, EMatch m, int root) {
+                return g.addLiteral(Type.INT, m.getInt(i));
+            }
+        };
+    }
+
+    /** Return a pattern that matches a specific integer literal.
+     */
+    static Pattern num(final int n) {
+        return new Pattern() {
+            Op rootOp() { return Op.INTLIT; }
+            boolean match(Expr e, Match m) {
+                IntLit l = e.isIntLit();
+                return l!=null && l.getNum()==n;
+            }
+            Expr build(Match m, Expr orig) {
+                return Rewriter.literal(orig.pos, orig.type, n);
+            }
+            void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms) {
+                EClass ec = g.eclass(c);
+                if (ec.hasConst && ec.type==Type.INT && ec.constVal==n) {
+                    ms.add(m);
+                }
+            }
+            int instantiate(EGraph g, EMatch m, int root) {
+                return g.addLiteral(g.eclass(root).type, n);
+            }
+        };
+    }
+
+    /** Return a pattern that matches a specific Boolean literal.
+     */
+    static Pattern bool(final boolean b) {
+        return new Pattern() {
+            Op rootOp() { return Op.BOOLLIT; }
+            boolean match(Expr e, Match m) {
+                return e.op()==Op.BOOLLIT && ((BoolLit)e).getValue()==b;
+            }
+            Expr build(Match m, Expr orig) {
+                return Rewriter.literal(orig.pos, Type.BOOLEAN, b ? 1 : 0);
+            }
+            void ematch(EGraph g, int c, EMatch m, ArrayList<EMatch> ms) {
+                EClass ec = g.eclass(c);
+                if (ec.hasConst && ec.type==Type.BOOLEAN
+                                && ec.constVal==(b ? 1 : 0)) {
+                    ms.add(m);
+                }
+            }
+            int instantiate(EGraph g, EMatch m, int root) {
+                return g.addLiteral(Type.BOOLEAN, b ? 1 : 0);
+            }
+        };
+    }
+
+    /** Return a pattern for a unary operator node.
+     */
+    static Pattern node(Op op, Pattern p) {
+        return new NodePattern(op, p, null);
+    }
+
+    /** Return a pattern for a binary operator node.
+     */
+    static Pattern node(Op op, Pattern p, Pattern q) {
+        return new NodePattern(op, p, q);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+
+/** A windowed peephole optimizer for the instructions that are produced
+ *  by IA32.  Instructions are added to a buffer one at a time, and each
+ *  time the buffer changes, the rules are tried on the lines at the end
+ *  of the buffer.  Lines are only written out once they have moved more
+ *  than WINDOW lines from the end, at which point no rule can touch them.
+ *  The buffer is an AsmList, so rules compare opcodes and encoded operands
+ *  rather than text.
+ */
+public class Peephole {
+
+    /** The rules that are used by this optimizer.
+     */
+    private PeepholeRule[] rules;
+
+    /** Holds instructions that have not yet been written out.
+     */
+    private AsmList buf = new AsmList();
+
+    /** The number of lines at the end of the buffer that rules can
+     *  inspect or modify.
+     */
+    public static final int WINDOW = 8;
+
+    /** Construct a peephole optimizer using the standard rules.
+     */
+    public Peephole() {
+        this(PeepholeRules.standard());
+    }
+
+    /** Construct a peephole optimizer using the given set of rules.
+     */
+    Peephole(PeepholeRule[] rules) {
+        this.rules = rules;
+    }
+
+    /** Return a new optimizer with an empty buffer that uses the same
+     *  rules as this one, for use by another code generator thread.  The
+     *  statistics for the rules are shared.
+     */
+    Peephole fork() {
+        return new Peephole(rules);
+    }
+
+    /** Add an instruction to the buffer, apply rules until none of them
+     *  fire, and write out any lines that have left the window.
+     */
+    void add(AsmOp op, long a, long b, long c, AsmOutput out) {
+        buf.write(op, a, b, c);
+        boolean changed = true;
+        while (changed && buf.size()>0) {
+            changed = false;
+            for (int i=0; i<rules.length && !changed; i++) {
+                if (rules[i].apply(buf)) {
+                    rules[i].used();
+                    changed = true;
+                }
+            }
+        }
+        while (buf.size()>WINDOW) {
+            buf.writeLine(0, out);
+            buf.remove(0);
+        }
+    }
+
+    /** Write out all of the lines that remain in the buffer.
+     */
+    void flush(AsmOutput out) {
+        buf.writeTo(out);
+        buf.clear();
+    }
+
+    /** Return the total number of times that rules have been used.
+     */
+    public int getRewrites() {
+        int n = 0;
+        for (int i=0; i<rules.length; i++) {
+            n += rules[i].getUses();
+        }
+        return n;
+    }
+
+    /** Return a printable summary of the number of times that each rule
+     *  has been used.  Rules that have not been used are included, so that
+     *  a rule that never fires on realistic programs is easy to spot.
+     */
+    public String ruleStats() {
+        StringBuffer buf = new StringBuffer();
+        for (int i=0; i<rules.length; i++) {
+            buf.append(rules[i].getName());
+            buf.append('=');
+            buf.append(rules[i].getUses());
+            buf.append(' ');
+        }
+        return buf.toString().trim();
+    }
+}
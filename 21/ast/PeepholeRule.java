@@ -0,0 +1,73 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+
+/** Represents a peephole optimization rule that looks for a particular
+ *  pattern of instructions at the end of the buffer in a Peephole object
+ *  and replaces it with a more efficient sequence.
+ */
+abstract class PeepholeRule {
+
+    /** A short name for this rule, used in statistics output.
+     */
+    private String name;
+
+    /** Counts the number of times that this rule has been used.
+     */
+    private int uses = 0;
+
+    /** Default constructor.
+     */
+    PeepholeRule(String name) {
+        this.name = name;
+    }
+
+    /** Return the name of this rule.
+     */
+    String getName() {
+        return name;
+    }
+
+    /** Return the number of times that this rule has been used.
+     */
+    synchronized int getUses() {
+        return uses;
+    }
+
+    /** Record a use of this rule.  Rules may be shared by peephole
+     *  optimizers in different threads.
+     */
+    synchronized void used() {
+        uses++;
+    }
+
+    /** Try to apply this rule to the instructions at the end of buf,
+     *  returning true if the buffer was changed.
+     */
+    abstract boolean apply(AsmList buf);
+
+    /** Return the index in buf of the line that is k lines from the end,
+     *  with k=0 for the last line, or -1 if the buffer is not long enough.
+     */
+    static int last(AsmList buf, int k) {
+        return Math.max(-1, buf.size()-1-k);
+    }
+}
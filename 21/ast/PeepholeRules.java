@@ -0,0 +1,137 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import java.util.ArrayList;
+import static ast.AsmOperand.*;
+
+/** Defines the standard set of peephole rules that are used to clean up
+ *  the instructions produced by IA32.  The rules include:
+ *     store then load   movl r,m; movl m,s           ==>  movl r,m; movl r,s
+ *     move back         movl a,b; movl b,a           ==>  movl a,b
+ *     redundant tests   op x,r; orl r,r; jz l        ==>  op x,r; jz l
+ *     jump to next      jmp l; l:                    ==>  l:
+ *  where the address of a does not use b in the second rule, and op sets
+ *  the zero flag from its result in the third.  Each rule fires on
+ *  ordinary programs; -stats reports how often.  Two patterns that were
+ *  requested are deliberately left out, because IA32 never generates
+ *  them: an xchgl before a commutative operation (compileCommutativeOp()
+ *  ignores the evaluation order instead of exchanging registers), and a
+ *  push/pop pair around a register that is not in use (spill() only
+ *  saves a register when spillFor() reports that it holds another
+ *  value, using a frame slot when one is reserved, and the prologue
+ *  only saves the registers that the allocator used).
+ */
+class PeepholeRules {
+
+    /** Return a new copy of the standard set of rules.
+     */
+    static PeepholeRule[] standard() {
+        ArrayList<PeepholeRule> rules = new ArrayList<PeepholeRule>();
+
+        rules.add(new PeepholeRule("storeload") {
+            boolean apply(AsmList buf) {
+                int st = last(buf, 1);
+                int ld = last(buf, 0);
+                if (st>=0 && buf.op(st)==AsmOp.MOVL && buf.op(ld)==AsmOp.MOVL
+                    && isReg(buf.arg(st, 0)) && isMem(buf.arg(st, 1))
+                    && buf.arg(st, 1)==buf.arg(ld, 0) && isReg(buf.arg(ld, 1))
+                    && !uses(buf.arg(st, 1), buf.arg(st, 0))) {
+                    long r = buf.arg(st, 0);
+                    long s = buf.arg(ld, 1);
+                    buf.remove(ld);
+                    if (r!=s) {
+                        buf.write(AsmOp.MOVL, r, s, NONE);
+                    }
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        rules.add(new PeepholeRule("moveback") {
+            boolean apply(AsmList buf) {
+                int mv = last(buf, 1);
+                int bk = last(buf, 0);
+                if (mv>=0 && buf.op(mv)==AsmOp.MOVL && buf.op(bk)==AsmOp.MOVL
+                    && buf.arg(mv, 1)==buf.arg(bk, 0) && buf.arg(mv, 0)==buf.arg(bk, 1)
+                    && !uses(buf.arg(mv, 0), buf.arg(mv, 1))) {
+                    buf.remove(bk);
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        rules.add(new PeepholeRule("test") {
+            boolean apply(AsmList buf) {
+                int   op  = last(buf, 2);
+                int   tst = last(buf, 1);
+                AsmOp br  = buf.op(last(buf, 0));
+                if (op>=0 && (br==AsmOp.JZ || br==AsmOp.JNZ || br==AsmOp.JE || br==AsmOp.JNE)
+                    && buf.op(tst)==AsmOp.ORL && buf.arg(tst, 0)==buf.arg(tst, 1)
+                    && setsZero(buf, op, buf.arg(tst, 0))) {
+                    buf.remove(tst);
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        rules.add(new PeepholeRule("jumpnext") {
+            boolean apply(AsmList buf) {
+                int l = last(buf, 0);
+                if (buf.op(l)==AsmOp.LABEL) {
+                    for (int k=1; k<Peephole.WINDOW; k++) {
+                        int j = last(buf, k);
+                        if (j<0 || buf.op(j)!=AsmOp.LABEL) {
+                            if (j>=0 && buf.op(j)==AsmOp.JMP
+                                     && buf.arg(j, 0)==buf.arg(l, 0)) {
+                                buf.remove(j);
+                                return true;
+                            }
+                            break;
+                        }
+                    }
+                }
+                return false;
+            }
+        });
+
+        return rules.toArray(new PeepholeRule[rules.size()]);
+    }
+
+    /** Test to see if line i of buf sets the zero flag according to the
+     *  value that it leaves in register r.
+     */
+    private static boolean setsZero(AsmList buf, int i, long r) {
+        switch (buf.op(i)) {
+            case ADDL : case SUBL : case ANDL : case ORL : case XORL :
+                return buf.arg(i, 1)==r;
+            case NEGL : case INCL : case DECL :
+                return buf.arg(i, 0)==r;
+            case SALL : case SARL : case SHRL :
+                long n = buf.arg(i, 0);
+                return buf.arg(i, 1)==r && kind(n)==IMM && value(n)!=0;
+            default :
+                return false;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** Abstract syntax for print statements.
  */
@@ -56,6 +57,15 @@ public class Print extends PosStmt {
         out.println(";");
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n, "print(");
+        exp.emitC(out);
+        out.println(");");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -101,44 +111,60 @@ public class Print extends PosStmt {
         return exp.analyze(init, initialized);
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
-        exp = exp.simplify();
+    public void simplify(Simplifier rw) {
+        exp = rw.rewrite(exp);
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
-        System.out.println(exp.eval());
+        out.print(exp.eval());
     }
 
     /** Generate code for executing this statement.
      */
-    public void compile(IA32 a, int pushed) {
-        // How many bytes will we need to push on to the stack to
-        // ensure appropriate alignment after we have pushed the
-        // single word argument required by the print primitive?
-        int adjust = a.alignmentAdjust(pushed + IA32.WORDSIZE);
-  
-        // Note that if we were calling a function with n arguments
-        // (which we could determine by calculating the length of
-        // the argument list), then we would need to compute an
-        // alignment for (pushed + n * IA32.WORDSIZE)
-  
-        // insert alignment bytes before we start constructing frame
-        a.insertAdjust(adjust);
-  
-        // compile and push argument to be printed:
-        exp.compileExpr(a, pushed + adjust, 0);
-        a.emit("pushl", a.reg(0));
-  
-        // invoke function, with appropriate alignment:
-        a.call("print", 0);
-  
-        // remove parameter, plus any bytes that were added to meet
-        // alignment constraints:
-        a.removeAdjust(adjust + IA32.WORDSIZE);
+    public void compile(Backend a, int pushed) {
+        a.line(pos);
+
+        // Insert any bytes that are needed to ensure appropriate
+        // alignment once the argument has been passed:
+        int adjust = a.printAdjust(pushed);
+
+        // compile the argument to be printed:
+        long src = exp.operand(a, pushed + adjust);
+        if (src==AsmOperand.NONE) {
+            exp.compileExpr(a, pushed + adjust, 0);
+            src = a.reg(0);
+        }
+
+        // pass the argument and invoke the function, removing the
+        // argument and the alignment bytes afterwards:
+        a.callPrint(src, adjust);
+    }
+
+    /** Record the variables that are used by this statement.
+     */
+    void scan(LinearScan ls) {
+        ls.step();
+        ls.need(exp.scan(ls));
+    }
+
+    /** Generate JVM bytecode for executing this statement.
+     */
+    void compileJVM(JVMEmitter c) {
+        c.sink();
+        exp.compileJVM(c);
+        c.print();
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
+        b.print(exp.lower(b));
     }
 }
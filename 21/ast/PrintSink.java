@@ -0,0 +1,63 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import java.io.PrintStream;
+
+/** Collects the output of a mini program, either compiled to JVM bytecode
+ *  or run in the interpreter, buffering it so that each print does not
+ *  need a separate write to the underlying stream.
+ */
+public class PrintSink {
+
+    /** The stream that the output is written to when it is flushed.
+     */
+    private PrintStream out;
+
+    /** Holds the output that has not been written to out yet.
+     */
+    private StringBuilder buf = new StringBuilder();
+
+    /** The number of characters that are buffered before flushing.
+     */
+    private static final int LIMIT = 8192;
+
+    /** Default constructor.
+     */
+    public PrintSink(PrintStream out) {
+        this.out = out;
+    }
+
+    /** Output a value, in the same format that is used by Print.exec().
+     */
+    public void print(int v) {
+        buf.append(v).append('\n');
+        if (buf.length()>=LIMIT) {
+            flush();
+        }
+    }
+
+    /** Write any buffered output to the underlying stream.
+     */
+    public void flush() {
+        out.print(buf);
+        out.flush();
+        buf.setLength(0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+
+/** Records the number of times that each block of a program has been
+ *  executed, for use in profile guided block layout.  Blocks are keyed by
+ *  the position of the statement that they belong to and an arm number,
+ *  as described for Backend.count(): 0 for the true arm of an if or the
+ *  test of a loop, and 1 for the false arm of an if or the body of a loop.
+ *  A profile can be read from the file that a program compiled with
+ *  -profile writes when it exits, or collected by running the program in
+ *  the interpreter.
+ */
+public class Profile {
+
+    /** Maps the key of each block, as computed by key(), to the number
+     *  of times that it was executed.  Blocks that never ran are omitted.
+     */
+    private HashMap<Long, Long> counts = new HashMap<Long, Long>();
+
+    /** The maximum number of block executions that train() will record
+     *  before it stops running the program.
+     */
+    public static final long TRAINING_BUDGET = 10000000;
+
+    /** The number of block executions that may still be recorded before
+     *  the training run is stopped.
+     */
+    private long budget = TRAINING_BUDGET;
+
+    /** Set to true if the training run was stopped because it used up
+     *  its budget, in which case the counts only cover a prefix of the
+     *  execution.
+     */
+    private boolean truncated = false;
+
+    /** An arm is treated as cold, and moved out of line, if it accounts
+     *  for at most one in COLD_RATIO of the executions of its statement.
+     */
+    public static final int COLD_RATIO = 100;
+
+    /** Return the key for the given arm of the statement at the given
+     *  row and column.
+     */
+    private static long key(int row, int column, int arm) {
+        return ((long)row<<33) | ((long)column<<1) | arm;
+    }
+
+    /** Add n to the count for the given arm of the statement at the
+     *  given row and column.
+     */
+    private void add(int row, int column, int arm, long n) {
+        counts.merge(key(row, column, arm), n, Long::sum);
+    }
+
+    /** Return the count for the given arm of the statement at pos, which
+     *  is zero if the profile does not mention it.
+     */
+    public long get(Position pos, int arm) {
+        Long n = counts.get(key(pos.getRow(), pos.getColumn(), arm));
+        return (n==null) ? 0 : n;
+    }
+
+    /** Return the arm of the statement at pos that is executed most often,
+     *  preferring arm 0 if there is no difference.
+     */
+    public int hotArm(Position pos) {
+        return get(pos, 1)>get(pos, 0) ? 1 : 0;
+    }
+
+    /** Test to see if the given arm of the statement at pos is cold.  A
+     *  statement that was never executed has no cold arms, because there
+     *  is nothing to compare them with.
+     */
+    public boolean isCold(Position pos, int arm) {
+        long total = get(pos, 0) + get(pos, 1);
+        return total>0 && get(pos, arm)*COLD_RATIO<=total;
+    }
+
+    /** Return the number of blocks in this profile.
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /** Test to see if this profile was collected by a training run that
+     *  was stopped before the program finished.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** Read a profile in the format that the runtime writes for programs
+     *  that are compiled with -profile: one block on each line, given by a
+     *  row, column, arm number, and count.
+     */
+    public static Profile read(String filename)
+      throws IOException, Failure {
+        Profile p = new Profile();
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            String line;
+            for (int lineNo=1; (line=in.readLine())!=null; lineNo++) {
+                String[] f = line.trim().split("\\s+");
+                if (f.length==1 && f[0].isEmpty()) {
+                    continue;
+                }
+                try {
+                    if (f.length!=4) {
+                        throw new NumberFormatException();
+                    }
+                    int arm = Integer.parseInt(f[2]);
+                    if (arm!=0 && arm!=1) {
+                        throw new Failure("Invalid arm number " + arm
+                                          + " at line " + lineNo
+                                          + " of " + filename);
+                    }
+                    p.add(Integer.parseInt(f[0]), Integer.parseInt(f[1]),
+                          arm, Long.parseLong(f[3]));
+                } catch (NumberFormatException e) {
+                    throw new Failure("Malformed profile data at line "
+                                      + lineNo + " of " + filename);
+                }
+            }
+        }
+        return p;
+    }
+
+    /** Record an execution of the given arm of the statement at pos,
+     *  failing once the training budget has been used up so that a
+     *  program that does not terminate cannot stall the compiler.
+     */
+    void hit(Position pos, int arm)
+      throws Failure {
+        if (--budget<0) {
+            truncated = true;
+            throw new Failure(pos, "Training budget exceeded");
+        }
+        add(pos.getRow(), pos.getColumn(), arm, 1);
+    }
+
+    /** Collect a profile by running a program in the interpreter, with
+     *  its output discarded.  If the program fails (for example, with a
+     *  division by zero) or runs for more than TRAINING_BUDGET block
+     *  executions, the counts up to that point are still used.
+     */
+    public static Profile train(Stmt prog) {
+        Profile   p   = new Profile();
+        PrintSink out = new PrintSink(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            prog.exec(out, p);
+        } catch (Failure f) {
+            // Keep the counts that were collected before the failure.
+        }
+        return p;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.ArrayList;
+import static ast.Pattern.*;
+
+/** Defines the standard set of rewrite rules that are used to simplify
+ *  expressions, reducing the amount of computation that is required at
+ *  runtime.  The rules include:
+ *     constant folding        n + m  ==>  (n+m)   if n,m are known
+ *     identities              x + 0  ==>  x,  b && true ==>  b, ...
+ *     double negation         -(-x)  ==>  x,  !(!b) ==>  b, ...
+ *     negated comparisons     !(x<y) ==>  x>=y, ...
+ *     self cancellation       x - x  ==>  0,  x ^ x ==>  0, ...
+ *  together with reassociation and canonical ordering of the arguments
+ *  of associative and commutative operators, which move literals to the
+ *  right and combine them.  As a result, (x + n) + m ==> x + (n+m) and
+ *  (x+n)+(y+m) ==> (x+y)+(n+m), with corresponding rules for *, &, |,
+ *  and ^.  Rules that discard an argument are only used when the
+ *  discarded expression is free from side effects.
+ */
+class RewriteRules {
+
+    /** Return a new copy of the standard set of rules.
+     */
+    static Rule[] standard() {
+        ArrayList<Rule> rules = new ArrayList<Rule>();
+        Pattern x = var(0);
+        Pattern y = var(1);
+        Pattern z = var(2);
+
+        // Constant folding, for any node whose arguments are literals:
+        rules.add(new Rule("fold", null, null) {
+            Op getOp() { return null; }
+            Expr apply(Expr e, Match m) {
+                Expr r = fold(e);
+                if (r!=null) {
+                    used();
+                }
+                return r;
+            }
+        });
+
+        // Identities for arithmetic:
+        rules.add(new Rule("uplus",   node(Op.UPLUS, x),                    x));
+        rules.add(new Rule("negneg",  node(Op.UMINUS, node(Op.UMINUS, x)),  x));
+        rules.add(new Rule("add0",    node(Op.ADD, x, num(0)),              x));
+        rules.add(new Rule("sub0",    node(Op.SUB, x, num(0)),              x));
+        rules.add(new Rule("subn",    node(Op.SUB, x, lit(0)),
+                                      node(Op.ADD, x, node(Op.UMINUS, lit(0)))));
+        rules.add(new Rule("0sub",    node(Op.SUB, num(0), x),  node(Op.UMINUS, x)));
+        rules.add(new PureRule("subxx", node(Op.SUB, x, x),                num(0)));
+        rules.add(new Rule("mul1",    node(Op.MUL, x, num(1)),              x));
+        rules.add(new Rule("mulm1",   node(Op.MUL, x, num(-1)), node(Op.UMINUS, x)));
+        rules.add(new PureRule("mul0", node(Op.MUL, x, num(0)),             num(0)));
+        rules.add(new Rule("div1",    node(Op.DIV, x, num(1)),              x));
+        rules.add(new Rule("divm1",   node(Op.DIV, x, num(-1)), node(Op.UMINUS, x)));
+
+        // Identities for bitwise operators:
+        rules.add(new Rule("notnot",  node(Op.BNOT, node(Op.BNOT, x)),      x));
+        rules.add(new Rule("andm1",   node(Op.BAND, x, num(-1)),            x));
+        rules.add(new PureRule("and0", node(Op.BAND, x, num(0)),            num(0)));
+        rules.add(new Rule("andxx",   node(Op.BAND, x, x),                  x));
+        rules.add(new Rule("or0",     node(Op.BOR, x, num(0)),              x));
+        rules.add(new PureRule("orm1", node(Op.BOR, x, num(-1)),            num(-1)));
+        rules.add(new Rule("orxx",    node(Op.BOR, x, x),                   x));
+        rules.add(new Rule("xor0",    node(Op.BXOR, x, num(0)),             x));
+        rules.add(new Rule("xorm1",   node(Op.BXOR, x, num(-1)), node(Op.BNOT, x)));
+        rules.add(new PureRule("xorxx", node(Op.BXOR, x, x),                num(0)));
+
+        // Identities for Booleans:
+        rules.add(new Rule("lnotnot", node(Op.LNOT, node(Op.LNOT, x)),      x));
+        rules.add(new Rule("bnotb",   node(Op.BNOT, x),         node(Op.LNOT, x)) {
+            boolean when(Match m) { return m.getRoot().type==Type.BOOLEAN; }
+        });
+        rules.add(new Rule("tand",    node(Op.LAND, bool(true), x),         x));
+        rules.add(new Rule("fand",    node(Op.LAND, bool(false), x),        bool(false)));
+        rules.add(new Rule("andt",    node(Op.LAND, x, bool(true)),         x));
+        rules.add(new PureRule("andf", node(Op.LAND, x, bool(false)),       bool(false)));
+        rules.add(new Rule("andbb",   node(Op.LAND, x, x),                  x));
+        rules.add(new Rule("tor",     node(Op.LOR, bool(true), x),          bool(true)));
+        rules.add(new Rule("for",     node(Op.LOR, bool(false), x),         x));
+        rules.add(new PureRule("ort", node(Op.LOR, x, bool(true)),          bool(true)));
+        rules.add(new Rule("orf",     node(Op.LOR, x, bool(false)),         x));
+        rules.add(new Rule("orbb",    node(Op.LOR, x, x),                   x));
+        rules.add(new Rule("eqt",     node(Op.EQL, x, bool(true)),          x));
+        rules.add(new Rule("eqf",     node(Op.EQL, x, bool(false)), node(Op.LNOT, x)));
+        rules.add(new Rule("neqf",    node(Op.NEQ, x, bool(false)),         x));
+        rules.add(new Rule("neqt",    node(Op.NEQ, x, bool(true)),  node(Op.LNOT, x)));
+        rules.add(new Rule("bandt",   node(Op.BAND, x, bool(true)),         x));
+        rules.add(new PureRule("bandf", node(Op.BAND, x, bool(false)),      bool(false)));
+        rules.add(new Rule("borf",    node(Op.BOR, x, bool(false)),         x));
+        rules.add(new PureRule("bort", node(Op.BOR, x, bool(true)),         bool(true)));
+        rules.add(new Rule("bxorf",   node(Op.BXOR, x, bool(false)),        x));
+        rules.add(new Rule("bxort",   node(Op.BXOR, x, bool(true)), node(Op.LNOT, x)));
+
+        // Negated comparisons:
+        rules.add(new Rule("notlt",   node(Op.LNOT, node(Op.LT,  x, y)), node(Op.GTE, x, y)));
+        rules.add(new Rule("notlte",  node(Op.LNOT, node(Op.LTE, x, y)), node(Op.GT,  x, y)));
+        rules.add(new Rule("notgt",   node(Op.LNOT, node(Op.GT,  x, y)), node(Op.LTE, x, y)));
+        rules.add(new Rule("notgte",  node(Op.LNOT, node(Op.GTE, x, y)), node(Op.LT,  x, y)));
+        rules.add(new Rule("noteql",  node(Op.LNOT, node(Op.EQL, x, y)), node(Op.NEQ, x, y)));
+        rules.add(new Rule("notneq",  node(Op.LNOT, node(Op.NEQ, x, y)), node(Op.EQL, x, y)));
+
+        // Comparisons of an expression with itself:
+        rules.add(new PureRule("ltxx",  node(Op.LT,  x, x),                 bool(false)));
+        rules.add(new PureRule("ltexx", node(Op.LTE, x, x),                 bool(true)));
+        rules.add(new PureRule("gtxx",  node(Op.GT,  x, x),                 bool(false)));
+        rules.add(new PureRule("gtexx", node(Op.GTE, x, x),                 bool(true)));
+        rules.add(new PureRule("eqlxx", node(Op.EQL, x, x),                 bool(true)));
+        rules.add(new PureRule("neqxx", node(Op.NEQ, x, x),                 bool(false)));
+
+        // Reassociation and canonical ordering:
+        Op[] ops = Op.values();
+        for (int i=0; i<ops.length; i++) {
+            final Op op = ops[i];
+            if (op.isAC()) {
+                // (x op n) op m ==> x op (n op m):
+                rules.add(new Rule("merge" + op,
+                                   node(op, node(op, x, lit(0)), lit(1)),
+                                   node(op, x, node(op, lit(0), lit(1)))));
+                // x op (y op z) ==> (x op y) op z:
+                rules.add(new Rule("assoc" + op,
+                                   node(op, x, node(op, y, z)),
+                                   node(op, node(op, x, y), z)));
+                // (x op y) op z ==> (x op z) op y, if z should come first:
+                rules.add(new Rule("sort" + op,
+                                   node(op, node(op, x, y), z),
+                                   node(op, node(op, x, z), y)) {
+                    boolean when(Match m) {
+                        return Rewriter.compare(m.getVar(1), m.getVar(2))>0;
+                    }
+                });
+            }
+            if (op.isCommutative()) {
+                // x op y ==> y op x, if y should come first:
+                rules.add(new Rule("order" + op, node(op, x, y), node(op, y, x)) {
+                    boolean when(Match m) {
+                        Expr l = m.getVar(0);
+                        Expr r = m.getVar(1);
+                        return (!op.isAC() || (l.op()!=op && r.op()!=op))
+                            && Rewriter.compare(l, r)>0;
+                    }
+                });
+            }
+        }
+
+        return rules.toArray(new Rule[rules.size()]);
+    }
+
+    /** Constant folding: if all of the arguments of e are literals, then
+     *  return a literal for the value of e, or else return null.  The
+     *  value is calculated using the same evaluator that is used by the
+     *  interpreter, so an expression whose evaluation would fail (such as
+     *  a division by zero) is not folded.
+     */
+    static Expr fold(Expr e) {
+        if (e instanceof BinExpr) {
+            BinExpr b = (BinExpr)e;
+            if (!Rewriter.isLiteral(b.left) || !Rewriter.isLiteral(b.right)) {
+                return null;
+            }
+        } else if (e instanceof UnExpr) {
+            if (!Rewriter.isLiteral(((UnExpr)e).exp)) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        try {
+            return Rewriter.literal(e.pos, e.type, e.eval());
+        } catch (Failure f) {
+            return null;
+        }
+    }
+}
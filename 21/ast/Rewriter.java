@@ -0,0 +1,251 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+import java.util.IdentityHashMap;
+
+/** A term rewriting engine that simplifies expressions by applying a
+ *  set of rewrite rules until no further rules can be used.  Rules are
+ *  indexed by the kind of node that they match, so only a small number
+ *  of rules need to be tried at each node.  Subexpressions are rewritten
+ *  before their enclosing expressions, and the normal form that is found
+ *  for each node is memoized so that shared or previously simplified
+ *  subtrees are never rewritten more than once.
+ */
+public class Rewriter extends Simplifier {
+
+    /** The rules that can be applied to each kind of node, indexed by
+     *  the ordinal of the corresponding Op.
+     */
+    private Rule[][] index;
+
+    /** All of the rules that are used by this rewriter.
+     */
+    private Rule[] rules;
+
+    /** Maps each expression that has already been visited to its normal
+     *  form.  (Each normal form is also mapped to itself.)
+     */
+    private IdentityHashMap<Expr, Expr> memo = new IdentityHashMap<Expr, Expr>();
+
+    /** Holds the bindings for the current match attempt.
+     */
+    private Match m = new Match();
+
+    /** Counts the number of rewrites that have been performed.
+     */
+    private int rewrites = 0;
+
+    /** An upper bound on the number of rewrites that will be performed,
+     *  protecting against nontermination for badly behaved rule sets.
+     */
+    private int limit;
+
+    /** Construct a rewriter using the standard set of rules.
+     */
+    public Rewriter() {
+        this(RewriteRules.standard(), 1000000);
+    }
+
+    /** Construct a rewriter for a given set of rules.
+     */
+    Rewriter(Rule[] rules, int limit) {
+        this.rules = rules;
+        this.limit = limit;
+        Op[] ops   = Op.values();
+        index      = new Rule[ops.length][];
+        for (int i=0; i<ops.length; i++) {
+            int n = 0;
+            for (int j=0; j<rules.length; j++) {
+                if (rules[j].getOp()==null || rules[j].getOp()==ops[i]) {
+                    n++;
+                }
+            }
+            index[i] = new Rule[n];
+            n        = 0;
+            for (int j=0; j<rules.length; j++) {
+                if (rules[j].getOp()==null || rules[j].getOp()==ops[i]) {
+                    index[i][n++] = rules[j];
+                }
+            }
+        }
+    }
+
+    /** Return the number of rewrites that have been performed so far.
+     */
+    public int getRewrites() {
+        return rewrites;
+    }
+
+    /** Return a printable summary of the number of times that each rule
+     *  has been used.
+     */
+    public String ruleStats() {
+        StringBuffer buf = new StringBuffer();
+        for (int i=0; i<rules.length; i++) {
+            if (rules[i].getUses()>0) {
+                buf.append(rules[i].getName());
+                buf.append('=');
+                buf.append(rules[i].getUses());
+                buf.append(' ');
+            }
+        }
+        return buf.toString().trim();
+    }
+
+    /** Rewrite the given expression to normal form.
+     */
+    Expr rewrite(Expr e) {
+        Expr done = memo.get(e);
+        if (done!=null) {
+            return done;
+        }
+        Expr r      = rewriteChildren(e);
+        Expr next   = (rewrites<limit) ? applyRules(r) : null;
+        Expr result = (next==null) ? r : rewrite(next);
+        memo.put(e, result);
+        memo.put(r, result);
+        memo.put(result, result);
+        return result;
+    }
+
+    /** Rewrite the subexpressions of e, returning either e itself, if
+     *  no changes were made, or else a new node of the same kind.
+     */
+    private Expr rewriteChildren(Expr e) {
+        if (e instanceof BinExpr) {
+            BinExpr b = (BinExpr)e;
+            Expr    l = rewrite(b.left);
+            Expr    r = rewrite(b.right);
+            return (l==b.left && r==b.right) ? e : e.op().make(e.pos, l, r);
+        } else if (e instanceof UnExpr) {
+            UnExpr u = (UnExpr)e;
+            Expr   x = rewrite(u.exp);
+            return (x==u.exp) ? e : e.op().make(e.pos, x, null);
+        }
+        return e;
+    }
+
+    /** Find the first rule that can be used to rewrite e, returning the
+     *  result of the rewrite, or null if there are no applicable rules.
+     */
+    private Expr applyRules(Expr e) {
+        Rule[] rs = index[e.op().ordinal()];
+        for (int i=0; i<rs.length; i++) {
+            Expr r = rs[i].apply(e, m);
+            if (r!=null) {
+                rewrites++;
+                return r;
+            }
+        }
+        return null;
+    }
+
+    /** Construct a literal of the given type, representing the Boolean
+     *  values false and true by 0 and 1, respectively.
+     */
+    static Expr literal(Position pos, Type type, int v) {
+        Expr e = (type==Type.BOOLEAN) ? new BoolLit(pos, v!=0)
+                                      : new IntLit(pos, v);
+        e.type = (type==Type.BOOLEAN) ? Type.BOOLEAN : Type.INT;
+        return e;
+    }
+
+    /** Test to see if two expressions are structurally equal.
+     */
+    static boolean same(Expr a, Expr b) {
+        if (a==b) {
+            return true;
+        } else if (a.op()!=b.op()) {
+            return false;
+        }
+        switch (a.op()) {
+            case ID      : return ((Id)a).sameVar((Id)b);
+            case INTLIT  : return ((IntLit)a).getNum()==((IntLit)b).getNum();
+            case BOOLLIT : return ((BoolLit)a).getValue()==((BoolLit)b).getValue();
+            default      :
+                if (a instanceof UnExpr) {
+                    return same(((UnExpr)a).exp, ((UnExpr)b).exp);
+                } else {
+                    BinExpr x = (BinExpr)a;
+                    BinExpr y = (BinExpr)b;
+                    return same(x.left, y.left) && same(x.right, y.right);
+                }
+        }
+    }
+
+    /** Test to see if an expression is free from side effects, and so
+     *  could be removed from a program without changing its behavior.
+     */
+    static boolean pure(Expr e) {
+        return e.getDepth()<Expr.DEEP;
+    }
+
+    /** Test to see if an expression is a literal.
+     */
+    static boolean isLiteral(Expr e) {
+        return e.op()==Op.INTLIT || e.op()==Op.BOOLLIT;
+    }
+
+    /** Compare two expressions, as part of a total ordering that is used
+     *  to put the arguments of commutative operators into a canonical
+     *  order.  Literals are placed after all other expressions, and the
+     *  remaining nodes are ordered by kind, then by variable name or
+     *  literal value, and then by their subexpressions.
+     */
+    static int compare(Expr a, Expr b) {
+        if (a==b) {
+            return 0;
+        }
+        Op  p = a.op();
+        Op  q = b.op();
+        int c = rank(p) - rank(q);
+        if (c!=0) {
+            return c;
+        }
+        switch (p) {
+            case ID :
+                return ((Id)a).getName().compareTo(((Id)b).getName());
+            case INTLIT :
+                return Integer.compare(((IntLit)a).getNum(), ((IntLit)b).getNum());
+            case BOOLLIT :
+                return Boolean.compare(((BoolLit)a).getValue(), ((BoolLit)b).getValue());
+            default :
+                if (a instanceof UnExpr) {
+                    return compare(((UnExpr)a).exp, ((UnExpr)b).exp);
+                } else {
+                    BinExpr x = (BinExpr)a;
+                    BinExpr y = (BinExpr)b;
+                    c = compare(x.left, y.left);
+                    return (c!=0) ? c : compare(x.right, y.right);
+                }
+        }
+    }
+
+    /** Return a rank for each kind of node; literals are given the highest
+     *  rank so that they will be moved to the right of other operands.
+     */
+    private static int rank(Op op) {
+        return (op==Op.INTLIT || op==Op.BOOLLIT) ? Op.values().length
+                                                 : op.ordinal();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Position;
+
+/** Represents a single rewrite rule, lhs ==> rhs, that can be used to
+ *  replace any expression matching the lhs pattern with a corresponding
+ *  instance of the rhs pattern.  Rules that should only be used under
+ *  certain conditions can override the when() method, while rules that
+ *  cannot be described by a pair of patterns can override apply().
+ */
+class Rule {
+
+    /** A short name for this rule, used in statistics output.
+     */
+    private String name;
+
+    /** The pattern that an expression must match for the rule to apply.
+     */
+    private Pattern lhs;
+
+    /** The pattern that describes the replacement expression.
+     */
+    private Pattern rhs;
+
+    /** Counts the number of times that this rule has been used.
+     */
+    private int uses = 0;
+
+    /** Default constructor.
+     */
+    Rule(String name, Pattern lhs, Pattern rhs) {
+        this.name = name;
+        this.lhs  = lhs;
+        this.rhs  = rhs;
+    }
+
+    /** Return the name of this rule.
+     */
+    String getName() {
+        return name;
+    }
+
+    /** Return the kind of node that this rule applies to, or null if
+     *  the rule could potentially apply to any kind of node.
+     */
+    Op getOp() {
+        return lhs.rootOp();
+    }
+
+    /** Return the number of times that this rule has been used.
+     */
+    int getUses() {
+        return uses;
+    }
+
+    /** Check that the side condition for this rule is satisfied by the
+     *  bindings in m.  By default, rules do not have side conditions.
+     */
+    boolean when(Match m) {
+        return true;
+    }
+
+    /** Attempt to apply this rule to the expression e, returning the
+     *  rewritten expression if the rule matches, or null otherwise.
+     */
+    Expr apply(Expr e, Match m) {
+        m.reset(e);
+        if (lhs.match(e, m) && when(m)) {
+            uses++;
+            return rhs.build(m, e);
+        }
+        return null;
+    }
+
+    /** Record a successful use of a rule that overrides apply().
+     */
+    void used() {
+        uses++;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+
+/** Represents an algorithm for simplifying expressions.  A simplifier
+ *  can be passed to the simplify() method of a statement to rewrite
+ *  each of the expressions that it contains.
+ */
+public abstract class Simplifier {
+
+    /** Rewrite the given expression, returning an equivalent expression
+     *  that should require less computation at runtime.
+     */
+    abstract Expr rewrite(Expr e);
+
+    /** Return the number of rewrites that have been performed so far.
+     */
+    public abstract int getRewrites();
+}
@@ -0,0 +1,44 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ast;
+import compiler.Failure;
+import compiler.Pass;
+
+/** An optimization pass that simplifies every expression in a program
+ *  using the rule-based Rewriter.
+ */
+public class SimplifyPass extends Pass<Stmt> {
+
+    /** Default constructor.
+     */
+    public SimplifyPass() {
+        super("simplify");
+    }
+
+    /** Run this pass on the given program, returning the number of
+     *  rewrites that were made.
+     */
+    public int run(Stmt prog) {
+        Rewriter rw = new Rewriter();
+        prog.simplify(rw);
+        return rw.getRewrites();
+    }
+}
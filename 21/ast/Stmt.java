@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** Abstract syntax for statements.
  */
@@ -53,6 +54,19 @@ public abstract class Stmt {
         elseStmt.printElse(out, n);
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    abstract void emitC(CEmitter out, int n);
+
+    /** Output a translation of this statement into C as the body of a
+     *  block whose braces have already been printed.  This is the same
+     *  as emitC() except for a Block, which omits its own braces.
+     */
+    void emitCBody(CEmitter out, int n) {
+        emitC(out, n);
+    }
+
     /** Print this statement as the "ifFalse" branch of an if-then-else
      *  having just printed the "else" keyword but no newline.  Again,
      *  this allows us to override the behavior for Blocks.
@@ -112,16 +126,88 @@ public abstract class Stmt {
      */
     public abstract VarSet analyze(InitAnalysis init, VarSet initialized);
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public abstract void simplify();
+    public abstract void simplify(Simplifier rw);
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public abstract void exec()
+    public abstract void exec(PrintSink out, Profile profile)
       throws Failure;
 
     /** Generate code for executing this statement.
      */
-    public abstract void compile(IA32 a, int pushed);
+    public abstract void compile(Backend a, int pushed);
+
+    /** Return the statements that are executed, in sequence, when this
+     *  statement is executed.  Code for the statements can then be
+     *  generated separately.
+     */
+    Stmt[] statements() {
+        return new Stmt[] { this };
+    }
+
+    /** Generate code for executing this statement, after which control
+     *  should continue at the label next.  This is used when jump threading
+     *  is enabled, and allows a statement that ends with a jump (such as the
+     *  true branch of an if) to jump straight to the final destination.  By
+     *  default, we compile the statement normally and then jump to next;
+     *  the backend drops the jump if next turns out to be the following label.
+     */
+    void compileTo(Backend a, int pushed, int next) {
+        compile(a, pushed);
+        a.jump(next);
+    }
+
+    /** Test to see if executing this statement has no effect at all.  By
+     *  default, we assume that a statement does something.
+     */
+    boolean isEmpty() {
+        return false;
+    }
+
+    /** Return next if executing this statement has no effect, so that a
+     *  branch to the start of the statement can go straight to next, or
+     *  -1 if the statement must be executed.
+     */
+    int skipTo(int next) {
+        return isEmpty() ? next : -1;
+    }
+
+    /** Find the if-then-else statements within this statement that can be
+     *  compiled using conditional moves instead of branches, returning the
+     *  number of statements that were newly selected for conversion.
+     */
+    int ifConvert(IfConversionPass ic) {
+        return 0;
+    }
+
+    /** Return the assignment that this statement consists of, or null if
+     *  it is not a single assignment.
+     */
+    Assign singleAssign() {
+        return null;
+    }
+
+    /** Record the variables that are used by this statement, and the
+     *  number of registers that its expressions need, as part of the
+     *  linear scan register allocation in ls.
+     */
+    void scan(LinearScan ls) {
+        // Most statements do not use any variables.
+    }
+
+    /** Generate JVM bytecode for executing this statement.  By default,
+     *  no code is needed (for declarations and empty statements).
+     */
+    void compileJVM(JVMEmitter c) {
+        // Nothing to do
+    }
+
+    /** Lower this statement to intermediate code, adding instructions
+     *  and blocks to the given builder.
+     */
+    public abstract void lower(Builder b);
 }
@@ -36,16 +36,15 @@ public class Sub extends BinArithExpr {
      */
     String label() { return "Sub"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.SUB; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { binary(out, "-"); }
 
-    /** Constant folding for binary operators with two known integer
-     *  arguments.
-     */
-    Expr fold(int n, int m) { return new IntLit(pos, n-m); }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -56,7 +55,14 @@ public class Sub extends BinArithExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
-        compileOp(a, "subl", pushed, free);
+    public void compileExpr(Backend a, int pushed, int free) {
+        compileOp(a, AsmOp.SUBL, pushed, free);
+    }
+
+    /** Generate code to update the variable lhs in place if this
+     *  expression has the form lhs - e.
+     */
+    boolean compileUpdate(Backend a, int pushed, Id lhs) {
+        return compileUpdateOp(a, AsmOp.SUBL, false, pushed, lhs);
     }
 }
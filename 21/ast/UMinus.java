@@ -36,16 +36,15 @@ public class UMinus extends UnArithExpr {
      */
     String label() { return "UMinus"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.UMINUS; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { unary(out, "-"); }
 
-    /** Constant folding for unary operators with a known integer
-     *  argument.
-     */
-    Expr fold(int n) { return new IntLit(pos, -n); }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -56,8 +55,8 @@ public class UMinus extends UnArithExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
+    public void compileExpr(Backend a, int pushed, int free) {
         exp.compileExpr(a, pushed, free);
-        a.emit("negl", a.reg(free));
+        a.emit(AsmOp.NEGL, a.reg(free));
     }
 }
@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for unary plus expressions.
  */
@@ -36,30 +38,15 @@ public class UPlus extends UnArithExpr {
      */
     String label() { return "UPlus"; }
 
+    /** Return the code that identifies the kind of this expression node.
+     */
+    Op op() { return Op.UPLUS; }
+
     /** Generate a pretty-printed description of this expression
      *  using the concrete syntax of the mini programming language.
      */
     public void print(TextOutput out) { unary(out, "+"); }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        return exp.simplify();
-    }
-
     /** Evaluate this expression.
      */
     public int eval()
@@ -70,8 +57,14 @@ public class UPlus extends UnArithExpr {
      *  in the specified free register, preserving any lower numbered
      *  registers in the process.
      */
-    public void compileExpr(IA32 a, int pushed, int free) {
+    public void compileExpr(Backend a, int pushed, int free) {
         // unary plus doesn't actually do anything!
         exp.compileExpr(a, pushed, free);
     }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return exp.lower(b);
+    }
 }
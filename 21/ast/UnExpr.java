@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
+import ir.Operand;
 
 /** Abstract syntax for unary expressions.
  */
@@ -37,6 +39,7 @@ public abstract class UnExpr extends Expr {
     
         // Compute the depth of this expression:
         depth = 1 + exp.getDepth();
+        need  = exp.getNeed();
     }
 
     /** Return a string that provides a simple description of this
@@ -61,6 +64,14 @@ public abstract class UnExpr extends Expr {
         exp.parenPrint(out);
     }
 
+    /** Output a translation of this expression into C.
+     */
+    void emitC(CEmitter out) {
+        out.print("(" + CEmitter.operator(op(), type));
+        exp.emitC(out);
+        out.print(")");
+    }
+
     /** Print out this expression, wrapping it in parentheses if the
      *  expression includes a binary or unary operand.
      */
@@ -107,32 +118,6 @@ public abstract class UnExpr extends Expr {
         return exp.analyze(init, initialized);
     }
 
-    /** Rewrite this expression using algebraic identities to reduce
-     *  the amount of computation that is required at runtime.  The
-     *  algorithms used here implement a range of useful optimizations
-     *  including, for example:
-     *     x + 0  ==>  x
-     *     n + m  ==>  (n+m)           if n,m are known integers
-     *     (x + n) +m ==>  x + (n+m)   if n,m are known integers
-     *  etc. with corresponding rules for *, &, |, and ^.  However,
-     *  there are still plenty of other opportunities for simplification,
-     *  including:
-     *    use of identities/constant folding on Booleans
-     *    removing double negations, complements, etc...
-     *    distributivity properties, such as (x+n)+(y+m) ==> (x+y)+(n+m)
-     *    and so on ...
-     */
-    Expr simplify() {
-        exp           = exp.simplify();
-        IntLit expInt = exp.isIntLit();
-        return (expInt==null) ? this : this.fold(expInt.getNum());
-    }
-
-    /** Constant folding for unary operators with a known integer
-     *  argument.
-     */
-    Expr fold(int n) { return this; }
-
     /** Return the depth of this expression as a measure of how complicated
      *  the expression is / how many registers will be needed to evaluate it.
      */
@@ -141,9 +126,41 @@ public abstract class UnExpr extends Expr {
         return depth;
     }
 
+    /** Return the number of registers that are needed to evaluate this
+     *  expression without spilling.
+     */
+    int getNeed() {
+        return need;
+    }
+
+    /** Records the number of registers that are needed to evaluate this
+     *  expression, computed by the constructor.
+     */
+    protected int need;
+
+    /** Record the variables that are used by this expression, and return
+     *  the number of registers that are needed to evaluate it.
+     */
+    int scan(LinearScan ls) {
+        return exp.scan(ls);
+    }
+
     /** Records the depth of this expression; this value is computed
      *  at the time the constructor is called and then saved here so
      *  that it can be accessed without further computation later on.
      */
     protected int depth;
+
+    /** Generate JVM bytecode that pushes the value of this expression.
+     */
+    void compileJVM(JVMEmitter c) {
+        exp.compileJVM(c);
+        c.unary(op(), type);
+    }
+
+    /** Lower this expression to intermediate code.
+     */
+    Operand lower(Builder b) {
+        return b.unary(op(), exp.lower(b));
+    }
 }
@@ -20,6 +20,7 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.Builder;
 
 /** Abstract syntax for variable declarations.
  */
@@ -70,6 +71,20 @@ public class VarDecl extends PosStmt {
         out.println(";");
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.  Both int and boolean variables are represented by ints.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n, "int ");
+        for (int i=0; i<vars.length; i++) {
+           if (i>0) {
+               out.print(", ");
+           }
+           out.printDef(vars[i]);
+        }
+        out.println(";");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -124,22 +139,36 @@ public class VarDecl extends PosStmt {
         return initialized; // No evaluation or initialization in a VarDecl
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
+    public void simplify(Simplifier rw) {
         /* nothing to simplify here */
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
         /* nothing to do */
     }
 
     /** Generate code for executing this statement.
      */
-    public void compile(IA32 a, int pushed) {
+    public void compile(Backend a, int pushed) {
+        /* no runtime effect (no initializer expressions) */
+    }
+
+    /** A declaration has no runtime effect, so it is treated as empty.
+     */
+    boolean isEmpty() {
+        return true;
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
         /* no runtime effect (no initializer expressions) */
     }
 }
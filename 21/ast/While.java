@@ -20,6 +20,8 @@
 package ast;
 import compiler.Failure;
 import compiler.Position;
+import ir.BasicBlock;
+import ir.Builder;
 
 /** Abstract syntax for while statements.
  */
@@ -63,6 +65,18 @@ public class While extends PosStmt {
         body.printElse(out, n);
     }
 
+    /** Output a translation of this statement into C, indented to
+     *  level n.
+     */
+    void emitC(CEmitter out, int n) {
+        out.indent(n, "while (");
+        test.emitC(out);
+        out.println(") {");
+        body.emitCBody(out, n+1);
+        out.indent(n);
+        out.println("}");
+    }
+
     /** Output a description of this node (with id n) in dot format,
      *  adding an extra node for each subtree.
      */
@@ -113,31 +127,157 @@ public class While extends PosStmt {
         return initialized;
     }
 
-    /** Attempt to simplify all of the expressions in this statement.
+    /** Attempt to simplify all of the expressions in this statement,
+     *  using the given simplifier.
      */
-    public void simplify() {
-        test = test.simplify();
-        body.simplify();
+    public void simplify(Simplifier rw) {
+        test = rw.rewrite(test);
+        body.simplify(rw);
     }
 
-    /** Execute this program.
+    /** Execute this program, writing its output to out and recording
+     *  the blocks that it runs in profile, if profile is not null.
      */
-    public void exec()
+    public void exec(PrintSink out, Profile profile)
       throws Failure {
+        if (profile!=null) {
+            profile.hit(pos, 0);
+        }
         while (test.eval()!=0) {
-            body.exec();
+            if (profile!=null) {
+                profile.hit(pos, 1);
+            }
+            body.exec(out, profile);
+            if (profile!=null) {
+                profile.hit(pos, 0);
+            }
         }
     }
 
-    /** Generate code for executing this statement.
+    /** Test to see if a profile shows that the body of this loop is so
+     *  rarely executed, compared with the test, that the loop should be
+     *  moved out of line.
+     */
+    private boolean isCold(Backend a) {
+        Profile profile = a.getProfile();
+        return profile!=null && profile.isCold(pos, 1);
+    }
+
+    /** Generate code for executing this statement.  If the body is cold,
+     *  then the loop is moved out of line, and entered only if a copy of
+     *  the test succeeds, so that the common path has no taken branches.
      */
-    public void compile(IA32 a, int pushed) {
-        String lab1 = a.newLabel();
-        String lab2 = a.newLabel();
-        a.emit("jmp", lab2);
+    public void compile(Backend a, int pushed) {
+        int lab1 = a.loopLabel(pos);
+        int lab2 = a.newLabel();
+        a.line(pos);
+        if (isCold(a)) {
+            int lab3 = a.newLabel();
+            a.line(test.pos);
+            a.count(pos, 0);
+            test.branchTrue(a, pushed, 0, lab1);
+            a.emitLabel(lab3);
+            a.defer(lab3, () -> {
+                a.emitLabel(lab1);
+                a.count(pos, 1);
+                body.compile(a, pushed);
+                a.emitLabel(lab2);
+                a.line(test.pos);
+                a.count(pos, 0);
+                test.branchTrue(a, pushed, 0, lab1);
+                a.jump(lab3);
+            });
+            return;
+        }
+        a.jump(lab2);
         a.emitLabel(lab1);
+        a.count(pos, 1);
         body.compile(a, pushed);
         a.emitLabel(lab2);
+        a.line(test.pos);
+        a.count(pos, 0);
+        test.branchTrue(a, pushed, 0, lab1);
+    }
+
+    /** Generate code for executing this statement and continuing at next.
+     *  The body continues directly at the test, so a conditional at the
+     *  end of the body does not need to jump to a separate join label.
+     */
+    void compileTo(Backend a, int pushed, int next) {
+        int lab1 = a.loopLabel(pos);
+        int lab2 = a.newLabel();
+        a.line(pos);
+        if (isCold(a)) {
+            a.line(test.pos);
+            a.count(pos, 0);
+            test.branchTrue(a, pushed, 0, lab1);
+            a.jump(next);
+            a.defer(next, () -> {
+                a.emitLabel(lab1);
+                a.count(pos, 1);
+                body.compileTo(a, pushed, lab2);
+                a.emitLabel(lab2);
+                a.line(test.pos);
+                a.count(pos, 0);
+                test.branchTrue(a, pushed, 0, lab1);
+                a.jump(next);
+            });
+            return;
+        }
+        a.jump(lab2);
+        a.emitLabel(lab1);
+        a.count(pos, 1);
+        body.compileTo(a, pushed, lab2);
+        a.emitLabel(lab2);
+        a.line(test.pos);
+        a.count(pos, 0);
         test.branchTrue(a, pushed, 0, lab1);
+        a.jump(next);
+    }
+
+    /** Record the variables that are used by this statement.  The test
+     *  and body are both inside the loop, and so are executed repeatedly.
+     */
+    void scan(LinearScan ls) {
+        ls.enterLoop();
+        ls.step();
+        ls.need(test.scan(ls));
+        body.scan(ls);
+        ls.exitLoop();
+    }
+
+    /** Find the if-then-else statements in the body of this loop that can
+     *  be compiled using conditional moves.
+     */
+    int ifConvert(IfConversionPass ic) {
+        return body.ifConvert(ic);
+    }
+
+    /** Generate JVM bytecode for executing this statement, with the test
+     *  at the end of the loop.
+     */
+    void compileJVM(JVMEmitter c) {
+        int lab1 = c.newLabel();
+        int lab2 = c.newLabel();
+        c.jump(lab2);
+        c.label(lab1);
+        body.compileJVM(c);
+        c.label(lab2);
+        test.branchTrueJVM(c, lab1);
+    }
+
+    /** Lower this statement to intermediate code.
+     */
+    public void lower(Builder b) {
+        BasicBlock head = b.newBlock();
+        BasicBlock loop = b.newBlock();
+        BasicBlock done = b.newBlock();
+        b.jump(head);
+        b.setBlock(head);
+        test.lowerBranch(b, loop, done);
+        b.setBlock(loop);
+        body.lower(b);
+        b.jump(head);
+        b.setBlock(done);
     }
 }
@@ -0,0 +1,151 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package ast;
+import java.io.PrintStream;
+
+/** Provides assembly language output for 64 bit x86 processors, using
+ *  the System V calling convention.  Values are still 32 bit ints, so
+ *  the code generators use the same instructions and 32 bit register
+ *  names as for IA32, but there are eight more registers, and the stack
+ *  is managed using 64 bit pushes, pops, and arithmetic.  The argument
+ *  for print is passed in %edi, and the stack is aligned on a 16 byte
+ *  boundary at every call.  No absolute addresses are used, so the output
+ *  can be linked into a position independent executable.
+ */
+public class X86_64 extends IA32 {
+
+    /** Default constructor.
+     */
+    public X86_64(PrintStream out) {
+        super(out, LINUX | ALIGN16, X86_64_REGS, X86_64_CALLEE_SAVED);
+    }
+
+    /** Construct an X86_64 assembly object using a given output filename.
+     */
+    public X86_64(String filename)
+      throws Exception {
+        super(new AsmBuffer(filename), LINUX | ALIGN16,
+              X86_64_REGS, X86_64_CALLEE_SAVED);
+    }
+
+    /** The registers that are used for evaluating expressions, with the
+     *  caller saved registers first.  %edx is reserved for division and
+     *  multiplication, so only %ebp (when the frame pointer is omitted)
+     *  and these thirteen registers are available for allocation.
+     */
+    private static final int[] X86_64_REGS
+        = { AsmOperand.EAX, AsmOperand.ECX, AsmOperand.ESI, AsmOperand.EDI,
+            AsmOperand.R8D, AsmOperand.R9D, AsmOperand.R10D, AsmOperand.R11D,
+            AsmOperand.EBX, AsmOperand.R12D, AsmOperand.R13D, AsmOperand.R14D,
+            AsmOperand.R15D };
+
+    /** The registers that are callee saved in the System V calling
+     *  convention.
+     */
+    private static final int[] X86_64_CALLEE_SAVED
+        = { AsmOperand.EBX, AsmOperand.R12D, AsmOperand.R13D, AsmOperand.R14D,
+            AsmOperand.R15D, AsmOperand.EBP };
+
+    /** Push and pop instructions, and return addresses, use 64 bits.
+     */
+    public int getWordSize() {
+        return 8;
+    }
+
+    /** Return the 64 bit register that contains the given 32 bit register,
+     *  or return the argument unchanged if it is not a register.
+     */
+    static long wide(long r) {
+        return AsmOperand.isReg(r) ? AsmOperand.wide(r) : r;
+    }
+
+    /** Output an instruction to push the value in a register on to the
+     *  stack.
+     */
+    protected void push(long reg) {
+        emit(AsmOp.PUSHQ, wide(reg));
+    }
+
+    /** Output an instruction to pop a value from the stack into a
+     *  register.
+     */
+    protected void pop(long reg) {
+        emit(AsmOp.POPQ, wide(reg));
+    }
+
+    /** Output an instruction that uses op to operate on full words.
+     */
+    protected void emitWord(AsmOp op, long src, long dst) {
+        emit(op.wide(), wide(src), wide(dst));
+    }
+
+    /** Return an operand that refers to the data at the given label,
+     *  which must be addressed relative to the instruction pointer.
+     */
+    protected long data(int lab) {
+        return AsmOperand.wide(super.data(lab));
+    }
+
+    /** Return the stack pointer register.
+     */
+    protected long stackPointer() {
+        return AsmOperand.wide(AsmOperand.reg(AsmOperand.ESP));
+    }
+
+    /** Return the frame pointer register.
+     */
+    protected long framePointer() {
+        return AsmOperand.wide(AsmOperand.reg(AsmOperand.EBP));
+    }
+
+    /** Return the low byte of reg(free).  Every register has a byte
+     *  register in 64 bit mode.
+     */
+    public long byteReg(int free) {
+        return AsmOperand.byteReg(regNum(free));
+    }
+
+    /** Insert the alignment bytes that are needed before a call to the
+     *  print function.  The argument is passed in a register, so nothing
+     *  else is pushed before the call.
+     */
+    public int printAdjust(int pushed) {
+        int adjust = alignmentAdjust(pushed);
+        insertAdjust(adjust);
+        return adjust;
+    }
+
+    /** Pass the value in src to the print function in %edi and call it,
+     *  then remove the adjust bytes that printAdjust() inserted.
+     */
+    public void callPrint(long src, int adjust) {
+        emit(AsmOp.MOVL, src, AsmOperand.reg(AsmOperand.EDI));
+        call("print", 0);
+        removeAdjust(adjust);
+    }
+
+    /** Output the prologue code section at the start of a function.  The
+     *  space for locals is rounded up to a multiple of eight bytes, so
+     *  that spills and the saved registers are aligned.
+     */
+    public int emitPrologue(int localBytes) {
+        return super.emitPrologue((localBytes + 7) & ~7);
+    }
+}
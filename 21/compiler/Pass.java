@@ -0,0 +1,71 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package compiler;
+
+/** Base class for optimization passes that transform a compilation unit
+ *  of type T (for example, an abstract syntax tree or an intermediate
+ *  code representation).  Each pass has a name, and can declare the
+ *  names of other passes that must run before it.
+ */
+public abstract class Pass<T> {
+
+    /** The name of this pass, which other passes use to refer to it.
+     */
+    private String name;
+
+    /** The names of the passes that must run before this one.
+     */
+    private String[] requires;
+
+    /** Construct a new pass with the given name and dependencies.
+     */
+    protected Pass(String name, String... requires) {
+        this.name     = name;
+        this.requires = requires;
+    }
+
+    /** Return the name of this pass.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /** Return the names of the passes that must run before this one.
+     */
+    public String[] getRequires() {
+        return requires;
+    }
+
+    /** Run this pass on the given unit, returning the number of rewrites
+     *  that were made.  A result of zero indicates that the unit was not
+     *  changed.
+     */
+    public abstract int run(T unit)
+      throws Failure;
+
+    /** Return a note about the runs of this pass so far, such as a limit
+     *  that stopped it early, to be printed with the -stats report, or
+     *  null if there is nothing to add.
+     */
+    public String getNote() {
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package compiler;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/** Runs a pipeline of optimization passes over a compilation unit.  Passes
+ *  are registered in order, but are reordered, if necessary, so that each
+ *  pass runs after the passes that it requires.  The whole pipeline is
+ *  repeated until a fixpoint is reached (no pass makes any changes), the
+ *  maximum number of rounds has been completed, or the total number of
+ *  rewrites exceeds a budget.  The wall clock time, bytes allocated, and
+ *  number of rewrites are recorded for each pass.
+ */
+public class PassManager<T> {
+
+    /** The passes in the pipeline, in the order that they are run.
+     */
+    private ArrayList<Pass<T>> passes = new ArrayList<Pass<T>>();
+
+    /** The maximum number of times that the pipeline is repeated.
+     */
+    private int maxRounds;
+
+    /** The number of rewrites after which no further rounds are started.
+     */
+    private int budget;
+
+    /** Construct a pass manager that will run for at most maxRounds
+     *  iterations of the pipeline and will stop once more than budget
+     *  rewrites have been made.
+     */
+    public PassManager(int maxRounds, int budget) {
+        this.maxRounds = maxRounds;
+        this.budget    = budget;
+    }
+
+    /** Add a pass to the end of the pipeline.
+     */
+    public PassManager<T> add(Pass<T> pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    /** Return the number of passes in the pipeline.
+     */
+    public int size() {
+        return passes.size();
+    }
+
+    /** The wall clock time, in nanoseconds, spent in each pass during the
+     *  most recent run, or null if the pipeline has not been run.
+     */
+    private long[] time;
+
+    /** The number of bytes allocated by each pass during the most recent
+     *  run.
+     */
+    private long[] alloc;
+
+    /** The number of rewrites made by each pass during the most recent
+     *  run.
+     */
+    private int[]  rewrites;
+
+    /** The number of rounds of the pipeline in the most recent run.
+     */
+    private int    rounds;
+
+    /** Return the passes in an order that satisfies their dependencies,
+     *  keeping the registration order wherever possible.  A failure is
+     *  reported if a required pass is missing or if the dependencies are
+     *  cyclic.
+     */
+    private ArrayList<Pass<T>> schedule()
+      throws Failure {
+        ArrayList<Pass<T>> order = new ArrayList<Pass<T>>();
+        while (order.size()<passes.size()) {
+            Pass<T> next = null;
+            for (int i=0; i<passes.size() && next==null; i++) {
+                Pass<T> p = passes.get(i);
+                if (!order.contains(p) && ready(p, order)) {
+                    next = p;
+                }
+            }
+            if (next==null) {
+                throw new Failure("Cyclic dependencies between optimization passes");
+            }
+            order.add(next);
+        }
+        return order;
+    }
+
+    /** Test to see if all of the passes that p requires are in order.
+     */
+    private boolean ready(Pass<T> p, ArrayList<Pass<T>> order)
+      throws Failure {
+        String[] reqs = p.getRequires();
+        for (int i=0; i<reqs.length; i++) {
+            if (find(reqs[i], passes)==null) {
+                throw new Failure("Optimization pass " + p.getName()
+                                  + " requires missing pass " + reqs[i]);
+            } else if (find(reqs[i], order)==null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Find a pass with the given name in a list of passes.
+     */
+    private Pass<T> find(String name, ArrayList<Pass<T>> ps) {
+        for (int i=0; i<ps.size(); i++) {
+            if (ps.get(i).getName().equals(name)) {
+                return ps.get(i);
+            }
+        }
+        return null;
+    }
+
+    /** Run the pipeline on the given unit, returning the total number of
+     *  rewrites that were made.
+     */
+    public int run(T unit)
+      throws Failure {
+        passes   = schedule();
+        time     = new long[passes.size()];
+        alloc    = new long[passes.size()];
+        rewrites = new int[passes.size()];
+        rounds   = 0;
+        int total = 0;
+        while (rounds<maxRounds && total<=budget) {
+            rounds++;
+            int changes = 0;
+            for (int i=0; i<passes.size(); i++) {
+                long t0 = System.nanoTime();
+                long a0 = allocated();
+                int  n  = passes.get(i).run(unit);
+                alloc[i]    += allocated() - a0;
+                time[i]     += System.nanoTime() - t0;
+                rewrites[i] += n;
+                changes     += n;
+            }
+            total += changes;
+            if (changes==0) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /** Return the number of bytes that have been allocated by the current
+     *  thread, or zero if this information is not available on this JVM.
+     */
+    private static long allocated() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean)
+                   .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /** Print a summary of the time, allocation and rewrites for each pass
+     *  in the most recent run.
+     */
+    public void report(PrintStream out) {
+        if (time==null) {
+            return;
+        }
+        out.println("Pass             time(ms)     alloc(KB)  rewrites");
+        for (int i=0; i<passes.size(); i++) {
+            out.println(String.format("%-14s %10.3f %13d %9d",
+                                      passes.get(i).getName(),
+                                      time[i]/1e6,
+                                      alloc[i]/1024,
+                                      rewrites[i]));
+        }
+        out.println("(" + rounds + " round" + (rounds==1 ? "" : "s") + ")");
+        for (int i=0; i<passes.size(); i++) {
+            String note = passes.get(i).getNote();
+            if (note!=null) {
+                out.println(passes.get(i).getName() + ": " + note);
+            }
+        }
+    }
+}
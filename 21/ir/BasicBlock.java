@@ -0,0 +1,102 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import java.util.ArrayList;
+
+/** Represents a basic block: a sequence of phi functions and instructions
+ *  that is always executed from start to finish, ending with a terminator
+ *  that passes control to the successor blocks.
+ */
+public class BasicBlock {
+
+    /** A unique number for this block within its function.
+     */
+    private int id;
+
+    /** The phi functions at the start of this block.
+     */
+    ArrayList<Phi> phis = new ArrayList<Phi>();
+
+    /** The instructions in this block, not including the terminator.
+     */
+    ArrayList<Instr> code = new ArrayList<Instr>();
+
+    /** The instruction that ends this block.
+     */
+    Term term;
+
+    /** The predecessors of this block.  The order of this list matches
+     *  the order of the arguments of each phi function.
+     */
+    ArrayList<BasicBlock> preds = new ArrayList<BasicBlock>();
+
+    /** The immediate dominator of this block.
+     */
+    BasicBlock idom;
+
+    /** The blocks that this block immediately dominates.
+     */
+    ArrayList<BasicBlock> children = new ArrayList<BasicBlock>();
+
+    /** The dominance frontier of this block.
+     */
+    ArrayList<BasicBlock> frontier = new ArrayList<BasicBlock>();
+
+    /** The position of this block in a reverse postorder traversal.
+     */
+    int rpo;
+
+    /** Default constructor.
+     */
+    BasicBlock(int id) {
+        this.id = id;
+    }
+
+    /** Return the unique number for this block.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /** Return the successors of this block.
+     */
+    public BasicBlock[] succs() {
+        return term.succs;
+    }
+
+    /** Remove the predecessor p, and the corresponding phi arguments.
+     */
+    void removePred(BasicBlock p) {
+        int i = preds.indexOf(p);
+        if (i>=0) {
+            preds.remove(i);
+            for (int j=0; j<phis.size(); j++) {
+                phis.get(j).removeArg(i);
+            }
+        }
+    }
+
+    /** Return a printable name for this block.
+     */
+    public String toString() {
+        return "b" + id;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.AsmOp;
+import ast.Backend;
+import ast.Op;
+
+/** Represents a binary operation, dest = l op r.  Comparisons produce a
+ *  Boolean result of 0 or 1.  The logical operators && and || are not
+ *  used here because they are lowered to control flow.
+ */
+public class BinOp extends Instr {
+
+    /** The operator for this instruction.
+     */
+    private Op op;
+
+    /** Default constructor.
+     */
+    BinOp(Temp dest, Op op, Operand l, Operand r) {
+        super(dest, new Operand[] { l, r });
+        this.op = op;
+    }
+
+    /** Return the operator for this instruction.
+     */
+    public Op getOp() {
+        return op;
+    }
+
+    /** Test to see if this instruction is a comparison.
+     */
+    boolean isComparison() {
+        return cc(op)!=null;
+    }
+
+    /** Return the IA32 conditional jump that is taken when a comparison
+     *  operator is true, or null if op is not a comparison.
+     */
+    static AsmOp cc(Op op) {
+        switch (op) {
+            case LT  : return AsmOp.JL;
+            case LTE : return AsmOp.JLE;
+            case GT  : return AsmOp.JG;
+            case GTE : return AsmOp.JGE;
+            case EQL : return AsmOp.JE;
+            case NEQ : return AsmOp.JNE;
+            default  : return null;
+        }
+    }
+
+    /** A division can trap if its divisor might be zero.
+     */
+    boolean hasEffect() {
+        if (op==Op.DIV) {
+            Const d = args[1].isConst();
+            return d==null || d.getValue()==0;
+        }
+        return false;
+    }
+
+    /** Return the value that this instruction computes if both of its
+     *  operands are constants.
+     */
+    Const fold() {
+        Const l = args[0].isConst();
+        Const r = args[1].isConst();
+        if (l==null || r==null) {
+            return null;
+        }
+        int x = l.getValue();
+        int y = r.getValue();
+        switch (op) {
+            case ADD  : return new Const(x + y);
+            case SUB  : return new Const(x - y);
+            case MUL  : return new Const(x * y);
+            case DIV  : return (y==0) ? null : new Const(x / y);
+            case BAND : return new Const(x & y);
+            case BOR  : return new Const(x | y);
+            case BXOR : return new Const(x ^ y);
+            case LT   : return bool(x <  y);
+            case LTE  : return bool(x <= y);
+            case GT   : return bool(x >  y);
+            case GTE  : return bool(x >= y);
+            case EQL  : return bool(x == y);
+            case NEQ  : return bool(x != y);
+            default   : return null;
+        }
+    }
+
+    /** Return a constant for a Boolean value.
+     */
+    static Const bool(boolean b) {
+        return new Const(b ? 1 : 0);
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return dest + " = " + args[0] + " " + op + " " + args[1];
+    }
+
+    /** Generate assembly code for this instruction.  A comparison whose
+     *  only use is the branch at the end of the same block just sets the
+     *  flags, leaving the branch to test them directly.
+     */
+    void compile(CodeGen g) {
+        Backend a   = g.getTarget();
+        long    eax = a.reg(0);
+        a.emit(AsmOp.MOVL, args[0].asm(g), eax);
+        switch (op) {
+            case ADD  : a.emit(AsmOp.ADDL,  args[1].asm(g), eax); break;
+            case SUB  : a.emit(AsmOp.SUBL,  args[1].asm(g), eax); break;
+            case MUL  :
+                Const k = args[1].isConst();
+                if (k!=null) {
+                    a.multiplyConst(0, k.getValue());
+                } else {
+                    a.emit(AsmOp.IMULL, args[1].asm(g), eax);
+                }
+                break;
+            case BAND : a.emit(AsmOp.ANDL,  args[1].asm(g), eax); break;
+            case BOR  : a.emit(AsmOp.ORL,   args[1].asm(g), eax); break;
+            case BXOR : a.emit(AsmOp.XORL,  args[1].asm(g), eax); break;
+            case DIV  :
+                Const d = args[1].isConst();
+                if (d!=null && d.getValue()!=0) {
+                    a.divideConst(0, d.getValue(), g.getPushed());
+                } else {
+                    a.emit(AsmOp.MOVL, args[1].asm(g), a.reg(1));
+                    a.divide(0);
+                }
+                break;
+            default   :
+                a.emit(AsmOp.CMPL, args[1].asm(g), eax);
+                if (g.isFused(this)) {
+                    return;
+                }
+                a.emit(cc(op).set(), a.byteReg(0));
+                a.emit(AsmOp.MOVZBL, a.byteReg(0), eax);
+        }
+        a.emit(AsmOp.MOVL, eax, dest.asm(g));
+    }
+}
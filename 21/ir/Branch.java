@@ -0,0 +1,80 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.AsmOp;
+import ast.Backend;
+
+/** Represents a conditional branch, which passes control to the first
+ *  successor if the condition is nonzero, and to the second otherwise.
+ */
+public class Branch extends Term {
+
+    /** Default constructor.
+     */
+    Branch(Operand cond, BasicBlock ifTrue, BasicBlock ifFalse) {
+        super(new Operand[] { cond }, new BasicBlock[] { ifTrue, ifFalse });
+    }
+
+    /** A branch on a constant can be replaced by a jump.
+     */
+    Term simplify() {
+        Const c = args[0].isConst();
+        if (c!=null) {
+            return new Jump(succs[c.getValue()!=0 ? 0 : 1]);
+        }
+        return this;
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return "branch " + args[0] + " " + succs[0] + " " + succs[1];
+    }
+
+    /** Generate assembly code for this instruction.  If the condition was
+     *  computed by a comparison that left its result in the flags, then we
+     *  can test the flags directly.  The jump is inverted when the true
+     *  successor is the next block in the layout.  A branch on a constant
+     *  that was not simplified away (because no pass has run since the
+     *  constant was propagated into it) becomes a jump, as there is no
+     *  instruction that compares two immediates.
+     */
+    void compile(CodeGen g) {
+        Const c = args[0].isConst();
+        if (c!=null) {
+            g.jumpTo(succs[c.getValue()!=0 ? 0 : 1]);
+            return;
+        }
+        Backend a  = g.getTarget();
+        AsmOp   cc = g.fusedCondition();
+        AsmOp   nc = (cc==null) ? AsmOp.JE : cc.invert();
+        if (cc==null) {
+            a.emit(AsmOp.CMPL, a.immed(0), args[0].asm(g));
+            cc = AsmOp.JNE;
+        }
+        if (g.isNext(succs[0])) {
+            a.branch(nc, g.label(succs[1]));
+        } else {
+            a.branch(cc, g.label(succs[0]));
+            g.jumpTo(succs[1]);
+        }
+    }
+}
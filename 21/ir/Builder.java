@@ -0,0 +1,151 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.Op;
+import ast.Stmt;
+import java.util.IdentityHashMap;
+
+/** Provides the operations that are used to lower an abstract syntax tree
+ *  to intermediate code.  Each source variable is represented by a single
+ *  temporary that may be assigned many times; the translation to SSA form
+ *  then gives each assignment a temporary of its own.
+ */
+public class Builder {
+
+    /** The function that is being constructed.
+     */
+    private Function fn;
+
+    /** The block to which new instructions are added.
+     */
+    private BasicBlock current;
+
+    /** Maps each source variable to the temporary that represents it.
+     */
+    private IdentityHashMap<Object, Temp> vars = new IdentityHashMap<Object, Temp>();
+
+    /** Construct a builder for the given function.
+     */
+    public Builder(Function fn) {
+        this.fn  = fn;
+        fn.entry = current = fn.newBlock();
+    }
+
+    /** Lower the given program to intermediate code for a function with
+     *  the specified name.
+     */
+    public static Function lower(String name, Stmt prog) {
+        Builder b = new Builder(new Function(name));
+        prog.lower(b);
+        return b.finish();
+    }
+
+    /** Return the temporary for a source variable.  The key object must
+     *  be unique to the variable (for example, its environment entry).
+     */
+    public Temp var(Object key, String name) {
+        Temp t = vars.get(key);
+        if (t==null) {
+            t = fn.newTemp(name);
+            vars.put(key, t);
+        }
+        return t;
+    }
+
+    /** Return a new temporary for an intermediate value.
+     */
+    public Temp newTemp() {
+        return fn.newTemp(null);
+    }
+
+    /** Return a new basic block.
+     */
+    public BasicBlock newBlock() {
+        return fn.newBlock();
+    }
+
+    /** Make b the block to which new instructions will be added.
+     */
+    public void setBlock(BasicBlock b) {
+        current = b;
+    }
+
+    /** Add a binary operation, returning its result.
+     */
+    public Operand binary(Op op, Operand l, Operand r) {
+        Temp t = newTemp();
+        current.code.add(new BinOp(t, op, l, r));
+        return t;
+    }
+
+    /** Add a unary operation, returning its result.
+     */
+    public Operand unary(Op op, Operand a) {
+        Temp t = newTemp();
+        current.code.add(new UnOp(t, op, a));
+        return t;
+    }
+
+    /** Add a copy instruction.
+     */
+    public void copy(Temp dest, Operand src) {
+        current.code.add(new Copy(dest, src));
+    }
+
+    /** Add a call to the print primitive.
+     */
+    public void print(Operand a) {
+        current.code.add(new PrintInstr(a));
+    }
+
+    /** End the current block with a jump to b.
+     */
+    public void jump(BasicBlock b) {
+        terminate(new Jump(b));
+    }
+
+    /** End the current block with a branch to ifTrue if cond is nonzero,
+     *  and to ifFalse otherwise.
+     */
+    public void branch(Operand cond, BasicBlock ifTrue, BasicBlock ifFalse) {
+        if (ifTrue==ifFalse) {
+            jump(ifTrue);
+        } else {
+            terminate(new Branch(cond, ifTrue, ifFalse).simplify());
+        }
+    }
+
+    /** Set the terminator for the current block.
+     */
+    private void terminate(Term t) {
+        if (current.term==null) {
+            current.term = t;
+        }
+    }
+
+    /** Finish the function by adding a return at the end of the current
+     *  block, and return the completed function.
+     */
+    public Function finish() {
+        terminate(new Return());
+        return fn;
+    }
+}
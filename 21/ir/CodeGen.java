@@ -0,0 +1,209 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.AsmOp;
+import ast.Backend;
+import ast.IA32;
+import java.util.ArrayList;
+
+/** Generates IA32 assembly code from intermediate code that has been
+ *  translated out of SSA form.  Every temporary is given its own slot in
+ *  the stack frame, and registers are used only within instructions.  A
+ *  comparison that is only used by the branch that follows it is combined
+ *  with the branch, and jumps to the next block in the layout are omitted.
+ */
+public class CodeGen {
+
+    /** The target that is used to output instructions.
+     */
+    private Backend a;
+
+    /** The frame offset for each temporary, indexed by id.
+     */
+    private int[] slots;
+
+    /** The label for each basic block, indexed by id.
+     */
+    private int[] labels;
+
+    /** The number of bytes that are on the stack in the body of the
+     *  function.
+     */
+    private int pushed;
+
+    /** Counts the uses of each temporary, indexed by id.
+     */
+    private int[] uses;
+
+    /** The block that follows the block that is being compiled, or null.
+     */
+    private BasicBlock next;
+
+    /** A comparison whose result is left in the flags for the branch at
+     *  the end of the current block, or null if there is no such
+     *  comparison.
+     */
+    private BinOp fused;
+
+    /** Default constructor.
+     */
+    public CodeGen(Backend a) {
+        this.a = a;
+    }
+
+    /** Return the target for this code generator.
+     */
+    Backend getTarget() {
+        return a;
+    }
+
+    /** Return the number of bytes that are on the stack.
+     */
+    int getPushed() {
+        return pushed;
+    }
+
+    /** Record that n more bytes have been pushed on to the stack (or
+     *  removed, if n is negative).
+     */
+    void adjustPushed(int n) {
+        pushed += n;
+    }
+
+    /** Output assembly code for the given function.
+     */
+    public void generateAssembly(String name, Function f) {
+        a.emitEntry(name, f.getName());
+        labels = new int[f.getNumBlocks()];
+        for (int i=0; i<f.blocks.size(); i++) {
+            labels[f.blocks.get(i).getId()] = a.newLabel();
+        }
+        a.setNumTemps(2);                // Only %eax and reg(1) are used
+        a.saveTemps();
+        pushed = a.emitPrologue(allocate(f));
+        countUses(f);
+        ArrayList<BasicBlock> blocks = f.blocks;
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            next         = (i+1<blocks.size()) ? blocks.get(i+1) : null;
+            fused        = fusable(b);
+            a.emitLabel(label(b));
+            for (int j=0; j<b.code.size(); j++) {
+                b.code.get(j).compile(this);
+            }
+            b.term.compile(this);
+        }
+        a.emitDivideByZero();
+        a.close();
+    }
+
+    /** Assign a stack slot to every temporary that is defined in f,
+     *  returning the total number of bytes that are required.
+     */
+    private int allocate(Function f) {
+        slots     = new int[f.getNumTemps()];
+        int bytes = 0;
+        for (int i=0; i<f.blocks.size(); i++) {
+            ArrayList<Instr> code = f.blocks.get(i).code;
+            for (int j=0; j<code.size(); j++) {
+                Temp t = code.get(j).dest;
+                if (t!=null && slots[t.getId()]==0) {
+                    bytes += IA32.WORDSIZE;
+                    slots[t.getId()] = -bytes;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /** Count the number of uses of each temporary in f.
+     */
+    private void countUses(Function f) {
+        uses = new int[f.getNumTemps()];
+        for (int i=0; i<f.blocks.size(); i++) {
+            BasicBlock b = f.blocks.get(i);
+            for (int j=0; j<=b.code.size(); j++) {
+                Instr is = (j<b.code.size()) ? b.code.get(j) : b.term;
+                for (int k=0; k<is.args.length; k++) {
+                    Temp t = is.args[k].isTemp();
+                    if (t!=null) {
+                        uses[t.getId()]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the comparison at the end of b that can be combined with the
+     *  branch that ends b, or null if there is no such comparison.
+     */
+    private BinOp fusable(BasicBlock b) {
+        if (b.term instanceof Branch && !b.code.isEmpty()) {
+            Instr last = b.code.get(b.code.size()-1);
+            Temp  cond = b.term.args[0].isTemp();
+            if (last instanceof BinOp && ((BinOp)last).isComparison()
+                && cond!=null && last.dest==cond && uses[cond.getId()]==1) {
+                return (BinOp)last;
+            }
+        }
+        return null;
+    }
+
+    /** Test to see if the given comparison is combined with a branch.
+     */
+    boolean isFused(BinOp is) {
+        return is==fused;
+    }
+
+    /** Return the conditional jump for a comparison that has been combined
+     *  with the branch at the end of the current block, or null if there
+     *  is no such comparison.
+     */
+    AsmOp fusedCondition() {
+        return (fused==null) ? null : BinOp.cc(fused.getOp());
+    }
+
+    /** Return the location of a temporary in the stack frame.
+     */
+    long slot(Temp t) {
+        return a.local(slots[t.getId()], pushed);
+    }
+
+    /** Return the label for a block.
+     */
+    int label(BasicBlock b) {
+        return labels[b.getId()];
+    }
+
+    /** Test to see if b is the next block in the layout.
+     */
+    boolean isNext(BasicBlock b) {
+        return b==next;
+    }
+
+    /** Output a jump to b, unless b is the next block in the layout.
+     */
+    void jumpTo(BasicBlock b) {
+        if (b!=next) {
+            a.jump(label(b));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents a constant operand.  Boolean values are represented by 0
+ *  (false) and 1 (true).
+ */
+public class Const extends Operand {
+
+    /** The value of this constant.
+     */
+    private int value;
+
+    /** Default constructor.
+     */
+    public Const(int value) {
+        this.value = value;
+    }
+
+    /** Return the value of this constant.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /** Return this operand as a constant.
+     */
+    public Const isConst() {
+        return this;
+    }
+
+    /** Return a printable description of this constant.
+     */
+    public String toString() {
+        return Integer.toString(value);
+    }
+
+    /** Return the assembly language form of this operand.
+     */
+    long asm(CodeGen g) {
+        return g.getTarget().immed(value);
+    }
+}
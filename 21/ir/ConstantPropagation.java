@@ -0,0 +1,94 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import compiler.Pass;
+import java.util.ArrayList;
+
+/** An optimization pass that propagates constants through a function in
+ *  SSA form.  Instructions whose operands are all constants are replaced
+ *  by their values, phi functions whose arguments are all the same are
+ *  removed, branches on constants become jumps, and any blocks that can
+ *  no longer be reached are deleted.  The blocks are visited in reverse
+ *  postorder, so each definition (other than a phi in a loop header) is
+ *  seen before its uses, and a single sweep usually reaches a fixpoint.
+ */
+public class ConstantPropagation extends Pass<Function> {
+
+    /** Default constructor.
+     */
+    public ConstantPropagation() {
+        super("constprop", "copyprop");
+    }
+
+    /** Run this pass on the given function, returning the number of
+     *  instructions that were removed or simplified.
+     */
+    public int run(Function f) {
+        int     count   = 0;
+        boolean changed = true;
+        while (changed) {
+            changed         = false;
+            Operand[] subst = new Operand[f.getNumTemps()];
+            for (int i=0; i<f.blocks.size(); i++) {
+                BasicBlock b = f.blocks.get(i);
+                for (int j=0; j<b.phis.size(); j++) {
+                    Phi phi = b.phis.get(j);
+                    phi.substitute(subst);
+                    Operand v = phi.same();
+                    if (v!=null && v.isConst()!=null) {
+                        subst[phi.dest.getId()] = v;
+                        b.phis.remove(j--);
+                        count++;
+                    }
+                }
+                ArrayList<Instr> code = b.code;
+                for (int j=0; j<code.size(); j++) {
+                    Instr is = code.get(j);
+                    is.substitute(subst);
+                    Const c = is.fold();
+                    if (c!=null) {
+                        subst[is.dest.getId()] = c;
+                        code.remove(j--);
+                        count++;
+                    }
+                }
+                b.term.substitute(subst);
+                Term t = b.term.simplify();
+                if (t!=b.term) {
+                    BasicBlock[] old = b.term.succs;
+                    for (int j=0; j<old.length; j++) {
+                        if (old[j]!=t.succs[0]) {
+                            old[j].removePred(b);
+                        }
+                    }
+                    b.term  = t;
+                    changed = true;
+                    count++;
+                }
+            }
+            changed |= f.substitute(subst);
+            if (changed) {
+                f.order();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.AsmOp;
+import ast.Backend;
+
+/** Represents a copy instruction, dest = src.
+ */
+public class Copy extends Instr {
+
+    /** Default constructor.
+     */
+    Copy(Temp dest, Operand src) {
+        super(dest, new Operand[] { src });
+    }
+
+    /** Return the source operand for this copy.
+     */
+    public Operand getSrc() {
+        return args[0];
+    }
+
+    /** Return the value of this copy if its source is a constant.
+     */
+    Const fold() {
+        return args[0].isConst();
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return dest + " = " + args[0];
+    }
+
+    /** Generate assembly code for this instruction.
+     */
+    void compile(CodeGen g) {
+        Backend a = g.getTarget();
+        if (args[0].isConst()!=null) {
+            a.emit(AsmOp.MOVL, args[0].asm(g), dest.asm(g));
+        } else {
+            a.emit(AsmOp.MOVL, args[0].asm(g), a.reg(0));
+            a.emit(AsmOp.MOVL, a.reg(0), dest.asm(g));
+        }
+    }
+}
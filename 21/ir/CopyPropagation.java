@@ -0,0 +1,67 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import compiler.Pass;
+
+/** An optimization pass that removes copies from a function in SSA form,
+ *  replacing each use of the destination with the source.  Phi functions
+ *  whose arguments are all the same are treated as copies.
+ */
+public class CopyPropagation extends Pass<Function> {
+
+    /** Default constructor.
+     */
+    public CopyPropagation() {
+        super("copyprop");
+    }
+
+    /** Run this pass on the given function, returning the number of
+     *  copies that were removed.
+     */
+    public int run(Function f) {
+        int       count = 0;
+        Operand[] subst = new Operand[f.getNumTemps()];
+        for (int i=0; i<f.blocks.size(); i++) {
+            BasicBlock b = f.blocks.get(i);
+            for (int j=0; j<b.phis.size(); j++) {
+                Phi     phi = b.phis.get(j);
+                Operand v   = phi.same();
+                if (v!=null) {
+                    subst[phi.dest.getId()] = v;
+                    b.phis.remove(j--);
+                    count++;
+                }
+            }
+            for (int j=0; j<b.code.size(); j++) {
+                Instr is = b.code.get(j);
+                if (is instanceof Copy) {
+                    subst[is.dest.getId()] = is.args[0];
+                    b.code.remove(j--);
+                    count++;
+                }
+            }
+        }
+        if (count>0) {
+            f.substitute(subst);
+        }
+        return count;
+    }
+}
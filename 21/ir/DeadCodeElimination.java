@@ -0,0 +1,95 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import compiler.Pass;
+import java.util.ArrayList;
+
+/** An optimization pass that removes instructions (including phi
+ *  functions) whose results are never needed.  Instructions with effects
+ *  are marked as live, and then, working backwards, so is every
+ *  instruction that defines an operand of a live instruction.  Everything
+ *  else is deleted, including cycles of phi functions that only use each
+ *  other.
+ */
+public class DeadCodeElimination extends Pass<Function> {
+
+    /** Default constructor.
+     */
+    public DeadCodeElimination() {
+        super("dce");
+    }
+
+    /** Run this pass on the given function, returning the number of
+     *  instructions that were removed.
+     */
+    public int run(Function f) {
+        int              n     = f.getNumTemps();
+        Instr[]          defs  = new Instr[n];
+        boolean[]        live  = new boolean[n];
+        ArrayList<Instr> work  = new ArrayList<Instr>();
+        for (int i=0; i<f.blocks.size(); i++) {
+            BasicBlock b = f.blocks.get(i);
+            for (int j=0; j<b.phis.size(); j++) {
+                defs[b.phis.get(j).dest.getId()] = b.phis.get(j);
+            }
+            for (int j=0; j<b.code.size(); j++) {
+                Instr is = b.code.get(j);
+                if (is.dest!=null) {
+                    defs[is.dest.getId()] = is;
+                }
+                if (is.hasEffect()) {
+                    work.add(is);
+                }
+            }
+            work.add(b.term);
+        }
+        while (!work.isEmpty()) {
+            Instr is = work.remove(work.size()-1);
+            for (int k=0; k<is.args.length; k++) {
+                Temp t = is.args[k].isTemp();
+                if (t!=null && !live[t.getId()]) {
+                    live[t.getId()] = true;
+                    if (defs[t.getId()]!=null) {
+                        work.add(defs[t.getId()]);
+                    }
+                }
+            }
+        }
+        int count = 0;
+        for (int i=0; i<f.blocks.size(); i++) {
+            BasicBlock b = f.blocks.get(i);
+            for (int j=0; j<b.phis.size(); j++) {
+                if (!live[b.phis.get(j).dest.getId()]) {
+                    b.phis.remove(j--);
+                    count++;
+                }
+            }
+            for (int j=0; j<b.code.size(); j++) {
+                Instr is = b.code.get(j);
+                if (is.dest!=null && !live[is.dest.getId()] && !is.hasEffect()) {
+                    b.code.remove(j--);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import java.util.ArrayList;
+
+/** Calculates the dominator tree and dominance frontiers for a function,
+ *  using the iterative algorithm of Cooper, Harvey, and Kennedy ("A Simple,
+ *  Fast Dominance Algorithm").  The results are stored in the idom,
+ *  children, and frontier fields of each block.
+ */
+class Dominance {
+
+    /** Compute dominance information for f.  The blocks of f must already
+     *  be in reverse postorder (see Function.order()).
+     */
+    static void compute(Function f) {
+        ArrayList<BasicBlock> blocks = f.blocks;
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            b.idom = null;
+            b.children.clear();
+            b.frontier.clear();
+        }
+        f.entry.idom    = f.entry;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i=1; i<blocks.size(); i++) {
+                BasicBlock b    = blocks.get(i);
+                BasicBlock idom = null;
+                for (int j=0; j<b.preds.size(); j++) {
+                    BasicBlock p = b.preds.get(j);
+                    if (p.idom!=null) {
+                        idom = (idom==null) ? p : intersect(p, idom);
+                    }
+                }
+                if (idom!=b.idom) {
+                    b.idom  = idom;
+                    changed = true;
+                }
+            }
+        }
+        for (int i=1; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            b.idom.children.add(b);
+        }
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            if (b.preds.size()>=2) {
+                for (int j=0; j<b.preds.size(); j++) {
+                    for (BasicBlock r=b.preds.get(j); r!=b.idom; r=r.idom) {
+                        if (!r.frontier.contains(b)) {
+                            r.frontier.add(b);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Find the nearest common dominator of two blocks, by walking up the
+     *  (partially constructed) dominator tree.
+     */
+    private static BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a!=b) {
+            while (a.rpo>b.rpo) {
+                a = a.idom;
+            }
+            while (b.rpo>a.rpo) {
+                b = b.idom;
+            }
+        }
+        return a;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/** Represents the intermediate code for a function as a control flow
+ *  graph of basic blocks.
+ */
+public class Function {
+
+    /** The name of this function.
+     */
+    private String name;
+
+    /** The entry block for this function.
+     */
+    BasicBlock entry;
+
+    /** The blocks in this function.  After a call to order(), the blocks
+     *  are listed in reverse postorder, which is also the layout that is
+     *  used by the code generator.
+     */
+    ArrayList<BasicBlock> blocks = new ArrayList<BasicBlock>();
+
+    /** Counts the number of temporaries that have been allocated.
+     */
+    private int numTemps = 0;
+
+    /** Counts the number of blocks that have been allocated.
+     */
+    private int numBlocks = 0;
+
+    /** Default constructor.
+     */
+    public Function(String name) {
+        this.name = name;
+    }
+
+    /** Return the name of this function.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /** Return the number of temporaries that have been allocated; all
+     *  temporary ids are less than this value.
+     */
+    public int getNumTemps() {
+        return numTemps;
+    }
+
+    /** Return the number of blocks that have been allocated; all block
+     *  ids are less than this value.
+     */
+    public int getNumBlocks() {
+        return numBlocks;
+    }
+
+    /** Return the list of blocks in this function.
+     */
+    public ArrayList<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /** Allocate a new temporary.
+     */
+    Temp newTemp(String name) {
+        return new Temp(numTemps++, name);
+    }
+
+    /** Allocate a new block and add it to the end of the list of blocks.
+     */
+    BasicBlock newBlock() {
+        BasicBlock b = new BasicBlock(numBlocks++);
+        blocks.add(b);
+        return b;
+    }
+
+    /** Calculate the predecessors of every block from scratch.  This must
+     *  only be used before any phi functions have been inserted, because
+     *  it does not preserve the order of existing predecessor lists.
+     */
+    void computePreds() {
+        for (int i=0; i<blocks.size(); i++) {
+            blocks.get(i).preds.clear();
+        }
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock   b  = blocks.get(i);
+            BasicBlock[] ss = b.succs();
+            for (int j=0; j<ss.length; j++) {
+                ss[j].preds.add(b);
+            }
+        }
+    }
+
+    /** Remove any blocks that cannot be reached from the entry block, and
+     *  arrange the remaining blocks in reverse postorder.  The predecessor
+     *  lists (and phi functions) of the remaining blocks are updated to
+     *  remove references to the unreachable blocks.
+     */
+    void order() {
+        boolean[]             seen   = new boolean[numBlocks];
+        ArrayList<BasicBlock> post   = new ArrayList<BasicBlock>();
+        ArrayList<BasicBlock> stack  = new ArrayList<BasicBlock>();
+        int[]                 next   = new int[numBlocks];
+        stack.add(entry);
+        seen[entry.getId()] = true;
+        while (!stack.isEmpty()) {
+            BasicBlock   b  = stack.get(stack.size()-1);
+            BasicBlock[] ss = b.succs();
+            if (next[b.getId()]<ss.length) {
+                BasicBlock s = ss[next[b.getId()]++];
+                if (!seen[s.getId()]) {
+                    seen[s.getId()] = true;
+                    stack.add(s);
+                }
+            } else {
+                stack.remove(stack.size()-1);
+                post.add(b);
+            }
+        }
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            if (!seen[b.getId()]) {
+                BasicBlock[] ss = b.succs();
+                for (int j=0; j<ss.length; j++) {
+                    if (seen[ss[j].getId()]) {
+                        ss[j].removePred(b);
+                    }
+                }
+            }
+        }
+        blocks.clear();
+        for (int i=post.size()-1; i>=0; i--) {
+            BasicBlock b = post.get(i);
+            b.rpo        = blocks.size();
+            blocks.add(b);
+        }
+    }
+
+    /** Replace uses of temporaries throughout this function using the
+     *  given substitution.  Returns true if any changes were made.
+     */
+    boolean substitute(Operand[] subst) {
+        boolean changed = false;
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            for (int j=0; j<b.phis.size(); j++) {
+                changed |= b.phis.get(j).substitute(subst);
+            }
+            for (int j=0; j<b.code.size(); j++) {
+                changed |= b.code.get(j).substitute(subst);
+            }
+            changed |= b.term.substitute(subst);
+        }
+        return changed;
+    }
+
+    /** Find the replacement for an operand in a substitution, following
+     *  chains of replacements.
+     */
+    static Operand resolve(Operand o, Operand[] subst) {
+        Temp t = o.isTemp();
+        while (t!=null && t.getId()<subst.length && subst[t.getId()]!=null) {
+            o = subst[t.getId()];
+            t = o.isTemp();
+        }
+        return o;
+    }
+
+    /** Test to see if two operands are the same.
+     */
+    static boolean sameOperand(Operand a, Operand b) {
+        if (a==b) {
+            return true;
+        } else if (a==null || b==null) {
+            return false;
+        }
+        Const ca = a.isConst();
+        Const cb = b.isConst();
+        return ca!=null && cb!=null && ca.getValue()==cb.getValue();
+    }
+
+    /** Print a description of this function.
+     */
+    public void print(PrintStream out) {
+        out.println("function " + name + ":");
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b = blocks.get(i);
+            out.print(b + ":");
+            if (!b.preds.isEmpty()) {
+                out.print("\t\t// preds:");
+                for (int j=0; j<b.preds.size(); j++) {
+                    out.print(" " + b.preds.get(j));
+                }
+            }
+            out.println();
+            for (int j=0; j<b.phis.size(); j++) {
+                out.println("\t" + b.phis.get(j));
+            }
+            for (int j=0; j<b.code.size(); j++) {
+                out.println("\t" + b.code.get(j));
+            }
+            out.println("\t" + b.term);
+        }
+    }
+}
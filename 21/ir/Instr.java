@@ -0,0 +1,89 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents a single three-address instruction.  Each instruction has
+ *  an array of operands, and most also define a destination temporary.
+ */
+public abstract class Instr {
+
+    /** The temporary defined by this instruction, or null if none.
+     */
+    Temp dest;
+
+    /** The operands of this instruction.
+     */
+    Operand[] args;
+
+    /** Default constructor.
+     */
+    Instr(Temp dest, Operand[] args) {
+        this.dest = dest;
+        this.args = args;
+    }
+
+    /** Return the temporary defined by this instruction, if any.
+     */
+    public Temp getDest() {
+        return dest;
+    }
+
+    /** Return the operands of this instruction.
+     */
+    public Operand[] getArgs() {
+        return args;
+    }
+
+    /** Test to see if this instruction has an effect other than setting
+     *  its destination, in which case it must not be removed even if the
+     *  result is not used.
+     */
+    boolean hasEffect() {
+        return false;
+    }
+
+    /** Return the value that this instruction computes if it can be
+     *  determined at compile time, or null otherwise.
+     */
+    Const fold() {
+        return null;
+    }
+
+    /** Replace each temporary operand t for which subst[t.getId()] is not
+     *  null with the corresponding operand.  Returns true if any changes
+     *  were made.
+     */
+    boolean substitute(Operand[] subst) {
+        boolean changed = false;
+        for (int i=0; i<args.length; i++) {
+            Operand o = Function.resolve(args[i], subst);
+            if (o!=args[i]) {
+                args[i] = o;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Generate assembly code for this instruction.
+     */
+    abstract void compile(CodeGen g);
+}
@@ -0,0 +1,45 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents an unconditional jump.
+ */
+public class Jump extends Term {
+
+    /** Default constructor.
+     */
+    Jump(BasicBlock target) {
+        super(new Operand[0], new BasicBlock[] { target });
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return "jump " + succs[0];
+    }
+
+    /** Generate assembly code for this instruction, omitting the jump if
+     *  the target is the next block in the layout.
+     */
+    void compile(CodeGen g) {
+        g.jumpTo(succs[0]);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents an operand of a three-address instruction, which is either
+ *  a temporary or a constant.
+ */
+public abstract class Operand {
+
+    /** Return this operand as a constant, or null if it is a temporary.
+     */
+    public Const isConst() {
+        return null;
+    }
+
+    /** Return this operand as a temporary, or null if it is a constant.
+     */
+    public Temp isTemp() {
+        return null;
+    }
+
+    /** Return the assembly language form of this operand, using the given
+     *  code generator to find the location of temporaries.
+     */
+    abstract long asm(CodeGen g);
+}
@@ -0,0 +1,46 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import compiler.PassManager;
+
+/** Describes the standard pipelines of IR optimization passes for each of
+ *  the optimization levels -O0 ... -O3.
+ */
+public class Passes {
+
+    /** Return a pass manager for the IR passes at the given level.
+     */
+    public static PassManager<Function> forLevel(int level) {
+        switch (level) {
+            case 0 :
+                return new PassManager<Function>(0, 0);
+            case 1 :
+                return new PassManager<Function>(1, 1000000)
+                          .add(new CopyPropagation())
+                          .add(new DeadCodeElimination());
+            default :
+                return new PassManager<Function>(level==2 ? 4 : 8, 1000000)
+                          .add(new CopyPropagation())
+                          .add(new ConstantPropagation())
+                          .add(new DeadCodeElimination());
+        }
+    }
+}
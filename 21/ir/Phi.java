@@ -0,0 +1,92 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents a phi function at the start of a basic block.  The value of
+ *  dest is the i'th argument when control arrives from the i'th
+ *  predecessor of the block.  Phi functions are removed by the translation
+ *  out of SSA form, so they never reach the code generator.
+ */
+public class Phi extends Instr {
+
+    /** The temporary (before renaming) that this phi function merges.
+     */
+    Temp var;
+
+    /** Default constructor.
+     */
+    Phi(Temp var, int numPreds) {
+        super(var, new Operand[numPreds]);
+        this.var = var;
+    }
+
+    /** Remove the argument for the predecessor with index i.
+     */
+    void removeArg(int i) {
+        Operand[] newArgs = new Operand[args.length-1];
+        for (int j=0, k=0; j<args.length; j++) {
+            if (j!=i) {
+                newArgs[k++] = args[j];
+            }
+        }
+        args = newArgs;
+    }
+
+    /** Return the single operand that this phi function is equal to, if
+     *  all of its arguments (other than references to itself) are the same,
+     *  or null otherwise.
+     */
+    Operand same() {
+        Operand v = null;
+        for (int i=0; i<args.length; i++) {
+            Operand a = args[i];
+            if (a!=dest && !Function.sameOperand(a, v)) {
+                if (v!=null) {
+                    return null;
+                }
+                v = a;
+            }
+        }
+        return v;
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+        buf.append(dest);
+        buf.append(" = phi(");
+        for (int i=0; i<args.length; i++) {
+            if (i>0) {
+                buf.append(", ");
+            }
+            buf.append(args[i]);
+        }
+        buf.append(")");
+        return buf.toString();
+    }
+
+    /** Phi functions should have been removed before code generation.
+     */
+    void compile(CodeGen g) {
+        throw new IllegalStateException("phi function in code generator input");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.Backend;
+
+/** Represents a call to the print primitive.
+ */
+public class PrintInstr extends Instr {
+
+    /** Default constructor.
+     */
+    PrintInstr(Operand a) {
+        super(null, new Operand[] { a });
+    }
+
+    /** Printing is an effect.
+     */
+    boolean hasEffect() {
+        return true;
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return "print " + args[0];
+    }
+
+    /** Generate assembly code for this instruction, following the same
+     *  calling and alignment conventions as ast.Print.
+     */
+    void compile(CodeGen g) {
+        Backend a      = g.getTarget();
+        int     pushed = g.getPushed();
+        int     adjust = a.printAdjust(pushed);
+        g.adjustPushed(adjust);
+        long    src    = args[0].asm(g);
+        g.adjustPushed(-adjust);
+        a.callPrint(src, adjust);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import java.util.ArrayList;
+
+/** Provides the translations of a function in to and out of static single
+ *  assignment (SSA) form.
+ */
+public class SSA {
+
+    /** Translate f in to SSA form.  Phi functions are placed at the iterated
+     *  dominance frontiers of the blocks that assign to each temporary
+     *  (Cytron et al.), but only for temporaries that are used in a block
+     *  other than the one where they are assigned ("semi-pruned" form).  A
+     *  walk over the dominator tree then gives a new name to every
+     *  definition and rewrites each use to refer to the reaching definition.
+     */
+    public static void construct(Function f) {
+        f.computePreds();
+        f.order();
+        Dominance.compute(f);
+        placePhis(f);
+        rename(f);
+    }
+
+    /** Insert phi functions for each temporary that is live across blocks.
+     */
+    private static void placePhis(Function f) {
+        int                     n      = f.getNumTemps();
+        int                     nb     = f.getNumBlocks();
+        ArrayList<BasicBlock>   blocks = f.blocks;
+        boolean[]               global = new boolean[n];
+        int[]                   killed = new int[n];
+        Temp[]                  temps  = new Temp[n];
+        ArrayList<ArrayList<BasicBlock>> defs = new ArrayList<ArrayList<BasicBlock>>();
+        for (int i=0; i<n; i++) {
+            defs.add(new ArrayList<BasicBlock>());
+        }
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock b     = blocks.get(i);
+            int        stamp = b.getId() + 1;
+            for (int j=0; j<=b.code.size(); j++) {
+                Instr is = (j<b.code.size()) ? b.code.get(j) : b.term;
+                for (int k=0; k<is.args.length; k++) {
+                    Temp t = is.args[k].isTemp();
+                    if (t!=null && killed[t.getId()]!=stamp) {
+                        global[t.getId()] = true;
+                    }
+                }
+                if (is.dest!=null) {
+                    int d = is.dest.getId();
+                    temps[d] = is.dest;
+                    if (killed[d]!=stamp) {
+                        killed[d] = stamp;
+                        defs.get(d).add(b);
+                    }
+                }
+            }
+        }
+        int[] hasPhi = new int[nb];
+        int[] queued = new int[nb];
+        for (int v=0; v<n; v++) {
+            if (global[v] && temps[v]!=null) {
+                ArrayList<BasicBlock> work = new ArrayList<BasicBlock>(defs.get(v));
+                for (int i=0; i<work.size(); i++) {
+                    queued[work.get(i).getId()] = v+1;
+                }
+                while (!work.isEmpty()) {
+                    BasicBlock b = work.remove(work.size()-1);
+                    for (int i=0; i<b.frontier.size(); i++) {
+                        BasicBlock d = b.frontier.get(i);
+                        if (hasPhi[d.getId()]!=v+1) {
+                            hasPhi[d.getId()] = v+1;
+                            d.phis.add(new Phi(temps[v], d.preds.size()));
+                            if (queued[d.getId()]!=v+1) {
+                                queued[d.getId()] = v+1;
+                                work.add(d);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Rename every definition and use, walking the dominator tree with an
+     *  explicit stack (so that deeply nested programs do not overflow the
+     *  Java stack).  A use with no reaching definition (which can only
+     *  happen on paths where the variable is not initialized) is replaced
+     *  by zero.
+     */
+    private static void rename(Function f) {
+        int                 n      = f.getNumTemps();
+        Operand[]           top    = new Operand[n];
+        ArrayList<Integer>  logVar = new ArrayList<Integer>();
+        ArrayList<Operand>  logOld = new ArrayList<Operand>();
+        int[]               marks  = new int[f.getNumBlocks()];
+        ArrayList<BasicBlock> stack = new ArrayList<BasicBlock>();
+        ArrayList<Boolean>    exits = new ArrayList<Boolean>();
+        stack.add(f.entry);
+        exits.add(false);
+        while (!stack.isEmpty()) {
+            BasicBlock b    = stack.remove(stack.size()-1);
+            boolean    exit = exits.remove(exits.size()-1);
+            if (exit) {
+                for (int i=logVar.size()-1; i>=marks[b.getId()]; i--) {
+                    top[logVar.get(i)] = logOld.get(i);
+                    logVar.remove(i);
+                    logOld.remove(i);
+                }
+                continue;
+            }
+            marks[b.getId()] = logVar.size();
+            for (int i=0; i<b.phis.size(); i++) {
+                Phi phi  = b.phis.get(i);
+                phi.dest = define(f, phi.var, top, logVar, logOld);
+            }
+            for (int i=0; i<=b.code.size(); i++) {
+                Instr is = (i<b.code.size()) ? b.code.get(i) : b.term;
+                for (int k=0; k<is.args.length; k++) {
+                    is.args[k] = use(is.args[k], top);
+                }
+                if (is.dest!=null) {
+                    is.dest = define(f, is.dest, top, logVar, logOld);
+                }
+            }
+            BasicBlock[] ss = b.succs();
+            for (int i=0; i<ss.length; i++) {
+                int j = ss[i].preds.indexOf(b);
+                for (int k=0; k<ss[i].phis.size(); k++) {
+                    Phi phi = ss[i].phis.get(k);
+                    phi.args[j] = use(phi.var, top);
+                }
+            }
+            stack.add(b);
+            exits.add(true);
+            for (int i=b.children.size()-1; i>=0; i--) {
+                stack.add(b.children.get(i));
+                exits.add(false);
+            }
+        }
+    }
+
+    /** Return the renamed version of an operand.
+     */
+    private static Operand use(Operand o, Operand[] top) {
+        Temp t = o.isTemp();
+        if (t==null) {
+            return o;
+        }
+        Operand r = top[t.getId()];
+        return (r==null) ? new Const(0) : r;
+    }
+
+    /** Create a new name for a definition of the temporary v.
+     */
+    private static Temp define(Function f, Temp v, Operand[] top,
+                               ArrayList<Integer> logVar,
+                               ArrayList<Operand> logOld) {
+        Temp t = f.newTemp(v.getName());
+        logVar.add(v.getId());
+        logOld.add(top[v.getId()]);
+        top[v.getId()] = t;
+        return t;
+    }
+
+    /** Translate f out of SSA form.  Critical edges into blocks with phi
+     *  functions are split, and then each phi function is replaced by
+     *  copies at the end of its predecessors.  The copies for each edge
+     *  are performed in parallel, so they are carefully sequentialized,
+     *  introducing a new temporary to break any cycles.
+     */
+    public static void destruct(Function f) {
+        ArrayList<BasicBlock> blocks = new ArrayList<BasicBlock>(f.blocks);
+        for (int i=0; i<blocks.size(); i++) {
+            BasicBlock s = blocks.get(i);
+            if (s.phis.isEmpty()) {
+                continue;
+            }
+            for (int j=0; j<s.preds.size(); j++) {
+                BasicBlock p = s.preds.get(j);
+                if (p.succs().length>1) {
+                    BasicBlock m = f.newBlock();
+                    f.blocks.remove(m);
+                    f.blocks.add(f.blocks.indexOf(s), m);
+                    m.term = new Jump(s);
+                    m.preds.add(p);
+                    p.term.replaceSucc(s, m);
+                    s.preds.set(j, m);
+                }
+            }
+            for (int j=0; j<s.preds.size(); j++) {
+                ArrayList<Temp>    dests = new ArrayList<Temp>();
+                ArrayList<Operand> srcs  = new ArrayList<Operand>();
+                for (int k=0; k<s.phis.size(); k++) {
+                    Phi phi = s.phis.get(k);
+                    if (phi.args[j]!=phi.dest) {
+                        dests.add(phi.dest);
+                        srcs.add(phi.args[j]);
+                    }
+                }
+                sequentialize(f, dests, srcs, s.preds.get(j).code);
+            }
+            s.phis.clear();
+        }
+    }
+
+    /** Append copies to code that have the same effect as performing the
+     *  copies dests[i] = srcs[i] in parallel.
+     */
+    private static void sequentialize(Function f, ArrayList<Temp> dests,
+                                      ArrayList<Operand> srcs,
+                                      ArrayList<Instr> code) {
+        while (!dests.isEmpty()) {
+            int ready = -1;
+            for (int i=0; i<dests.size() && ready<0; i++) {
+                if (!srcs.contains(dests.get(i))) {
+                    ready = i;
+                }
+            }
+            if (ready>=0) {
+                code.add(new Copy(dests.remove(ready), srcs.remove(ready)));
+            } else {
+                // Every destination is also a source, so the copies form
+                // cycles; save one destination to break a cycle:
+                Temp d = dests.get(0);
+                Temp t = f.newTemp(d.getName());
+                code.add(new Copy(t, d));
+                for (int i=0; i<srcs.size(); i++) {
+                    if (srcs.get(i)==d) {
+                        srcs.set(i, t);
+                    }
+                }
+            }
+        }
+    }
+}
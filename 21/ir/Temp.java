@@ -0,0 +1,74 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents a temporary, which holds an intermediate value or the value
+ *  of a source variable.  Once the code is in SSA form, each temporary has
+ *  exactly one definition.
+ */
+public class Temp extends Operand {
+
+    /** A unique number for this temporary within its function.
+     */
+    private int id;
+
+    /** The name of the source variable that this temporary represents,
+     *  or null if it holds an intermediate value.
+     */
+    private String name;
+
+    /** Default constructor.
+     */
+    Temp(int id, String name) {
+        this.id   = id;
+        this.name = name;
+    }
+
+    /** Return the unique number for this temporary.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /** Return the name of the variable for this temporary, if any.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /** Return this operand as a temporary.
+     */
+    public Temp isTemp() {
+        return this;
+    }
+
+    /** Return a printable description of this temporary.
+     */
+    public String toString() {
+        return (name==null) ? ("t" + id) : (name + "." + id);
+    }
+
+    /** Return the assembly language form of this operand.
+     */
+    long asm(CodeGen g) {
+        return g.slot(this);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+
+/** Represents an instruction that ends a basic block, passing control to
+ *  one of its successors (or leaving the function).
+ */
+public abstract class Term extends Instr {
+
+    /** The successors of the block that this instruction ends.
+     */
+    BasicBlock[] succs;
+
+    /** Default constructor.
+     */
+    Term(Operand[] args, BasicBlock[] succs) {
+        super(null, args);
+        this.succs = succs;
+    }
+
+    /** Return the successor blocks for this instruction.
+     */
+    public BasicBlock[] getSuccs() {
+        return succs;
+    }
+
+    /** Replace each reference to the successor from with to.
+     */
+    void replaceSucc(BasicBlock from, BasicBlock to) {
+        for (int i=0; i<succs.length; i++) {
+            if (succs[i]==from) {
+                succs[i] = to;
+            }
+        }
+    }
+
+    /** Control flow is an effect.
+     */
+    boolean hasEffect() {
+        return true;
+    }
+
+    /** Return a simplified version of this instruction, or this
+     *  instruction itself if no simplification is possible.
+     */
+    Term simplify() {
+        return this;
+    }
+}
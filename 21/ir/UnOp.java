@@ -0,0 +1,83 @@
+/*
+    Copyright 2018 Mark P Jones, Portland State University
+
+    This file is part of minitour.
+
+    minitour is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    minitour is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with minitour.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package ir;
+import ast.AsmOp;
+import ast.Backend;
+import ast.Op;
+
+/** Represents a unary operation, dest = op a.  The operator is one of
+ *  UMINUS (negation), BNOT (bitwise complement), or LNOT (logical not).
+ */
+public class UnOp extends Instr {
+
+    /** The operator for this instruction.
+     */
+    private Op op;
+
+    /** Default constructor.
+     */
+    UnOp(Temp dest, Op op, Operand a) {
+        super(dest, new Operand[] { a });
+        this.op = op;
+    }
+
+    /** Return the operator for this instruction.
+     */
+    public Op getOp() {
+        return op;
+    }
+
+    /** Return the value that this instruction computes if its operand
+     *  is a constant.
+     */
+    Const fold() {
+        Const c = args[0].isConst();
+        if (c==null) {
+            return null;
+        }
+        switch (op) {
+            case UMINUS : return new Const(-c.getValue());
+            case BNOT   : return new Const(~c.getValue());
+            case LNOT   : return new Const(c.getValue() ^ 1);
+            default     : return null;
+        }
+    }
+
+    /** Return a printable description of this instruction.
+     */
+    public String toString() {
+        return dest + " = " + op + " " + args[0];
+    }
+
+    /** Generate assembly code for this instruction.
+     */
+    void compile(CodeGen g) {
+        Backend a   = g.getTarget();
+        long    eax = a.reg(0);
+        a.emit(AsmOp.MOVL, args[0].asm(g), eax);
+        switch (op) {
+            case UMINUS : a.emit(AsmOp.NEGL, eax);             break;
+            case BNOT   : a.emit(AsmOp.NOTL, eax);             break;
+            default     : a.emit(AsmOp.XORL, a.immed(1), eax); break;
+        }
+        a.emit(AsmOp.MOVL, eax, dest.asm(g));
+    }
+}
@@ -1,18 +1,47 @@
-#include <stdio.h>
-#include <stdlib.h>
-
-extern void Main_main();
-
-void print(int x) {
-    printf("print: %d\n",x);
-}
-
-int square(int x) {
-  return x*x;
-}
-
-int main() {
-    Main_main();
-    return 0;
-}
-
+#include <stdio.h>
+#include <stdlib.h>
+
+extern void Main_main();
+
+void print(int x) {
+    printf("print: %d\n",x);
+}
+
+void divideByZero() {
+    fprintf(stderr, "Divide by zero\n");
+    exit(1);
+}
+
+int square(int x) {
+  return x*x;
+}
+
+/* Programs that are compiled with -profile count the number of times that
+ * each block is executed.  Main_blocks holds the row, column, and arm number
+ * that identify each block, and the counts are written to mini.prof when
+ * the program exits, one block per line in the same form followed by the
+ * count.  The symbols are weak so that other programs still link.
+ */
+extern unsigned Main_counts[] __attribute__((weak));
+extern int      Main_blocks[] __attribute__((weak));
+extern int      Main_numBlocks __attribute__((weak));
+
+static void dumpProfile() {
+    FILE* f = fopen("mini.prof", "w");
+    if (f) {
+        for (int i=0; i<Main_numBlocks; i++) {
+            fprintf(f, "%d %d %d %u\n", Main_blocks[3*i], Main_blocks[3*i+1],
+                    Main_blocks[3*i+2], Main_counts[i]);
+        }
+        fclose(f);
+    }
+}
+
+int main() {
+    if (&Main_numBlocks) {
+        atexit(dumpProfile);
+    }
+    Main_main();
+    return 0;
+}
+